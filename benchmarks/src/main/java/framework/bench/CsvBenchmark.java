@@ -0,0 +1,71 @@
+package framework.bench;
+
+import framework.utils.CSVUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV output hot paths. appendFull shares one CSV path across all benchmark
+ * threads, so running with -t 1..16 measures writer contention on the
+ * CSVUtils lock the way parallel workers hit it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class CsvBenchmark {
+
+	private static final String DESCRIPTION = "Premium \"deluxe\" widget,\nwith line breaks\r\nand quotes  ";
+
+	private Path dir;
+	private String csvPath;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("csv-bench-");
+		csvPath = dir.resolve("results.csv").toString();
+	}
+
+	/** Truncates the CSV every iteration so the file does not grow without bound. */
+	@Setup(Level.Iteration)
+	public void resetFile() {
+		CSVUtils.initCsvFull(csvPath);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		CSVUtils.close(csvPath);
+		Files.deleteIfExists(Path.of(csvPath));
+		Files.deleteIfExists(dir);
+	}
+
+	@Benchmark
+	public String sanitize() {
+		return CSVUtils.sanitize(DESCRIPTION);
+	}
+
+	@Benchmark
+	public String formatFull() {
+		return row("877853000941");
+	}
+
+	@Benchmark
+	public void appendFull() {
+		CSVUtils.appendFull(csvPath, "877853000941", "YES", "https://webstore.example/detail/abc", "ADD TO CART PRESENT",
+				"", "Widget 3000", "KW-12345", "877853000941", "V-998", "12", DESCRIPTION, "$19.99", "$29.99",
+				"In stock", null, "Acme", "877853000941", "Bullet one; bullet two", "42", "No", "$29.99", "Black",
+				"CA", "V-998", "2021", "Yes", "No", "No");
+	}
+
+	private static String row(String upc) {
+		return CSVUtils.formatFull(upc, "YES", "https://webstore.example/detail/abc", "ADD TO CART PRESENT", "",
+				"Widget 3000", "KW-12345", upc, "V-998", "12", DESCRIPTION, "$19.99", "$29.99", "In stock", null,
+				"Acme", upc, "Bullet one; bullet two", "42", "No", "$29.99", "Black", "CA", "V-998", "2021", "Yes",
+				"No", "No");
+	}
+}
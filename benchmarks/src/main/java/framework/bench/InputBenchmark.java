@@ -0,0 +1,61 @@
+package framework.bench;
+
+import framework.engine.ScrapeEngine;
+import framework.engine.UpcProcessor;
+import framework.utils.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input-side hot paths: reading/deduplicating the UPC file, the isValidUpc
+ * loop over the whole input and slicing it into batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class InputBenchmark {
+
+	@Param({ "17000", "500000", "5000000" })
+	public int size;
+
+	@Param({ "500" })
+	public int batchSize;
+
+	private Path input;
+	private List<String> upcs;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		upcs = UpcDatasets.generate(size, 42L);
+		input = UpcDatasets.writeInputFile(Files.createTempFile("upc-bench-", ".txt"), upcs);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(input);
+	}
+
+	@Benchmark
+	public List<String> readUpcs() {
+		return FileUtils.readUpcs(input.toString());
+	}
+
+	@Benchmark
+	public void isValidUpcLoop(Blackhole bh) {
+		for (String upc : upcs)
+			bh.consume(UpcProcessor.isValidUpc(upc));
+	}
+
+	@Benchmark
+	public List<List<String>> sliceBatches() {
+		return ScrapeEngine.slice(upcs, batchSize);
+	}
+}
@@ -0,0 +1,81 @@
+package framework.bench;
+
+import framework.utils.ProgressTracker;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checkpoint hot paths against temporary checkpoint files (never the real
+ * one): loading a checkpoint of 17k..5M UPCs on resume, and appending
+ * entries from 1..16 concurrent writers (-t).
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class ProgressBenchmark {
+
+	/** Pre-written checkpoint of the given size. */
+	@State(Scope.Benchmark)
+	public static class LoadState {
+
+		@Param({ "17000", "500000", "5000000" })
+		public int size;
+
+		Path file;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			List<String> upcs = UpcDatasets.generate(size, 7L);
+			file = Files.write(Files.createTempFile("checkpoint-load-", ".txt"), upcs);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/** Shared checkpoint file all writer threads append to. */
+	@State(Scope.Benchmark)
+	public static class WriteState {
+
+		final AtomicLong seq = new AtomicLong(100_000_000_000L);
+		Path file;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			file = Files.createTempFile("checkpoint-write-", ".txt");
+		}
+
+		/** Starts every iteration with an empty file. */
+		@Setup(Level.Iteration)
+		public void reset() throws Exception {
+			Files.write(file, new byte[0]);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Set<String> loadProcessed(LoadState s) {
+		return ProgressTracker.loadProcessed(s.file);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void markProcessed(WriteState s) {
+		ProgressTracker.markProcessed(s.file, Long.toString(s.seq.incrementAndGet()));
+	}
+}
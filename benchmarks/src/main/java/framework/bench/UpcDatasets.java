@@ -0,0 +1,69 @@
+package framework.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded generator of realistic UPC inputs: mostly 12-digit UPC-A codes with
+ * valid check digits, some EAN-13/GTIN-14 forms, ~2% exact duplicates and
+ * ~0.5% malformed lines, the way the real upc.txt exports look.
+ */
+final class UpcDatasets {
+
+	private UpcDatasets() {
+	}
+
+	/** Generates size UPC strings deterministically from seed. */
+	static List<String> generate(int size, long seed) {
+		Random r = new Random(seed);
+		List<String> upcs = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int roll = r.nextInt(1000);
+			if (roll < 20 && !upcs.isEmpty()) {
+				upcs.add(upcs.get(r.nextInt(upcs.size())));
+			} else if (roll < 25) {
+				upcs.add("87785300" + (char) ('A' + r.nextInt(26)) + r.nextInt(1000));
+			} else if (roll < 100) {
+				upcs.add(withCheckDigit(digits(r, 12)));
+			} else if (roll < 120) {
+				upcs.add(withCheckDigit(digits(r, 13)));
+			} else {
+				upcs.add(withCheckDigit(digits(r, 11)));
+			}
+		}
+		return upcs;
+	}
+
+	/** Writes a UPC input file with the "UPC" header line. */
+	static Path writeInputFile(Path file, List<String> upcs) throws IOException {
+		try (BufferedWriter bw = Files.newBufferedWriter(file)) {
+			bw.write("UPC");
+			bw.newLine();
+			for (String upc : upcs) {
+				bw.write(upc);
+				bw.newLine();
+			}
+		}
+		return file;
+	}
+
+	private static String digits(Random r, int n) {
+		char[] c = new char[n];
+		for (int i = 0; i < n; i++)
+			c[i] = (char) ('0' + r.nextInt(10));
+		return new String(c);
+	}
+
+	/** Appends the GS1 mod-10 check digit. */
+	private static String withCheckDigit(String body) {
+		int sum = 0;
+		for (int i = body.length() - 1, w = 3; i >= 0; i--, w = 4 - w)
+			sum += (body.charAt(i) - '0') * w;
+		return body + (char) ('0' + (10 - sum % 10) % 10);
+	}
+}
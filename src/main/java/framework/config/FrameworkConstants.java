@@ -1,5 +1,7 @@
 package framework.config;
 
+import framework.distributed.Sharding;
+
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -21,9 +23,25 @@ public final class FrameworkConstants {
 	/** Optional de-duplication of UPC input list. */
 	public static final boolean DEDUP_UPC = ConfigLoader.getBoolean("upc.deduplicate", true);
 
+	/** GTIN input validation: strict (GS1 length + check digit) or lenient (any 8-14 digits). */
+	public static final String GTIN_VALIDATION = ConfigLoader.getString("gtin.validation", "strict").toLowerCase();
+
+	/** Code form typed into the site search: input, gtin14 or short (UPC-A / EAN-13 when possible). */
+	public static final String GTIN_SEARCH_FORM = ConfigLoader.getString("gtin.search.form", "input").toLowerCase();
+
 	public static final String SCRAPING_OUTPUT_DIR = ConfigLoader.getString("scraping.output.dir",
 			"ScrapingOutputResults");
 
+	/** Work-list order: comma-separated criteria (column, never_scraped, in_stock, price, changed); empty = file order. */
+	public static final String UPC_PRIORITY_POLICY = ConfigLoader.getString("upc.priority.policy", "").toLowerCase();
+
+	/** Optional sidecar "upc,priority" file for the column criterion. */
+	public static final String UPC_PRIORITY_FILE = ConfigLoader.getString("upc.priority.file", "");
+
+	/** Directory with previous results_batch_*.csv files used as history by the priority criteria. */
+	public static final String UPC_PRIORITY_HISTORY_DIR = ConfigLoader.getString("upc.priority.history.dir",
+			SCRAPING_OUTPUT_DIR);
+
 	public static final String REPORT_DIR = ConfigLoader.getString("report.dir", SCRAPING_OUTPUT_DIR + "/reports");
 
 	public static final String SCREENSHOT_DIR = ConfigLoader.getString("screenshot.dir",
@@ -39,14 +57,189 @@ public final class FrameworkConstants {
 	/** Global screenshot switch. */
 	public static final boolean SCREENSHOTS_ENABLED = ConfigLoader.getBoolean("screenshots.enabled", true);
 
+	/** Console logging: async per-thread buffers, level filter (DEBUG adds stage timings), text or json. */
+	public static final boolean LOG_ASYNC = ConfigLoader.getBoolean("log.async", true);
+	public static final String LOG_LEVEL = ConfigLoader.getString("log.level", "INFO");
+	public static final String LOG_FORMAT = ConfigLoader.getString("log.format", "text");
+
+	/** Entries per thread buffer, and drop (default) or block when it is full. */
+	public static final int LOG_BUFFER_SIZE = ConfigLoader.getInt("log.buffer.size", 1024);
+	public static final String LOG_FULL_POLICY = ConfigLoader.getString("log.full.policy", "drop");
+
+	/** Streaming per-UPC run report (rolling JSONL + summary HTML); Extent keeps suite-level entries only. */
+	public static final boolean REPORT_STREAMING = ConfigLoader.getBoolean("report.streaming", true);
+	public static final long REPORT_STREAM_FLUSH_MS = ConfigLoader.getInt("report.stream.flush.ms", 1000);
+	public static final int REPORT_STREAM_ROLL_MB = ConfigLoader.getInt("report.stream.roll.mb", 64);
+	public static final int REPORT_SUMMARY_INTERVAL_SEC = ConfigLoader.getInt("report.summary.interval.sec", 60);
+
+	/** Evidence type: png (legacy, synchronous), jpeg, webp or html (async writer). */
+	public static final String SCREENSHOT_MODE = ConfigLoader.getString("screenshot.mode", "jpeg").toLowerCase();
+
+	/** JPEG/WebP quality (0-100), DevTools scale factor and clip height in CSS pixels. */
+	public static final int SCREENSHOT_QUALITY = ConfigLoader.getInt("screenshot.quality", 50);
+	public static final double SCREENSHOT_SCALE = ConfigLoader.getDouble("screenshot.scale", 0.5);
+	public static final int SCREENSHOT_CLIP_HEIGHT = ConfigLoader.getInt("screenshot.clip.height", WINDOW_HEIGHT);
+
+	/** Per-status sampling: keep the first N captures, then 1 in M (M=0: none; N=-1: all). */
+	public static final int SCREENSHOT_SAMPLE_FIRST = ConfigLoader.getInt("screenshot.sample.first", 20);
+	public static final int SCREENSHOT_SAMPLE_EVERY = ConfigLoader.getInt("screenshot.sample.every", 50);
+
 	/** Retry for transient network/browser interruptions. */
 	public static final int NETWORK_RETRY_COUNT = ConfigLoader.getInt("network.retry.count", 1);
 
 	public static final int NETWORK_RETRY_SLEEP_MS = ConfigLoader.getInt("network.retry.sleep.ms", 1500);
 
+	/** Wall-clock budget per UPC in ms; caps every wait on the UPC's path (0 disables). */
+	public static final int UPC_BUDGET_MS = ConfigLoader.getInt("upc.budget.ms", 60000);
+
 	/** Optional slowdown when blocked is detected. */
 	public static final int BLOCKED_BACKOFF_MS = ConfigLoader.getInt("blocked.backoff.ms", 5000);
 
+	/** Proactive browser recycling limits checked between UPCs (0 disables a limit). */
+	public static final int DRIVER_RECYCLE_MAX_UPCS = ConfigLoader.getInt("driver.recycle.max.upcs", 250);
+	public static final int DRIVER_RECYCLE_MAX_HEAP_MB = ConfigLoader.getInt("driver.recycle.max.heap.mb", 512);
+	public static final int DRIVER_RECYCLE_MAX_NODES = ConfigLoader.getInt("driver.recycle.max.nodes", 150000);
+	public static final int DRIVER_RECYCLE_MAX_RSS_MB = ConfigLoader.getInt("driver.recycle.max.rss.mb", 1500);
+
+	/** Health sample (DevTools metrics + RSS) every N UPCs. */
+	public static final int DRIVER_HEALTH_CHECK_EVERY = ConfigLoader.getInt("driver.health.check.every", 10);
+
+	/** Start and log in the replacement browser in the background shortly before a recycle. */
+	public static final boolean DRIVER_PREWARM = ConfigLoader.getBoolean("driver.prewarm", true);
+
+	/** Root of persistent per-slot Chrome profiles ("" = fresh temporary profile per browser). */
+	public static final String BROWSER_PROFILE_ROOT = ConfigLoader.getString("browser.profile.root", "");
+
+	/** Optional template profile overlaid onto each slot at launch (see BrowserProfiles.main). */
+	public static final String BROWSER_PROFILE_TEMPLATE = ConfigLoader.getString("browser.profile.template", "");
+
+	/** Chrome HTTP disk cache size per profile slot in MB (0 = Chrome default). */
+	public static final int BROWSER_CACHE_SIZE_MB = ConfigLoader.getInt("browser.cache.size.mb", 256);
+
+	/** Total number of shards the UPC input is split into (1 = no sharding). */
+	public static final int SHARD_COUNT = Math.max(1, ConfigLoader.getInt("shard.count", 1));
+
+	/** Zero-based shard processed by this JVM; must be below SHARD_COUNT. */
+	public static final int SHARD_INDEX = validShardIndex(ConfigLoader.getInt("shard.index", 0));
+
+	/** Parallel workers (browsers) used by ScrapeEngine in batch mode. */
+	public static final int ENGINE_THREADS = ConfigLoader.getInt("engine.threads", 6);
+
+	/** How long a shutdown (SIGTERM/CI timeout) waits for workers to finish their current UPC. */
+	public static final long ENGINE_SHUTDOWN_GRACE_MS = ConfigLoader.getInt("engine.shutdown.grace.ms", 60000);
+
+	/** Ceiling on UPC starts per minute for this JVM (0 = unlimited); adjustable at runtime. */
+	public static final int RATE_PER_MINUTE = ConfigLoader.getInt("rate.per.minute", 0);
+
+	/** Host-aware worker autoscaler (see WorkerAutoscaler); bounded by the started worker count. */
+	public static final boolean AUTOSCALE_ENABLED = ConfigLoader.getBoolean("autoscale.enabled", false);
+	public static final int AUTOSCALE_MIN_WORKERS = ConfigLoader.getInt("autoscale.min.workers", 1);
+	public static final int AUTOSCALE_START_WORKERS = ConfigLoader.getInt("autoscale.start.workers", 2);
+	public static final long AUTOSCALE_INTERVAL_MS = ConfigLoader.getInt("autoscale.interval.ms", 15000);
+	public static final long AUTOSCALE_COOLDOWN_MS = ConfigLoader.getInt("autoscale.cooldown.ms", 45000);
+
+	/** Scale down above cpu.high (0..1), up below cpu.low. */
+	public static final double AUTOSCALE_CPU_HIGH = ConfigLoader.getDouble("autoscale.cpu.high", 0.85);
+	public static final double AUTOSCALE_CPU_LOW = ConfigLoader.getDouble("autoscale.cpu.low", 0.60);
+
+	/** Available memory kept free (MB) and maximum used fraction of /dev/shm. */
+	public static final int AUTOSCALE_MEM_RESERVE_MB = ConfigLoader.getInt("autoscale.mem.reserve.mb", 1536);
+	public static final double AUTOSCALE_SHM_MAX = ConfigLoader.getDouble("autoscale.shm.max", 0.80);
+
+	/** taskset CPU list for Chrome process trees, e.g. "1-3" (empty = no pinning). */
+	public static final String AUTOSCALE_PIN_CPUS = ConfigLoader.getString("autoscale.pin.cpus", "");
+
+	/** Runtime control file (see RuntimeControls), re-read every control.poll.ms when it changes. */
+	public static final String CONTROL_FILE = ConfigLoader.getString("control.file", "scrape-control.properties");
+	public static final int CONTROL_POLL_MS = ConfigLoader.getInt("control.poll.ms", 2000);
+
+	/** Loopback port of the runtime control socket (0 = file only). */
+	public static final int CONTROL_PORT = ConfigLoader.getInt("control.port", 0);
+
+	/** Pipelined workers: search the next UPC in a second tab while the current PDP is extracted. */
+	public static final boolean ENGINE_PIPELINE = ConfigLoader.getBoolean("engine.pipeline", false);
+
+	/** Staged workers: classification/row formatting and persistence run off the browser thread. */
+	public static final boolean ENGINE_STAGED = ConfigLoader.getBoolean("engine.staged", false);
+
+	/** Threads of the extract stage (classification, row formatting). */
+	public static final int STAGE_EXTRACT_THREADS = ConfigLoader.getInt("stage.extract.threads", 2);
+
+	/** Capacity of each stage queue; a full queue blocks the submitting stage. */
+	public static final int STAGE_QUEUE_CAPACITY = ConfigLoader.getInt("stage.queue.capacity", 64);
+
+	/** In-run product cache entries (LRU, keyed by UPC, PDP URL and item number; 0 disables it). */
+	public static final int PRODUCT_CACHE_SIZE = ConfigLoader.getInt("product.cache.size", 2000);
+
+	/** How long a worker waits for another worker extracting the same PDP before extracting itself. */
+	public static final long PRODUCT_CACHE_WAIT_MS = ConfigLoader.getInt("product.cache.wait.ms", 30000);
+
+	/** Days a NO_PRODUCTS_FOUND result is reused across runs without searching (0 disables the cache). */
+	public static final int NEGATIVE_CACHE_TTL_DAYS = ConfigLoader.getInt("negative.cache.ttl.days", 7);
+
+	/** Percentage of cached misses searched again anyway to catch products added since. */
+	public static final double NEGATIVE_CACHE_REVALIDATE_PERCENT = ConfigLoader
+			.getDouble("negative.cache.revalidate.percent", 5.0);
+
+	/** Persistent negative cache file (shared by shards and runs). */
+	public static final String NEGATIVE_CACHE_FILE = ConfigLoader.getString("negative.cache.file",
+			"ScrapingOutputResults/progress/negative-cache.tsv");
+
+	/** PDP field extraction: webdriver (element by element) or html (one snapshot parsed off-browser). */
+	public static final String EXTRACT_MODE = ConfigLoader.getString("extract.mode", "webdriver").toLowerCase();
+
+	/** Archive every PDP's raw HTML for offline re-extraction. */
+	public static final boolean ARCHIVE_ENABLED = ConfigLoader.getBoolean("archive.enabled", false);
+
+	public static final String ARCHIVE_DIR = ConfigLoader.getString("archive.dir", SCRAPING_OUTPUT_DIR + "/html-archive");
+
+	/** Archive segment file size before rolling to a new one. */
+	public static final int ARCHIVE_SEGMENT_MB = ConfigLoader.getInt("archive.segment.mb", 256);
+
+	/** Upsert every result row into the indexed result store (latest row per UPC). */
+	public static final boolean RESULT_STORE_ENABLED = ConfigLoader.getBoolean("result.store.enabled", false);
+
+	public static final String RESULT_STORE_DIR = ConfigLoader.getString("result.store.dir",
+			SCRAPING_OUTPUT_DIR + "/result-store");
+
+	/** Worker mode: pull UPC leases from a LeaseCoordinator instead of reading the input file. */
+	public static final boolean LEASE_WORKER = ConfigLoader.getBoolean("lease.worker", false);
+
+	/** Number of lease worker slots (browsers) per worker JVM. */
+	public static final int LEASE_WORKERS = ConfigLoader.getInt("lease.workers", 6);
+
+	public static final String COORDINATOR_HOST = ConfigLoader.getString("coordinator.host", "127.0.0.1");
+	public static final int COORDINATOR_PORT = ConfigLoader.getInt("coordinator.port", 47800);
+
+	/** UPCs handed out per lease; small leases keep stragglers short. */
+	public static final int LEASE_SIZE = ConfigLoader.getInt("lease.size", 5);
+
+	/** Lease lifetime without a reported result before its UPCs are reissued. */
+	public static final long LEASE_TTL_MS = ConfigLoader.getInt("lease.ttl.ms", 300000);
+
+	/** Per-stage latency histograms (Prometheus text export). */
+	public static final boolean METRICS_ENABLED = ConfigLoader.getBoolean("metrics.enabled", true);
+
+	public static final String METRICS_FILE = ConfigLoader.getString("metrics.file",
+			SCRAPING_OUTPUT_DIR + "/metrics/scrape_metrics" + Sharding.suffix() + ".prom");
+
+	public static final int METRICS_EXPORT_INTERVAL_SEC = ConfigLoader.getInt("metrics.export.interval.sec", 30);
+
+	/** Local HTTP port of the live JSON status endpoint (0 = off). */
+	public static final int STATUS_PORT = ConfigLoader.getInt("status.port", 0);
+
+	public static final String STATUS_HOST = ConfigLoader.getString("status.host", "127.0.0.1");
+
+	/** Window of the rolling UPCs/minute rate, ETA and recent outcome counters. */
+	public static final int STATUS_WINDOW_SEC = ConfigLoader.getInt("status.window.sec", 300);
+
+	private static int validShardIndex(int index) {
+		if (index < 0 || index >= SHARD_COUNT) {
+			throw new RuntimeException("Invalid shard.index " + index + " for shard.count " + SHARD_COUNT);
+		}
+		return index;
+	}
+
 	/** Returns a timestamp used for output naming. */
 	public static String timestamp() {
 		return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
@@ -54,11 +247,12 @@ public final class FrameworkConstants {
 
 	/** Builds a result CSV path for a batch. */
 	public static String getResultCsvPath(int batchNumber) {
-		return String.format("%s/results_batch_%d_%s.csv", SCRAPING_OUTPUT_DIR, batchNumber, timestamp());
+		return String.format("%s/results_batch_%d%s_%s.csv", SCRAPING_OUTPUT_DIR, batchNumber, Sharding.suffix(),
+				timestamp());
 	}
 
 	/** Builds the report output path for this run. */
 	public static String getReportPath() {
-		return String.format("%s/Kinsey_UPC_Report_%s.html", REPORT_DIR, timestamp());
+		return String.format("%s/Kinsey_UPC_Report%s_%s.html", REPORT_DIR, Sharding.suffix(), timestamp());
 	}
 }
\ No newline at end of file
@@ -0,0 +1,302 @@
+package framework.config;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Settings that can be changed while a run is in progress. Everything else in
+ * {@link FrameworkConstants} is fixed at startup; these values start from
+ * config.properties and are then overridden by the control file
+ * (control.file, re-read when it changes) and, optionally, by a loopback
+ * control socket (control.port). Workers pick changes up between UPCs.
+ *
+ * <p>Control file / socket keys:
+ *
+ * <pre>
+ * state=run|pause|drain          pause parks workers between UPCs; drain finishes the current UPC and stops
+ * threads=4                      active workers (at most the number started, engine.threads / lease.workers)
+ * rate.per.minute=120            ceiling on UPC starts per minute for this JVM (0 = unlimited)
+ * blocked.backoff.ms=5000
+ * screenshot.sample.first=20
+ * screenshot.sample.every=50
+ * </pre>
+ *
+ * <p>The socket takes one line per request: "key=value" sets an override
+ * (kept until RESET), "STATUS" and "RESET" do what they say; every reply is
+ * the effective settings on one line. Socket overrides win over the file.
+ */
+public final class RuntimeControls {
+
+	private static final Object LOCK = new Object();
+
+	private static volatile String state = "run";
+	private static volatile int threads = Integer.MAX_VALUE;
+	private static volatile int autoscaledThreads = Integer.MAX_VALUE;
+	private static volatile int ratePerMinute = FrameworkConstants.RATE_PER_MINUTE;
+	private static volatile int blockedBackoffMs = FrameworkConstants.BLOCKED_BACKOFF_MS;
+	private static volatile int screenshotSampleFirst = FrameworkConstants.SCREENSHOT_SAMPLE_FIRST;
+	private static volatile int screenshotSampleEvery = FrameworkConstants.SCREENSHOT_SAMPLE_EVERY;
+
+	private static final Properties FILE = new Properties();
+	private static final Properties OVERRIDES = new Properties();
+
+	private static boolean started;
+	private static long fileStamp = -1;
+	private static long nextPermitNanos;
+
+	private RuntimeControls() {
+	}
+
+	/**
+	 * Reads the control file once and starts the watcher (and the control
+	 * socket if control.port &gt; 0). Idempotent; called at run start.
+	 */
+	public static void start() {
+		synchronized (LOCK) {
+			if (started)
+				return;
+			started = true;
+		}
+		reloadIfChanged();
+
+		Thread watcher = new Thread(() -> {
+			while (true) {
+				try {
+					Thread.sleep(Math.max(100, FrameworkConstants.CONTROL_POLL_MS));
+				} catch (InterruptedException e) {
+					return;
+				}
+				reloadIfChanged();
+			}
+		}, "control-file-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+
+		if (FrameworkConstants.CONTROL_PORT > 0)
+			startSocket(FrameworkConstants.CONTROL_PORT);
+	}
+
+	/**
+	 * Gate called by a worker before each UPC: blocks while the run is paused or
+	 * the worker's slot is above the active thread count, then waits for a rate
+	 * permit.
+	 *
+	 * @param slot zero-based worker slot
+	 * @param stop stop condition of the caller (checked while parked)
+	 * @return false if the worker must stop (drain requested or stop true)
+	 */
+	public static boolean awaitTurn(int slot, BooleanSupplier stop) {
+		boolean parked = false;
+		while (true) {
+			if (isDraining() || stop.getAsBoolean())
+				return false;
+			if (!"pause".equals(state) && slot < activeThreads())
+				break;
+			if (!parked) {
+				System.out.println("Worker slot " + (slot + 1) + " parked (" + describe() + ")");
+				parked = true;
+			}
+			if (!sleep(500))
+				return false;
+		}
+		if (parked)
+			System.out.println("Worker slot " + (slot + 1) + " resumed");
+		return acquirePermit();
+	}
+
+	/**
+	 * Sets the worker count chosen by the autoscaler. The effective count is the
+	 * smaller of this and the threads setting of the control file.
+	 *
+	 * @param n active workers (&lt;= 0: no autoscaler limit)
+	 */
+	public static void setAutoscaledThreads(int n) {
+		autoscaledThreads = n <= 0 ? Integer.MAX_VALUE : n;
+	}
+
+	/** Effective number of active worker slots (Integer.MAX_VALUE: all). */
+	public static int activeThreads() {
+		return Math.min(threads, autoscaledThreads);
+	}
+
+	/** Returns true once drain-and-stop was requested. */
+	public static boolean isDraining() {
+		return "drain".equals(state);
+	}
+
+	/** Current backoff after a blocked/rate-limited page in ms. */
+	public static int blockedBackoffMs() {
+		return blockedBackoffMs;
+	}
+
+	/** Current screenshot sampling: first N per status. */
+	public static int screenshotSampleFirst() {
+		return screenshotSampleFirst;
+	}
+
+	/** Current screenshot sampling: then 1 in M. */
+	public static int screenshotSampleEvery() {
+		return screenshotSampleEvery;
+	}
+
+	/** Effective settings on one line. */
+	public static String describe() {
+		return "state=" + state + " threads=" + (threads == Integer.MAX_VALUE ? "all" : String.valueOf(threads))
+				+ (autoscaledThreads == Integer.MAX_VALUE ? "" : " autoscaled=" + autoscaledThreads)
+				+ " rate.per.minute=" + ratePerMinute + " blocked.backoff.ms=" + blockedBackoffMs
+				+ " screenshot.sample.first=" + screenshotSampleFirst + " screenshot.sample.every="
+				+ screenshotSampleEvery;
+	}
+
+	/** Spaces UPC starts of all workers by 60000 / rate.per.minute ms. */
+	private static boolean acquirePermit() {
+		int rate = ratePerMinute;
+		if (rate <= 0)
+			return true;
+		long wait;
+		synchronized (LOCK) {
+			long now = System.nanoTime();
+			long slot = Math.max(now, nextPermitNanos);
+			nextPermitNanos = slot + 60_000_000_000L / rate;
+			wait = slot - now;
+		}
+		return wait <= 0 || sleep(wait / 1_000_000L);
+	}
+
+	/** Re-reads the control file if its modification time changed (or it appeared/disappeared). */
+	private static void reloadIfChanged() {
+		Path file = Paths.get(FrameworkConstants.CONTROL_FILE);
+		try {
+			long stamp = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+			synchronized (LOCK) {
+				if (stamp == fileStamp)
+					return;
+				fileStamp = stamp;
+				FILE.clear();
+				if (stamp != 0) {
+					try (InputStream in = Files.newInputStream(file)) {
+						FILE.load(in);
+					}
+				}
+				applyLocked("control file " + file);
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Control file " + file + " ignored: " + e.getMessage());
+		}
+	}
+
+	/** Recomputes effective values from config defaults, the control file and socket overrides. */
+	private static void applyLocked(String source) {
+		Properties p = new Properties();
+		p.putAll(FILE);
+		p.putAll(OVERRIDES);
+
+		String before = describe();
+		String s = p.getProperty("state", "run").trim().toLowerCase();
+		if (!s.equals("run") && !s.equals("pause") && !s.equals("drain"))
+			throw new IllegalArgumentException("state must be run, pause or drain: " + s);
+		int t = intValue(p, "threads", Integer.MAX_VALUE);
+		int rate = intValue(p, "rate.per.minute", FrameworkConstants.RATE_PER_MINUTE);
+		int backoff = intValue(p, "blocked.backoff.ms", FrameworkConstants.BLOCKED_BACKOFF_MS);
+		int first = intValue(p, "screenshot.sample.first", FrameworkConstants.SCREENSHOT_SAMPLE_FIRST);
+		int every = intValue(p, "screenshot.sample.every", FrameworkConstants.SCREENSHOT_SAMPLE_EVERY);
+
+		// Parsed completely before anything is applied: a bad file changes nothing.
+		threads = t <= 0 ? Integer.MAX_VALUE : t;
+		ratePerMinute = rate;
+		blockedBackoffMs = backoff;
+		screenshotSampleFirst = first;
+		screenshotSampleEvery = every;
+		state = s;
+
+		String after = describe();
+		if (!after.equals(before))
+			System.out.println("Runtime controls (" + source + "): " + after);
+	}
+
+	private static int intValue(Properties p, String key, int defaultValue) {
+		String v = p.getProperty(key);
+		if (v == null || v.trim().isEmpty())
+			return defaultValue;
+		try {
+			return Integer.parseInt(v.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid int for " + key + ": " + v, e);
+		}
+	}
+
+	private static void startSocket(int port) {
+		Thread server = new Thread(() -> {
+			try (ServerSocket ss = new ServerSocket(port, 5, InetAddress.getLoopbackAddress())) {
+				System.out.println("Runtime control socket listening on 127.0.0.1:" + port);
+				while (true) {
+					try (Socket s = ss.accept()) {
+						serve(s);
+					} catch (IOException e) {
+						System.out.println("Control connection failed: " + e.getMessage());
+					}
+				}
+			} catch (IOException e) {
+				System.out.println("Runtime control socket disabled: " + e.getMessage());
+			}
+		}, "control-socket");
+		server.setDaemon(true);
+		server.start();
+	}
+
+	private static void serve(Socket s) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+		BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			String reply;
+			synchronized (LOCK) {
+				Properties saved = (Properties) OVERRIDES.clone();
+				try {
+					if (line.equalsIgnoreCase("RESET")) {
+						OVERRIDES.clear();
+						applyLocked("control socket");
+					} else if (line.contains("=")) {
+						int eq = line.indexOf('=');
+						OVERRIDES.setProperty(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+						applyLocked("control socket");
+					} else if (!line.equalsIgnoreCase("STATUS")) {
+						throw new IllegalArgumentException("expected key=value, STATUS or RESET");
+					}
+					reply = describe();
+				} catch (RuntimeException e) {
+					OVERRIDES.clear();
+					OVERRIDES.putAll(saved);
+					reply = "ERROR " + e.getMessage();
+				}
+			}
+			out.write(reply);
+			out.newLine();
+			out.flush();
+		}
+	}
+
+	private static boolean sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
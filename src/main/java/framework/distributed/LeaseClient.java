@@ -0,0 +1,143 @@
+package framework.distributed;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Worker-side connection to a {@link LeaseCoordinator}. One instance per
+ * worker thread (not thread-safe); it remembers the current lease so results
+ * can be reported with just the UPC and its CSV row.
+ */
+public final class LeaseClient implements AutoCloseable {
+
+	private final String host;
+	private final int port;
+	private final String workerId;
+
+	private Socket socket;
+	private BufferedReader in;
+	private BufferedWriter out;
+	private long leaseId = -1;
+
+	/**
+	 * Creates a client; the connection is opened on first use.
+	 *
+	 * @param host     coordinator host
+	 * @param port     coordinator port
+	 * @param workerId identifier shown in coordinator logs
+	 */
+	public LeaseClient(String host, int port, String workerId) {
+		this.host = host;
+		this.port = port;
+		this.workerId = workerId.replace(' ', '_');
+	}
+
+	/**
+	 * Requests the next lease, waiting while other workers still hold leases.
+	 *
+	 * @return UPCs of the new lease, or null when the global queue is empty
+	 */
+	public List<String> acquire() {
+		while (true) {
+			String reply = call("LEASE " + workerId);
+			if (reply == null || reply.equals("DONE")) {
+				leaseId = -1;
+				return null;
+			}
+			if (reply.startsWith("WAIT ")) {
+				sleep(Long.parseLong(reply.substring(5).trim()));
+				continue;
+			}
+			if (reply.startsWith("LEASE ")) {
+				String[] parts = reply.split(" ");
+				leaseId = Long.parseLong(parts[1]);
+				return new ArrayList<>(Arrays.asList(parts).subList(2, parts.length));
+			}
+			throw new RuntimeException("Unexpected coordinator reply: " + reply);
+		}
+	}
+
+	/**
+	 * Reports one processed UPC of the current lease for central persistence.
+	 *
+	 * @param upc    processed UPC
+	 * @param csvRow formatted CSV row (see CSVUtils.formatFull)
+	 */
+	public void report(String upc, String csvRow) {
+		if (leaseId < 0)
+			throw new IllegalStateException("No active lease for UPC: " + upc);
+		String reply = call("RESULT " + leaseId + " " + upc + " " + csvRow);
+		if (reply == null)
+			throw new RuntimeException("Coordinator connection lost while reporting UPC: " + upc);
+		if (reply.startsWith("ERROR"))
+			throw new RuntimeException("Coordinator rejected result for UPC " + upc + ": " + reply);
+	}
+
+	/** Returns unfinished UPCs of the current lease to the queue (best-effort). */
+	public void release() {
+		if (leaseId < 0)
+			return;
+		try {
+			call("RELEASE " + leaseId);
+		} catch (RuntimeException ignored) {
+			// The lease will expire instead.
+		}
+		leaseId = -1;
+	}
+
+	/** Sends one request line and returns the reply, or null if the coordinator closed. */
+	private String call(String request) {
+		try {
+			if (socket == null)
+				connect();
+			out.write(request);
+			out.newLine();
+			out.flush();
+			return in.readLine();
+		} catch (IOException e) {
+			closeQuietly();
+			throw new RuntimeException("Coordinator unreachable at " + host + ":" + port, e);
+		}
+	}
+
+	private void connect() throws IOException {
+		socket = new Socket(host, port);
+		socket.setSoTimeout(60000);
+		in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(Math.max(0, ms));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for a lease", e);
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			if (socket != null)
+				socket.close();
+		} catch (IOException ignored) {
+		}
+		socket = null;
+		in = null;
+		out = null;
+	}
+
+	/** Closes the connection. */
+	@Override
+	public void close() {
+		closeQuietly();
+	}
+}
@@ -0,0 +1,330 @@
+package framework.distributed;
+
+import framework.config.FrameworkConstants;
+import framework.utils.CSVUtils;
+import framework.utils.FileUtils;
+import framework.utils.Gtin;
+import framework.utils.ProgressTracker;
+import framework.utils.ResultStore;
+import framework.utils.UpcPriority;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Owns the global UPC queue and the checkpoint, and hands out small leases to
+ * worker JVMs over a line-based protocol on a local TCP socket. Faster workers
+ * simply come back for more, so every node stays busy until the queue drains.
+ *
+ * <p>Protocol (one UTF-8 line per request and per reply):
+ *
+ * <pre>
+ * LEASE &lt;workerId&gt;                 -&gt; LEASE &lt;leaseId&gt; &lt;upc&gt; [&lt;upc&gt; ...] | WAIT &lt;ms&gt; | DONE
+ * RESULT &lt;leaseId&gt; &lt;upc&gt; &lt;csvRow&gt; -&gt; OK | DUPLICATE
+ * RELEASE &lt;leaseId&gt;                -&gt; OK
+ * </pre>
+ *
+ * <p>A lease expires when no result was reported for it within lease.ttl.ms;
+ * its unfinished UPCs go back into the queue and are reissued to another
+ * worker. Results are persisted centrally: rows go to rolling batch CSVs of
+ * batch.size rows and every UPC is checkpointed via {@link ProgressTracker}.
+ *
+ * <p>Start the coordinator, then any number of workers on the same box:
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=framework.distributed.LeaseCoordinator
+ * mvn test -DsuiteXmlFile=testng-parallel.xml -Dlease.worker=true -Dlease.workers=3
+ * </pre>
+ */
+public final class LeaseCoordinator {
+
+	/** Poll interval suggested to workers while leases are still outstanding. */
+	static final long WAIT_MS = 2000;
+
+	/** Queued UPCs by GTIN-14 key (value: the UPC as given in the input). */
+	private final Map<String, String> pending = new LinkedHashMap<>();
+	private final Set<String> done;
+	private final Map<Long, Lease> leases = new HashMap<>();
+	private final int total;
+	private final int leaseSize;
+	private final long leaseTtlMs;
+	private final CountDownLatch finished = new CountDownLatch(1);
+	/** Receives (upc, csvRow) of every first result; batch CSVs + checkpoint by default. */
+	private final BiConsumer<String, String> sink;
+
+	private long nextLeaseId = 1;
+	private int batchNumber;
+	private int rowsInBatch;
+	private String csvPath;
+
+	/** One outstanding lease. */
+	private static final class Lease {
+		final long id;
+		final String worker;
+		/** Unreported UPCs by GTIN-14 key, as {@link #pending}. */
+		final Map<String, String> remaining;
+		long expiresAt;
+
+		Lease(long id, String worker, Map<String, String> remaining, long expiresAt) {
+			this.id = id;
+			this.worker = worker;
+			this.remaining = remaining;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Creates a coordinator for the given work list.
+	 *
+	 * @param upcs       UPCs still to process (already filtered by checkpoint)
+	 * @param done       UPCs already processed in previous runs
+	 * @param leaseSize  UPCs per lease
+	 * @param leaseTtlMs lease lifetime without progress
+	 */
+	public LeaseCoordinator(List<String> upcs, Set<String> done, int leaseSize, long leaseTtlMs) {
+		this(upcs, done, leaseSize, leaseTtlMs, null);
+	}
+
+	/** As above, handing results to sink instead of the batch CSVs and checkpoint (tests). */
+	LeaseCoordinator(List<String> upcs, Set<String> done, int leaseSize, long leaseTtlMs,
+			BiConsumer<String, String> sink) {
+		this.done = Gtin.keys(done);
+		for (String raw : upcs) {
+			// A UPC travels as one space-separated token of the line protocol.
+			String upc = raw.trim().replaceAll("\\s+", "_");
+			String key = Gtin.key(upc);
+			if (!upc.isEmpty() && !this.done.contains(key))
+				this.pending.putIfAbsent(key, upc);
+		}
+		this.total = this.pending.size();
+		this.leaseSize = Math.max(1, leaseSize);
+		this.leaseTtlMs = Math.max(1000, leaseTtlMs);
+		this.sink = (sink != null) ? sink : this::persist;
+	}
+
+	/** Entry point: loads input + checkpoint and serves leases until the queue is empty. */
+	public static void main(String[] args) throws Exception {
+		List<String> upcs = UpcPriority.order(FileUtils.readUpcs(FrameworkConstants.UPC_FILE));
+		Set<String> processed = ProgressTracker.loadProcessed();
+
+		LeaseCoordinator coordinator = new LeaseCoordinator(upcs, processed, FrameworkConstants.LEASE_SIZE,
+				FrameworkConstants.LEASE_TTL_MS);
+		coordinator.serve(FrameworkConstants.COORDINATOR_HOST, FrameworkConstants.COORDINATOR_PORT);
+	}
+
+	/**
+	 * Binds the server socket and blocks until every UPC was reported, then
+	 * keeps answering DONE for a short grace period so idle workers exit.
+	 *
+	 * @param host bind address (normally loopback)
+	 * @param port TCP port
+	 */
+	public void serve(String host, int port) throws IOException, InterruptedException {
+		ExecutorService handlers = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "lease-conn");
+			t.setDaemon(true);
+			return t;
+		});
+		ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "lease-reaper");
+			t.setDaemon(true);
+			return t;
+		});
+
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName(host))) {
+			System.out.println("LeaseCoordinator listening on " + host + ":" + port + " | pending=" + total
+					+ " | alreadyDone=" + done.size() + " | leaseSize=" + leaseSize + " | ttlMs=" + leaseTtlMs);
+
+			synchronized (this) {
+				checkFinished();
+			}
+			reaper.scheduleWithFixedDelay(this::expireLeases, 1, 1, TimeUnit.SECONDS);
+
+			Thread acceptor = new Thread(() -> {
+				while (!server.isClosed()) {
+					try {
+						Socket s = server.accept();
+						handlers.submit(() -> handle(s));
+					} catch (IOException e) {
+						// server closed
+					}
+				}
+			}, "lease-accept");
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			finished.await();
+			Thread.sleep(WAIT_MS * 2 + 1000);
+		} finally {
+			reaper.shutdownNow();
+			handlers.shutdownNow();
+			synchronized (this) {
+				if (csvPath != null)
+					CSVUtils.close(csvPath);
+			}
+			ResultStore.closeWriter();
+		}
+		System.out.println("LeaseCoordinator finished: " + done.size() + " UPCs processed in total.");
+	}
+
+	/** Serves one worker connection until it disconnects. */
+	private void handle(Socket socket) {
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+				BufferedWriter out = new BufferedWriter(
+						new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				out.write(dispatch(line));
+				out.newLine();
+				out.flush();
+			}
+		} catch (IOException e) {
+			// Worker went away; its lease expires and is reissued.
+		}
+	}
+
+	/** Parses one request line and returns the reply line. */
+	String dispatch(String line) {
+		String[] parts = line.split(" ", 4);
+		try {
+			switch (parts[0]) {
+			case "LEASE":
+				return lease(parts.length > 1 ? parts[1] : "unknown");
+			case "RESULT":
+				return result(Long.parseLong(parts[1]), parts[2], parts[3]);
+			case "RELEASE":
+				return release(Long.parseLong(parts[1]));
+			default:
+				return "ERROR unknown command";
+			}
+		} catch (RuntimeException e) {
+			return "ERROR " + e.getClass().getSimpleName();
+		}
+	}
+
+	private synchronized String lease(String worker) {
+		if (pending.isEmpty())
+			return leases.isEmpty() ? "DONE" : "WAIT " + WAIT_MS;
+
+		Map<String, String> upcs = new LinkedHashMap<>();
+		Iterator<Map.Entry<String, String>> it = pending.entrySet().iterator();
+		while (it.hasNext() && upcs.size() < leaseSize) {
+			Map.Entry<String, String> e = it.next();
+			upcs.put(e.getKey(), e.getValue());
+			it.remove();
+		}
+
+		Lease lease = new Lease(nextLeaseId++, worker, upcs, System.currentTimeMillis() + leaseTtlMs);
+		leases.put(lease.id, lease);
+		return "LEASE " + lease.id + " " + String.join(" ", upcs.values());
+	}
+
+	private synchronized String result(long leaseId, String upc, String row) {
+		// Workers may report a UPC in another spelling (trimmed, other GTIN length).
+		String key = Gtin.key(upc);
+		Lease lease = leases.get(leaseId);
+		if (lease != null) {
+			lease.remaining.remove(key);
+			lease.expiresAt = System.currentTimeMillis() + leaseTtlMs;
+			if (lease.remaining.isEmpty())
+				leases.remove(leaseId);
+		}
+
+		if (!done.add(key)) {
+			checkFinished();
+			return "DUPLICATE";
+		}
+
+		// A late result from an expired lease: its UPC may be queued again.
+		pending.remove(key);
+		sink.accept(upc, row);
+
+		if (done.size() % 100 == 0)
+			System.out.println("LeaseCoordinator progress: pending=" + pending.size() + " | leases=" + leases.size()
+					+ " | done=" + done.size());
+
+		checkFinished();
+		return "OK";
+	}
+
+	private synchronized String release(long leaseId) {
+		Lease lease = leases.remove(leaseId);
+		if (lease != null)
+			requeue(lease);
+		checkFinished();
+		return "OK";
+	}
+
+	/** Reissues UPCs of leases whose worker stopped reporting. */
+	private void expireLeases() {
+		expireLeases(System.currentTimeMillis());
+	}
+
+	/** Reissues UPCs of leases that expired at or before now. */
+	synchronized void expireLeases(long now) {
+		Iterator<Lease> it = leases.values().iterator();
+		List<Lease> expired = new ArrayList<>();
+		while (it.hasNext()) {
+			Lease lease = it.next();
+			if (lease.expiresAt <= now) {
+				expired.add(lease);
+				it.remove();
+			}
+		}
+		for (Lease lease : expired) {
+			System.out.println("Lease " + lease.id + " of worker " + lease.worker + " expired -> reissuing "
+					+ lease.remaining.size() + " UPCs.");
+			requeue(lease);
+		}
+	}
+
+	private void requeue(Lease lease) {
+		lease.remaining.forEach((key, upc) -> {
+			if (!done.contains(key))
+				pending.putIfAbsent(key, upc);
+		});
+	}
+
+	/** Appends the row to the current rolling batch CSV and checkpoints the UPC. */
+	private void persist(String upc, String row) {
+		if (csvPath == null || rowsInBatch >= FrameworkConstants.BATCH_SIZE) {
+			if (csvPath != null)
+				CSVUtils.close(csvPath);
+			batchNumber++;
+			rowsInBatch = 0;
+			csvPath = FrameworkConstants.getResultCsvPath(batchNumber);
+			CSVUtils.initCsvFull(csvPath);
+		}
+		CSVUtils.appendLine(csvPath, row);
+		ResultStore.record(row);
+		rowsInBatch++;
+		ProgressTracker.markProcessed(upc);
+	}
+
+	private void checkFinished() {
+		if (pending.isEmpty() && leases.isEmpty())
+			finished.countDown();
+	}
+}
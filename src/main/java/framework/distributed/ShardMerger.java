@@ -0,0 +1,159 @@
+package framework.distributed;
+
+import framework.config.FrameworkConstants;
+import framework.utils.FileUtils;
+import framework.utils.Gtin;
+import framework.utils.ProgressTracker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Post-run merge step for sharded scrapes. Combines every shard's result CSVs
+ * into one merged CSV (one row per GTIN-14 key, the most recent row wins) and unions
+ * every shard checkpoint into the unsharded checkpoint file, so a later
+ * unsharded run resumes from the combined progress.
+ *
+ * <p>Run after all shards finished and their output directories were copied
+ * into one {@code scraping.output.dir}:
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=framework.distributed.ShardMerger
+ * </pre>
+ */
+public final class ShardMerger {
+
+	private static final String SHARD_MARKER = "_shard";
+
+	private ShardMerger() {
+	}
+
+	/** Entry point: merges shard outputs found under the configured output dir. */
+	public static void main(String[] args) {
+		Path outputDir = Paths.get(args.length > 0 ? args[0] : FrameworkConstants.SCRAPING_OUTPUT_DIR);
+		Path progressDir = Paths.get(args.length > 1 ? args[1] : ProgressTracker.PROGRESS_DIR);
+
+		Path mergedCsv = outputDir.resolve("results_merged_" + FrameworkConstants.timestamp() + ".csv");
+		int rows = mergeCsvs(outputDir, mergedCsv);
+		System.out.println("Merged " + rows + " UPC rows into " + mergedCsv);
+
+		Path checkpoint = progressDir.resolve("checkpoint.txt");
+		int done = mergeCheckpoints(progressDir, checkpoint);
+		System.out.println("Merged checkpoint now holds " + done + " UPCs: " + checkpoint);
+	}
+
+	/**
+	 * Merges all shard result CSVs in a directory into one file with a single
+	 * header. Files are read oldest run first (by the timestamp in their name,
+	 * since downloaded artifacts lose their modification times) so a UPC
+	 * re-scraped in a later run keeps its latest row.
+	 *
+	 * @param outputDir directory containing results_batch_*_shard*.csv files
+	 * @param target    merged CSV path
+	 * @return number of distinct UPC rows written
+	 */
+	public static int mergeCsvs(Path outputDir, Path target) {
+		List<Path> files = list(outputDir, "results_batch_", ".csv");
+		String header = null;
+		Map<String, String> rowsByUpc = new LinkedHashMap<>();
+
+		for (Path f : files) {
+			try (BufferedReader br = Files.newBufferedReader(f)) {
+				String first = br.readLine();
+				if (header == null)
+					header = first;
+				String line;
+				while ((line = br.readLine()) != null) {
+					if (!line.isEmpty())
+						rowsByUpc.put(Gtin.key(firstColumn(line)), line);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to read shard CSV: " + f, e);
+			}
+		}
+
+		if (header == null)
+			return 0;
+
+		try {
+			if (target.getParent() != null)
+				Files.createDirectories(target.getParent());
+			try (BufferedWriter bw = Files.newBufferedWriter(target)) {
+				bw.write(header);
+				bw.newLine();
+				for (String line : rowsByUpc.values()) {
+					bw.write(line);
+					bw.newLine();
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write merged CSV: " + target, e);
+		}
+		return rowsByUpc.size();
+	}
+
+	/**
+	 * Unions all shard checkpoint files (plus any existing target) into target.
+	 *
+	 * @param progressDir directory containing checkpoint_shard*.txt files
+	 * @param target      unsharded checkpoint path
+	 * @return number of distinct UPCs in the merged checkpoint
+	 */
+	public static int mergeCheckpoints(Path progressDir, Path target) {
+		Set<String> done = new LinkedHashSet<>();
+		List<Path> sources = new ArrayList<>();
+		if (Files.exists(target))
+			sources.add(target);
+		sources.addAll(list(progressDir, "checkpoint_", ".txt"));
+
+		for (Path f : sources) {
+			try (Stream<String> lines = Files.lines(f)) {
+				lines.map(String::trim).filter(s -> !s.isEmpty()).forEach(done::add);
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to read checkpoint: " + f, e);
+			}
+		}
+
+		try {
+			if (target.getParent() != null)
+				Files.createDirectories(target.getParent());
+			Files.write(target, done);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write merged checkpoint: " + target, e);
+		}
+		return done.size();
+	}
+
+	/** Lists shard files with the given prefix/suffix, oldest run first. */
+	private static List<Path> list(Path dir, String prefix, String suffix) {
+		if (!Files.isDirectory(dir))
+			return new ArrayList<>();
+		try (Stream<Path> s = Files.list(dir)) {
+			return s.filter(p -> {
+				String n = p.getFileName().toString();
+				return n.startsWith(prefix) && n.endsWith(suffix) && n.contains(SHARD_MARKER);
+			}).sorted(FileUtils.byRunTimestamp()).collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to list: " + dir, e);
+		}
+	}
+
+	/** Extracts the (quoted) UPC column from a row written by CSVUtils. */
+	private static String firstColumn(String line) {
+		int end = line.indexOf("\",");
+		if (line.startsWith("\"") && end > 0)
+			return line.substring(1, end);
+		int comma = line.indexOf(',');
+		return comma < 0 ? line : line.substring(0, comma);
+	}
+}
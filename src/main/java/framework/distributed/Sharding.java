@@ -0,0 +1,83 @@
+package framework.distributed;
+
+import framework.config.FrameworkConstants;
+import framework.utils.Gtin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic hash partitioning of the UPC input across independent JVMs.
+ *
+ * <p>Run N processes (matrix jobs, runners or local JVMs) with the same input
+ * file and {@code -Dshard.count=N -Dshard.index=0..N-1}; every UPC lands in
+ * exactly one shard. The hash is FNV-1a over the trimmed UPC characters, so
+ * the assignment is stable across JVM versions, machines and runs (unlike
+ * {@link String#hashCode()} it is also spelled out here, not an implementation
+ * detail).
+ */
+public final class Sharding {
+
+	private static final int FNV_OFFSET = 0x811c9dc5;
+	private static final int FNV_PRIME = 0x01000193;
+
+	private Sharding() {
+	}
+
+	/** Returns true when this JVM is configured to process only one shard. */
+	public static boolean isSharded() {
+		return FrameworkConstants.SHARD_COUNT > 1;
+	}
+
+	/**
+	 * Returns the shard a UPC belongs to.
+	 *
+	 * @param upc   UPC string (hashed by its GTIN-14 key, so every form of a code lands in one shard)
+	 * @param count total number of shards (must be &gt;= 1)
+	 * @return shard index in [0, count)
+	 */
+	public static int shardOf(String upc, int count) {
+		if (count <= 1)
+			return 0;
+		String t = Gtin.key(upc);
+		int h = FNV_OFFSET;
+		for (int i = 0; i < t.length(); i++) {
+			h ^= t.charAt(i);
+			h *= FNV_PRIME;
+		}
+		return Integer.remainderUnsigned(h, count);
+	}
+
+	/** Returns true if the UPC belongs to the shard configured for this JVM. */
+	public static boolean inCurrentShard(String upc) {
+		return !isSharded() || shardOf(upc, FrameworkConstants.SHARD_COUNT) == FrameworkConstants.SHARD_INDEX;
+	}
+
+	/**
+	 * Keeps only the UPCs owned by the configured shard, preserving input order.
+	 *
+	 * @param upcs full input list
+	 * @return the same list when not sharded, otherwise this shard's slice
+	 */
+	public static List<String> filter(List<String> upcs) {
+		if (!isSharded())
+			return upcs;
+
+		List<String> slice = new ArrayList<>(upcs.size() / FrameworkConstants.SHARD_COUNT + 16);
+		for (String upc : upcs) {
+			if (inCurrentShard(upc))
+				slice.add(upc);
+		}
+		return slice;
+	}
+
+	/**
+	 * File name suffix identifying this shard's outputs, e.g. {@code _shard2of4}.
+	 * Empty when not sharded so unsharded runs keep their original file names.
+	 */
+	public static String suffix() {
+		if (!isSharded())
+			return "";
+		return "_shard" + FrameworkConstants.SHARD_INDEX + "of" + FrameworkConstants.SHARD_COUNT;
+	}
+}
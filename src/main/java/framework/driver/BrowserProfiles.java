@@ -0,0 +1,197 @@
+package framework.driver;
+
+import framework.config.FrameworkConstants;
+import framework.pages.LoginPage;
+import org.openqa.selenium.WebDriver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+/**
+ * Persistent Chrome profiles reused across browser starts and runs. Each
+ * browser gets an exclusive slot directory under browser.profile.root (locked
+ * with a file lock until the browser process exits), so its HTTP disk cache
+ * for the storefront's JS/CSS/fonts survives restarts, recoveries and CI runs
+ * (when the root is cached). An optional template profile (e.g. consent cookie
+ * already accepted) is overlaid onto the slot at every launch.
+ *
+ * <p>Build a template once with:
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=framework.driver.BrowserProfiles -Dbrowser.profile.template=profile-template
+ * </pre>
+ */
+public final class BrowserProfiles {
+
+	/** Upper bound on slots; beyond it browsers fall back to a fresh temporary profile. */
+	private static final int MAX_SLOTS = 64;
+
+	/** Exclusive use of one slot directory. */
+	public static final class Lease {
+		private final Path dir;
+		private final FileChannel channel;
+		private final FileLock lock;
+
+		Lease(Path dir, FileChannel channel, FileLock lock) {
+			this.dir = dir;
+			this.channel = channel;
+			this.lock = lock;
+		}
+
+		/** Returns the profile directory (absolute). */
+		public Path dir() {
+			return dir;
+		}
+
+		/** Releases the slot. */
+		public synchronized void release() {
+			try {
+				if (lock.isValid())
+					lock.release();
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	private BrowserProfiles() {
+	}
+
+	/** Returns true when persistent profiles are configured (root set and not "none"). */
+	public static boolean isEnabled() {
+		String root = FrameworkConstants.BROWSER_PROFILE_ROOT;
+		return !root.isEmpty() && !"none".equalsIgnoreCase(root);
+	}
+
+	/**
+	 * Locks a free slot and prepares it (template overlay, stale Chrome locks
+	 * removed).
+	 *
+	 * @return lease, or null if disabled or every slot is busy
+	 */
+	public static Lease acquire() {
+		if (!isEnabled())
+			return null;
+		try {
+			Path root = Paths.get(FrameworkConstants.BROWSER_PROFILE_ROOT).toAbsolutePath();
+			Files.createDirectories(root);
+			for (int slot = 0; slot < MAX_SLOTS; slot++) {
+				FileChannel channel = FileChannel.open(root.resolve("slot-" + slot + ".lock"), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE);
+				FileLock lock;
+				try {
+					lock = channel.tryLock();
+				} catch (OverlappingFileLockException e) {
+					lock = null;
+				}
+				if (lock == null) {
+					channel.close();
+					continue;
+				}
+				Path dir = root.resolve("slot-" + slot);
+				prepare(dir);
+				return new Lease(dir, channel, lock);
+			}
+		} catch (IOException e) {
+			System.out.println("Browser profile slot unavailable, using a temporary profile: " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Releases the lease when the browser of the session exits. If the process
+	 * cannot be found (non-Linux), the slot stays locked until the JVM exits.
+	 *
+	 * @param lease slot lease used for the session
+	 */
+	public static void releaseOnExit(Lease lease) {
+		DriverHealth.findBrowserProcess(lease.dir().toString())
+				.ifPresent(browser -> browser.onExit().thenRun(lease::release));
+	}
+
+	/** Overlays the template and removes singleton locks left by a killed Chrome. */
+	private static void prepare(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		for (String name : new String[] { "SingletonLock", "SingletonSocket", "SingletonCookie" })
+			Files.deleteIfExists(dir.resolve(name));
+
+		String template = FrameworkConstants.BROWSER_PROFILE_TEMPLATE;
+		if (template.isEmpty())
+			return;
+		Path src = Paths.get(template);
+		if (!Files.isDirectory(src))
+			return;
+		try (Stream<Path> files = Files.walk(src)) {
+			files.forEach(p -> {
+				Path target = dir.resolve(src.relativize(p).toString());
+				try {
+					if (Files.isDirectory(p))
+						Files.createDirectories(target);
+					else
+						Files.copy(p, target, StandardCopyOption.REPLACE_EXISTING);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Seeds browser.profile.template: opens the store once, accepts the cookie
+	 * popup and copies the resulting profile without its caches.
+	 */
+	public static void main(String[] args) throws IOException {
+		String template = FrameworkConstants.BROWSER_PROFILE_TEMPLATE;
+		if (template.isEmpty() || !isEnabled())
+			throw new RuntimeException(
+					"Set browser.profile.root and -Dbrowser.profile.template=<dir> to build a template.");
+
+		WebDriver driver = DriverFactory.initDriver();
+		String profileDir = DriverHealth.userDataDir(driver);
+		try {
+			new LoginPage(driver).open();
+		} finally {
+			driver.quit();
+		}
+		if (profileDir == null)
+			throw new RuntimeException("Browser did not report its profile directory.");
+
+		Path src = Paths.get(profileDir);
+		Path out = Paths.get(template);
+		try (Stream<Path> files = Files.walk(src)) {
+			files.filter(p -> !isCache(src.relativize(p))).forEach(p -> {
+				Path target = out.resolve(src.relativize(p).toString());
+				try {
+					if (Files.isDirectory(p))
+						Files.createDirectories(target);
+					else if (!p.getFileName().toString().startsWith("Singleton"))
+						Files.copy(p, target, StandardCopyOption.REPLACE_EXISTING);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		System.out.println("Profile template written to " + out.toAbsolutePath());
+	}
+
+	/** Cache directories are per slot and never copied into the template. */
+	private static boolean isCache(Path relative) {
+		for (Path part : relative) {
+			String n = part.toString();
+			if (n.equals("Cache") || n.equals("Code Cache") || n.equals("GPUCache") || n.equals("Service Worker"))
+				return true;
+		}
+		return false;
+	}
+}
@@ -1,6 +1,7 @@
 package framework.driver;
 
 import framework.config.FrameworkConstants;
+import framework.metrics.StageMetrics;
 import io.github.bonigarcia.wdm.WebDriverManager;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.PageLoadStrategy;
@@ -26,6 +27,18 @@ public final class DriverFactory {
 	 * @return initialized WebDriver
 	 */
 	public static WebDriver initDriver() {
+		long t = StageMetrics.start();
+		try {
+			WebDriver driver = createDriver();
+			StageMetrics.record(StageMetrics.Stage.DRIVER_START, "ok", t);
+			return driver;
+		} catch (RuntimeException e) {
+			StageMetrics.record(StageMetrics.Stage.DRIVER_START, "error", t);
+			throw e;
+		}
+	}
+
+	private static WebDriver createDriver() {
 		WebDriverManager.chromedriver().setup();
 
 		ChromeOptions options = new ChromeOptions();
@@ -41,6 +54,13 @@ public final class DriverFactory {
 		options.addArguments("--disable-notifications");
 		options.addArguments("--disable-gpu");
 
+		if (FrameworkConstants.ENGINE_PIPELINE) {
+			// The prefetch tab loads in the background; keep Chrome from throttling it.
+			options.addArguments("--disable-background-timer-throttling");
+			options.addArguments("--disable-renderer-backgrounding");
+			options.addArguments("--disable-backgrounding-occluded-windows");
+		}
+
 		if (FrameworkConstants.HEADLESS) {
 			options.addArguments("--headless=new");
 		}
@@ -52,7 +72,24 @@ public final class DriverFactory {
 		options.setExperimentalOption("excludeSwitches", new String[] { "enable-automation" });
 		options.setExperimentalOption("useAutomationExtension", false);
 
-		WebDriver driver = new ChromeDriver(options);
+		// Persistent profile slot: warm disk cache + template cookies across restarts and runs
+		BrowserProfiles.Lease profile = BrowserProfiles.acquire();
+		if (profile != null) {
+			options.addArguments("--user-data-dir=" + profile.dir());
+			if (FrameworkConstants.BROWSER_CACHE_SIZE_MB > 0)
+				options.addArguments("--disk-cache-size=" + FrameworkConstants.BROWSER_CACHE_SIZE_MB * 1024L * 1024L);
+		}
+
+		WebDriver driver;
+		try {
+			driver = new ChromeDriver(options);
+		} catch (RuntimeException e) {
+			if (profile != null)
+				profile.release();
+			throw e;
+		}
+		if (profile != null)
+			BrowserProfiles.releaseOnExit(profile);
 		driver.manage().window().maximize();
 		driver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(60));
 		driver.manage().timeouts().scriptTimeout(Duration.ofSeconds(30));
@@ -0,0 +1,185 @@
+package framework.driver;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Health probe for one Chrome session: JS heap and DOM node count via DevTools
+ * Performance.getMetrics, and resident memory of the browser process tree from
+ * /proc. The browser process is identified by the unique --user-data-dir that
+ * ChromeDriver reports in the session capabilities, so parallel workers never
+ * see each other's processes. Every value is best-effort (-1 if unavailable).
+ */
+public final class DriverHealth {
+
+	/** One health reading. */
+	public static final class Sample {
+		public final long jsHeapMb;
+		public final long domNodes;
+		public final long rssMb;
+
+		Sample(long jsHeapMb, long domNodes, long rssMb) {
+			this.jsHeapMb = jsHeapMb;
+			this.domNodes = domNodes;
+			this.rssMb = rssMb;
+		}
+
+		@Override
+		public String toString() {
+			return "jsHeapMb=" + jsHeapMb + " domNodes=" + domNodes + " rssMb=" + rssMb;
+		}
+	}
+
+	private final WebDriver driver;
+	private final String userDataDir;
+	private boolean performanceEnabled;
+	private long browserPid = -1;
+
+	/**
+	 * Creates a probe for the given driver.
+	 *
+	 * @param driver Chrome WebDriver
+	 */
+	public DriverHealth(WebDriver driver) {
+		this.driver = driver;
+		this.userDataDir = userDataDir(driver);
+	}
+
+	/** Takes one reading (one DevTools round trip plus a few /proc reads). */
+	public Sample sample() {
+		long heap = -1;
+		long nodes = -1;
+		if (driver instanceof HasCdp) {
+			try {
+				HasCdp cdp = (HasCdp) driver;
+				if (!performanceEnabled) {
+					cdp.executeCdpCommand("Performance.enable", Collections.emptyMap());
+					performanceEnabled = true;
+				}
+				Object metrics = cdp.executeCdpCommand("Performance.getMetrics", Collections.emptyMap()).get("metrics");
+				if (metrics instanceof List) {
+					for (Object o : (List<?>) metrics) {
+						Map<?, ?> m = (Map<?, ?>) o;
+						Object name = m.get("name");
+						long value = ((Number) m.get("value")).longValue();
+						if ("JSHeapUsedSize".equals(name))
+							heap = value / (1024 * 1024);
+						else if ("Nodes".equals(name))
+							nodes = value;
+					}
+				}
+			} catch (RuntimeException ignored) {
+				// Probe must never fail the UPC.
+			}
+		}
+		return new Sample(heap, nodes, rssMb());
+	}
+
+	/** Sum of VmRSS of the browser process and its children, or -1. */
+	private long rssMb() {
+		Optional<ProcessHandle> browser = browserProcess();
+		return browser.isPresent() ? treeRssMb(browser.get()) : -1;
+	}
+
+	private Optional<ProcessHandle> browserProcess() {
+		if (browserPid > 0) {
+			Optional<ProcessHandle> cached = ProcessHandle.of(browserPid);
+			if (cached.isPresent() && cached.get().isAlive())
+				return cached;
+		}
+		Optional<ProcessHandle> found = findBrowserProcess(userDataDir);
+		found.ifPresent(p -> browserPid = p.pid());
+		return found;
+	}
+
+	/**
+	 * Finds the Chrome browser (non-renderer) process started by this JVM for a
+	 * profile directory.
+	 *
+	 * @param userDataDir --user-data-dir of the session
+	 * @return browser process, or empty if not found / not on Linux
+	 */
+	static Optional<ProcessHandle> findBrowserProcess(String userDataDir) {
+		if (userDataDir == null)
+			return Optional.empty();
+		String flag = "--user-data-dir=" + userDataDir;
+		return ProcessHandle.current().descendants().filter(p -> {
+			String cmd = cmdline(p.pid());
+			return cmd.contains(flag) && !cmd.contains("--type=");
+		}).findFirst();
+	}
+
+	/**
+	 * Finds every Chrome browser (non-renderer) process started by this JVM,
+	 * i.e. one per live session.
+	 *
+	 * @return browser processes (empty if none / not on Linux)
+	 */
+	public static List<ProcessHandle> browserProcesses() {
+		return ProcessHandle.current().descendants().filter(p -> {
+			String cmd = cmdline(p.pid());
+			return cmd.contains("--user-data-dir=") && !cmd.contains("--type=");
+		}).collect(Collectors.toList());
+	}
+
+	/**
+	 * Resident memory of a browser process and all of its children.
+	 *
+	 * @param browser browser process from {@link #browserProcesses()}
+	 * @return RSS in MB
+	 */
+	public static long treeRssMb(ProcessHandle browser) {
+		long kb = statusRssKb(browser.pid());
+		for (ProcessHandle child : (Iterable<ProcessHandle>) browser.descendants()::iterator)
+			kb += statusRssKb(child.pid());
+		return kb / 1024;
+	}
+
+	/** Returns the per-session profile directory reported by ChromeDriver, or null. */
+	static String userDataDir(WebDriver driver) {
+		if (!(driver instanceof HasCapabilities))
+			return null;
+		try {
+			Capabilities caps = ((HasCapabilities) driver).getCapabilities();
+			Object chrome = caps.getCapability("chrome");
+			if (chrome instanceof Map) {
+				Object dir = ((Map<?, ?>) chrome).get("userDataDir");
+				return dir == null ? null : dir.toString();
+			}
+		} catch (RuntimeException ignored) {
+		}
+		return null;
+	}
+
+	private static String cmdline(long pid) {
+		try {
+			byte[] raw = Files.readAllBytes(Paths.get("/proc", String.valueOf(pid), "cmdline"));
+			return new String(raw, StandardCharsets.UTF_8).replace('\0', ' ');
+		} catch (IOException | RuntimeException e) {
+			return "";
+		}
+	}
+
+	private static long statusRssKb(long pid) {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+				if (line.startsWith("VmRSS:"))
+					return Long.parseLong(line.substring(6).trim().split("\\s+")[0]);
+			}
+		} catch (IOException | RuntimeException ignored) {
+		}
+		return 0;
+	}
+}
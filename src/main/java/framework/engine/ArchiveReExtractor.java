@@ -0,0 +1,83 @@
+package framework.engine;
+
+import framework.config.FrameworkConstants;
+import framework.pages.ProductPageParser;
+import framework.utils.CSVUtils;
+import framework.utils.HtmlArchive;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline re-extraction: runs {@link ProductPageParser} and the regular
+ * classification over the newest archived PDP of every UPC, on all cores and
+ * without any site traffic. Use it after adding a column or fixing a locator:
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=framework.engine.ArchiveReExtractor -Dexec.args="[archiveDir] [out.csv]"
+ * </pre>
+ */
+public final class ArchiveReExtractor {
+
+	private ArchiveReExtractor() {
+	}
+
+	/**
+	 * Re-extracts an archive into one CSV in the regular result format.
+	 *
+	 * @param archiveDir archive directory
+	 * @param csvPath    output CSV
+	 * @param threads    parser threads
+	 * @return number of rows written
+	 */
+	public static int run(Path archiveDir, String csvPath, int threads) throws Exception {
+		HtmlArchive archive = HtmlArchive.open(archiveDir);
+		List<HtmlArchive.Entry> entries = new ArrayList<>(HtmlArchive.latestPerUpc(archive.readIndex()));
+		CSVUtils.initCsvFull(csvPath);
+
+		AtomicInteger written = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<?>> futures = new ArrayList<>(entries.size());
+			for (HtmlArchive.Entry e : entries) {
+				futures.add(pool.submit(() -> {
+					try {
+						ProductPageParser.ParsedProduct parsed = ProductPageParser.parse(archive.read(e), e.url);
+						ProductCapture capture = new ProductCapture(e.upc, e.url, parsed.getAddToCartState(),
+								parsed.isSelectionRequired(), parsed);
+						CSVUtils.appendLine(csvPath, UpcProcessor.classify(capture).row);
+						written.incrementAndGet();
+					} catch (Exception ex) {
+						failed.incrementAndGet();
+						System.out.println("Re-extraction failed for UPC " + e.upc + ": " + ex.getMessage());
+					}
+				}));
+			}
+			for (Future<?> f : futures)
+				f.get();
+		} finally {
+			pool.shutdown();
+			CSVUtils.close(csvPath);
+		}
+		System.out.println("Re-extracted " + written.get() + " UPC(s) from " + archiveDir + " -> " + csvPath
+				+ (failed.get() > 0 ? " | failed: " + failed.get() : ""));
+		return written.get();
+	}
+
+	/** Args: [archiveDir (default archive.dir)] [output CSV]. */
+	public static void main(String[] args) throws Exception {
+		Path dir = Paths.get(args.length > 0 ? args[0] : FrameworkConstants.ARCHIVE_DIR);
+		String csv = args.length > 1 ? args[1]
+				: FrameworkConstants.SCRAPING_OUTPUT_DIR + "/reextract_" + FrameworkConstants.timestamp() + ".csv";
+		long start = System.currentTimeMillis();
+		run(dir, csv, Runtime.getRuntime().availableProcessors());
+		System.out.println("Re-extraction took " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
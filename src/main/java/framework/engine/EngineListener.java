@@ -0,0 +1,43 @@
+package framework.engine;
+
+/**
+ * Lifecycle hooks of a {@link ScrapeEngine} run. Worker hooks are invoked on
+ * the worker thread itself, so thread-bound state (e.g. an ExtentTest) can be
+ * attached in {@link #onWorkerStart(String)}. All methods default to no-ops.
+ */
+public interface EngineListener {
+
+	/** Called once before any worker starts. */
+	default void onRunStart(int pendingUpcs) {
+	}
+
+	/** Called on the worker thread before it opens its browser. */
+	default void onWorkerStart(String workerName) {
+	}
+
+	/** Called on the worker thread before it starts on a UPC. */
+	default void onUpcStart(String upc) {
+	}
+
+	/**
+	 * Called after each UPC row was persisted: on the worker thread, or with
+	 * engine.staged on the persist thread.
+	 */
+	default void onUpcProcessed(String upc, String status, long elapsedMs) {
+	}
+
+	/**
+	 * Called on the worker thread when it is done with a UPC, before it takes
+	 * the next one (with engine.staged the row may still be in the stages).
+	 */
+	default void onUpcFinish(String upc) {
+	}
+
+	/** Called on the worker thread after its browser closed; error is null on success. */
+	default void onWorkerFinish(String workerName, Throwable error) {
+	}
+
+	/** Called once after every worker finished. */
+	default void onRunFinish(int processedUpcs, int failedWorkers) {
+	}
+}
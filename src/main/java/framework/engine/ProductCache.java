@@ -0,0 +1,223 @@
+package framework.engine;
+
+import framework.config.FrameworkConstants;
+import framework.utils.Deadline;
+import framework.utils.Gtin;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * In-run cache of extracted products shared by all workers of the JVM
+ * (product.cache.size entries, LRU; 0 disables it). A capture is reachable by
+ * three keys:
+ *
+ * <ul>
+ * <li>upc:&lt;upc&gt; - exact duplicate inputs skip the search as well;</li>
+ * <li>url:&lt;canonical PDP URL&gt; - UPC variants that land on the same PDP
+ * skip the extraction;</li>
+ * <li>item:&lt;item number&gt; - the same item reached through another URL.</li>
+ * </ul>
+ *
+ * <p>Extraction is single-flight per URL: the first worker to reach a PDP
+ * {@link #claim(String) claims} it, later workers wait for its result (at most
+ * product.cache.wait.ms, within the UPC budget) instead of extracting the
+ * same page again. If the owner fails, the claim is dropped and a waiter
+ * extracts on its own.
+ */
+final class ProductCache {
+
+	private static final Map<String, CompletableFuture<ProductCapture>> ENTRIES = new LinkedHashMap<>(256, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Evicts the least recently used finished entry. A pending claim stays
+		 * however old it is: its owner publishes into it and other workers wait
+		 * on it, so the map may briefly exceed the limit by the claims in flight.
+		 */
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ProductCapture>> eldest) {
+			if (size() <= FrameworkConstants.PRODUCT_CACHE_SIZE)
+				return false;
+			for (Iterator<CompletableFuture<ProductCapture>> it = values().iterator(); it.hasNext();) {
+				if (it.next().isDone()) {
+					it.remove();
+					break;
+				}
+			}
+			return false;
+		}
+	};
+
+	private ProductCache() {
+	}
+
+	/**
+	 * Outcome of {@link #claim(String)}: a cached capture, ownership of the key,
+	 * or neither (cache off, or the owner failed or was too slow). Only an
+	 * owner may publish or abandon the key.
+	 */
+	static final class Claim {
+		private static final Claim UNCACHED = new Claim(null, null);
+
+		final ProductCapture capture;
+		final String ownedKey;
+
+		private Claim(ProductCapture capture, String ownedKey) {
+			this.capture = capture;
+			this.ownedKey = ownedKey;
+		}
+
+		/** Returns true if the caller claimed the key and must publish or abandon it. */
+		boolean isOwner() {
+			return ownedKey != null;
+		}
+	}
+
+	/** Returns true if product.cache.size &gt; 0. */
+	static boolean isEnabled() {
+		return FrameworkConstants.PRODUCT_CACHE_SIZE > 0;
+	}
+
+	/** Key of an input UPC (its GTIN-14, so UPC-A/EAN-13/GTIN-14 forms share it). */
+	static String upcKey(String upc) {
+		return "upc:" + Gtin.key(upc);
+	}
+
+	/** Key of an item number, or null if there is none. */
+	static String itemKey(String itemNumber) {
+		return (itemNumber == null || itemNumber.trim().isEmpty()) ? null : "item:" + itemNumber.trim();
+	}
+
+	/**
+	 * Key of a PDP URL: scheme and host lower-cased, query, fragment and
+	 * trailing slash dropped.
+	 */
+	static String urlKey(String url) {
+		if (url == null || url.trim().isEmpty())
+			return null;
+		try {
+			URI u = new URI(url.trim());
+			String host = u.getHost() == null ? "" : u.getHost().toLowerCase(Locale.ROOT);
+			String path = u.getPath() == null ? "" : u.getPath();
+			while (path.endsWith("/"))
+				path = path.substring(0, path.length() - 1);
+			return "url:" + host + (u.getPort() > 0 ? ":" + u.getPort() : "") + path;
+		} catch (Exception e) {
+			return "url:" + url.trim();
+		}
+	}
+
+	/**
+	 * Returns a finished capture for the key without waiting or claiming.
+	 *
+	 * @param key cache key (null: miss)
+	 * @return capture, or null
+	 */
+	static ProductCapture peek(String key) {
+		if (!isEnabled() || key == null)
+			return null;
+		CompletableFuture<ProductCapture> f;
+		synchronized (ENTRIES) {
+			f = ENTRIES.get(key);
+		}
+		return (f != null && f.isDone() && !f.isCompletedExceptionally()) ? f.getNow(null) : null;
+	}
+
+	/**
+	 * Returns the capture for the key, waiting if another worker is extracting
+	 * it. Without a capture the caller must extract; if it owns the key
+	 * ({@link Claim#isOwner()}) it must pass the extraction through
+	 * {@link #publishing} or call {@link #abandon(String)} on
+	 * {@link Claim#ownedKey}. A waiter that gave up owns nothing and leaves the
+	 * key to its owner.
+	 *
+	 * @param key cache key
+	 * @return claim with a capture, ownership, or neither
+	 */
+	static Claim claim(String key) {
+		if (!isEnabled() || key == null)
+			return Claim.UNCACHED;
+		CompletableFuture<ProductCapture> f;
+		synchronized (ENTRIES) {
+			f = ENTRIES.get(key);
+			if (f == null || f.isCompletedExceptionally()) {
+				ENTRIES.put(key, new CompletableFuture<>());
+				return new Claim(null, key);
+			}
+		}
+		try {
+			long waitMs = Math.min(FrameworkConstants.PRODUCT_CACHE_WAIT_MS, Deadline.current().remainingMillis());
+			return new Claim(f.get(waitMs, TimeUnit.MILLISECONDS), null);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | TimeoutException e) {
+			// Owner failed or is too slow: extract without the cache.
+		}
+		return Claim.UNCACHED;
+	}
+
+	/**
+	 * Wraps the owner's extraction so its result is published under the URL key
+	 * and aliased under the item number and UPC keys; a failure drops the claim.
+	 *
+	 * @param key     key owned through {@link #claim(String)} (null: no cache)
+	 * @param extract extraction of the owner
+	 * @return supplier to use instead of extract
+	 */
+	static Supplier<ProductCapture> publishing(String key, Supplier<ProductCapture> extract) {
+		if (!isEnabled() || key == null)
+			return extract;
+		return () -> {
+			ProductCapture c;
+			try {
+				c = extract.get();
+			} catch (RuntimeException e) {
+				abandon(key);
+				throw e;
+			}
+			put(key, c);
+			return c;
+		};
+	}
+
+	/** Drops the claim on a key after the owner failed before extracting. */
+	static void abandon(String key) {
+		if (!isEnabled() || key == null)
+			return;
+		CompletableFuture<ProductCapture> f;
+		synchronized (ENTRIES) {
+			f = ENTRIES.get(key);
+			if (f != null && !f.isDone())
+				ENTRIES.remove(key);
+		}
+		if (f != null)
+			f.completeExceptionally(new IllegalStateException("extraction abandoned"));
+	}
+
+	/** Stores a finished capture under the given key, its item number and its UPC. */
+	private static void put(String key, ProductCapture c) {
+		CompletableFuture<ProductCapture> f;
+		synchronized (ENTRIES) {
+			f = ENTRIES.get(key);
+			if (f == null || f.isDone()) {
+				f = new CompletableFuture<>();
+				ENTRIES.put(key, f);
+			}
+			String item = itemKey(c.itemNumber);
+			if (item != null)
+				ENTRIES.put(item, CompletableFuture.completedFuture(c));
+			ENTRIES.put(upcKey(c.upc), CompletableFuture.completedFuture(c));
+		}
+		f.complete(c);
+	}
+}
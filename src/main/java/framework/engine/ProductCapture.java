@@ -0,0 +1,115 @@
+package framework.engine;
+
+import framework.pages.ProductDetails;
+import framework.pages.ProductSearchPage;
+
+/**
+ * Immutable copy of everything read from one product page. Produced on the
+ * browser thread; classification and row formatting work only on this copy,
+ * so they can run without the browser (see {@link StagePipeline}).
+ */
+public final class ProductCapture {
+
+	final String upc;
+	final String url;
+	final ProductSearchPage.AddToCartState addToCartState;
+	final boolean selectionRequired;
+
+	final String productName, itemNumber, productUPC, vendorItemNumber, casePack, productDetailDescription,
+			productDetailPrice, msrpPricing, stock, outOfStock;
+
+	final String brandName, itemUpcEanNumber, bulletFeatures, catalogPageNumber, dropShipOnly, msrpPrice,
+			primaryColor, prohibitedStates, vendorItemNo, yearLaunched, prop65Applies, prop65CancerHarm,
+			prop65ReproductiveHarm;
+
+	/**
+	 * Copies captured fields (live page object after getAddToCartState(), or a
+	 * parsed HTML snapshot).
+	 *
+	 * @param upc               normalized UPC
+	 * @param url               product page URL
+	 * @param addToCartState    add-to-cart state read from the page
+	 * @param selectionRequired whether a variant selection is required
+	 * @param page              captured fields
+	 */
+	public ProductCapture(String upc, String url, ProductSearchPage.AddToCartState addToCartState,
+			boolean selectionRequired, ProductDetails page) {
+		this.upc = upc;
+		this.url = url;
+		this.addToCartState = addToCartState;
+		this.selectionRequired = selectionRequired;
+
+		productName = page.getProductName();
+		itemNumber = page.getItemNumber();
+		productUPC = page.getProductUPC();
+		vendorItemNumber = page.getVendorItemNumber();
+		casePack = page.getCasePack();
+		productDetailDescription = page.getProductDetailDescription();
+		productDetailPrice = page.getProductDetailPrice();
+		msrpPricing = page.getMsrpPricing();
+		stock = page.getStock();
+		outOfStock = page.getOutOfStock();
+
+		brandName = page.getBrandName();
+		itemUpcEanNumber = page.getItemUpcEanNumber();
+		bulletFeatures = page.getBulletFeatures();
+		catalogPageNumber = page.getCatalogPageNumber();
+		dropShipOnly = page.getDropShipOnly();
+		msrpPrice = page.getMsrpPrice();
+		primaryColor = page.getPrimaryColor();
+		prohibitedStates = page.getProhibitedStates();
+		vendorItemNo = page.getVendorItemNo();
+		yearLaunched = page.getYearLaunched();
+		prop65Applies = page.getProp65Applies();
+		prop65CancerHarm = page.getProp65CancerHarm();
+		prop65ReproductiveHarm = page.getProp65ReproductiveHarm();
+	}
+
+	/** Copy for another input UPC (product cache hit). */
+	private ProductCapture(String upc, ProductCapture c) {
+		this.upc = upc;
+		this.url = c.url;
+		this.addToCartState = c.addToCartState;
+		this.selectionRequired = c.selectionRequired;
+
+		productName = c.productName;
+		itemNumber = c.itemNumber;
+		productUPC = c.productUPC;
+		vendorItemNumber = c.vendorItemNumber;
+		casePack = c.casePack;
+		productDetailDescription = c.productDetailDescription;
+		productDetailPrice = c.productDetailPrice;
+		msrpPricing = c.msrpPricing;
+		stock = c.stock;
+		outOfStock = c.outOfStock;
+
+		brandName = c.brandName;
+		itemUpcEanNumber = c.itemUpcEanNumber;
+		bulletFeatures = c.bulletFeatures;
+		catalogPageNumber = c.catalogPageNumber;
+		dropShipOnly = c.dropShipOnly;
+		msrpPrice = c.msrpPrice;
+		primaryColor = c.primaryColor;
+		prohibitedStates = c.prohibitedStates;
+		vendorItemNo = c.vendorItemNo;
+		yearLaunched = c.yearLaunched;
+		prop65Applies = c.prop65Applies;
+		prop65CancerHarm = c.prop65CancerHarm;
+		prop65ReproductiveHarm = c.prop65ReproductiveHarm;
+	}
+
+	/** Returns this capture for another input UPC (same product, same URL). */
+	ProductCapture withUpc(String otherUpc) {
+		return otherUpc.equals(upc) ? this : new ProductCapture(otherUpc, this);
+	}
+
+	/** Returns the UPC the capture belongs to. */
+	public String getUpc() {
+		return upc;
+	}
+
+	/** Returns true when the stock fields indicate the item is out of stock. */
+	boolean isOutOfStock() {
+		return ProductSearchPage.isOutOfStock(stock, outOfStock);
+	}
+}
@@ -0,0 +1,17 @@
+package framework.engine;
+
+/**
+ * Destination for formatted result rows produced by {@link UpcProcessor}:
+ * a local batch CSV (plus checkpoint) or a lease coordinator.
+ */
+@FunctionalInterface
+public interface ResultSink {
+
+	/**
+	 * Persists one processed UPC.
+	 *
+	 * @param upc UPC the row belongs to
+	 * @param row CSV row formatted by CSVUtils.formatFull
+	 */
+	void write(String upc, String row);
+}
@@ -0,0 +1,439 @@
+package framework.engine;
+
+import framework.config.FrameworkConstants;
+import framework.config.RuntimeControls;
+import framework.distributed.LeaseClient;
+import framework.listeners.ExtentEngineListener;
+import framework.listeners.LiveStatusEngineListener;
+import framework.listeners.MetricsEngineListener;
+import framework.listeners.RunReportEngineListener;
+import framework.metrics.StageMetrics;
+import framework.utils.AsyncLog;
+import framework.utils.CSVUtils;
+import framework.utils.ExtentManager;
+import framework.utils.FileUtils;
+import framework.utils.Gtin;
+import framework.utils.HtmlArchive;
+import framework.utils.ProgressTracker;
+import framework.utils.ReportLogger;
+import framework.utils.ResultStore;
+import framework.utils.RunReport;
+import framework.utils.ScreenshotUtils;
+import framework.utils.UpcPriority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Standalone scrape engine: runs UPC batches on its own fixed worker pool (one
+ * browser per worker) without TestNG/surefire. The TestNG suites are thin
+ * wrappers around it; the runnable jar uses {@link #main(String[])} directly:
+ *
+ * <pre>
+ * mvn -B package -DskipTests
+ * java -Dengine.threads=6 -jar target/kinsey-upc-framework-1.0-SNAPSHOT-engine.jar
+ * </pre>
+ *
+ * <p>Batch mode keeps the original output layout (one CSV and one browser per
+ * batch of batch.size UPCs). Lease mode turns each worker into a long-lived
+ * LeaseClient that pulls UPCs from a LeaseCoordinator until the global queue
+ * is empty.
+ *
+ * <p>Before every UPC a worker passes {@link RuntimeControls#awaitTurn}, so
+ * pause/resume, drain, the active worker count and the rate ceiling can be
+ * changed while the run is in progress.
+ */
+public final class ScrapeEngine {
+
+	private final int concurrency;
+	private final int batchSize;
+	private final boolean checkpoint;
+	private final List<EngineListener> listeners = new CopyOnWriteArrayList<>();
+	private final AtomicInteger processed = new AtomicInteger();
+
+	/** Zero-based slot of the current pool thread (for the runtime worker limit). */
+	private static final ThreadLocal<Integer> SLOT = ThreadLocal.withInitial(() -> 0);
+
+	private volatile boolean stopRequested;
+	private volatile ExecutorService workers;
+
+	/**
+	 * Creates an engine.
+	 *
+	 * @param concurrency number of parallel workers (browsers)
+	 * @param batchSize   UPCs per batch CSV / browser session in batch mode
+	 * @param checkpoint  whether processed UPCs are written to the checkpoint
+	 */
+	public ScrapeEngine(int concurrency, int batchSize, boolean checkpoint) {
+		this.concurrency = Math.max(1, concurrency);
+		this.batchSize = Math.max(1, batchSize);
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Creates an engine with the standard listeners (Extent report, stage
+	 * metrics, run report, live status) used by every entry point.
+	 *
+	 * @param concurrency number of parallel workers (browsers)
+	 * @param batchSize   UPCs per batch CSV / browser session in batch mode
+	 * @param checkpoint  whether processed UPCs are written to the checkpoint
+	 * @return engine ready to run
+	 */
+	public static ScrapeEngine withDefaultListeners(int concurrency, int batchSize, boolean checkpoint) {
+		ScrapeEngine engine = new ScrapeEngine(concurrency, batchSize, checkpoint);
+		engine.addListener(new ExtentEngineListener());
+		engine.addListener(new MetricsEngineListener());
+		engine.addListener(new RunReportEngineListener());
+		engine.addListener(new LiveStatusEngineListener());
+		return engine;
+	}
+
+	/** Registers a lifecycle listener. */
+	public void addListener(EngineListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Asks all workers to stop after their current UPC; open CSVs are closed and
+	 * the checkpoint stays consistent, so the next run resumes cleanly.
+	 */
+	public void requestStop() {
+		stopRequested = true;
+	}
+
+	/** Waits for running workers after {@link #requestStop()} (used by the shutdown hook). */
+	public void awaitWorkers(long timeoutMs) {
+		ExecutorService pool = workers;
+		if (pool == null)
+			return;
+		try {
+			pool.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Processes the UPCs in batches of batchSize on the worker pool. Blocks until
+	 * every batch finished; a failing batch does not stop the others.
+	 *
+	 * @param upcs UPCs to process
+	 * @throws RuntimeException if one or more batches failed
+	 */
+	public void run(List<String> upcs) {
+		List<List<String>> batches = slice(upcs, batchSize);
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+		fireRunStart(upcs.size());
+		ExecutorService pool = startPool(Math.min(concurrency, Math.max(1, batches.size())));
+		for (int i = 0; i < batches.size(); i++) {
+			final int batchNumber = i + 1;
+			final List<String> batch = batches.get(i);
+			pool.submit(() -> runBatch(batchNumber, batch, failures));
+		}
+		awaitPool(pool);
+		finish(failures);
+	}
+
+	/**
+	 * Runs every worker as a lease client against a LeaseCoordinator. Blocks until
+	 * the coordinator reports the global queue as empty.
+	 *
+	 * @param host coordinator host
+	 * @param port coordinator port
+	 */
+	public void runLeases(String host, int port) {
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+		fireRunStart(-1);
+		ExecutorService pool = startPool(concurrency);
+		for (int i = 0; i < concurrency; i++) {
+			final String workerName = "Lease worker " + ProcessHandle.current().pid() + "-w" + (i + 1);
+			pool.submit(() -> runLeaseWorker(workerName, host, port, failures));
+		}
+		awaitPool(pool);
+		finish(failures);
+	}
+
+	/** Processes one batch with its own browser and CSV. */
+	private void runBatch(int batchNumber, List<String> upcs, Queue<Throwable> failures) {
+		// A parked slot (threads lowered, paused) does not open its browser yet.
+		if (!awaitTurn())
+			return;
+
+		String workerName = "Batch " + batchNumber;
+		String csvPath = FrameworkConstants.getResultCsvPath(batchNumber);
+		CSVUtils.initCsvFull(csvPath);
+
+		UpcProcessor processor = new UpcProcessor((upc, row) -> {
+			CSVUtils.appendLine(csvPath, row);
+			ResultStore.record(row);
+			if (checkpoint)
+				ProgressTracker.markProcessed(upc);
+		});
+
+		Throwable error = null;
+		ReportLogger.setBatch(String.valueOf(batchNumber));
+		fireWorkerStart(workerName);
+		try {
+			ReportLogger.info("Starting batch: " + batchNumber + " | UPCs: " + upcs.size() + " | CSV: " + csvPath);
+			processor.start();
+
+			for (int i = 0; i < upcs.size(); i++) {
+				if ((i > 0 && !awaitTurn()) || stopRequested || RuntimeControls.isDraining()) {
+					ReportLogger.info("Stop requested -> leaving batch " + batchNumber + " early.");
+					break;
+				}
+				processOne(processor, upcs.get(i), i + 1 < upcs.size() ? upcs.get(i + 1) : null);
+			}
+			processor.drain();
+
+			ReportLogger.pass("Batch completed: " + batchNumber);
+		} catch (Throwable t) {
+			error = t;
+			failures.add(t);
+			ReportLogger.fail("Batch " + batchNumber + " failed: " + t.getMessage());
+		} finally {
+			ReportLogger.info("Closing browser for batch " + batchNumber);
+			processor.close();
+			CSVUtils.close(csvPath);
+			fireWorkerFinish(workerName, error);
+			ReportLogger.setBatch(null);
+		}
+	}
+
+	/** Pulls and processes leases until the coordinator is drained. */
+	private void runLeaseWorker(String workerName, String host, int port, Queue<Throwable> failures) {
+		LeaseClient client = new LeaseClient(host, port, workerName.substring(workerName.lastIndexOf(' ') + 1));
+		UpcProcessor processor = new UpcProcessor(client::report);
+
+		Throwable error = null;
+		int count = 0;
+		ReportLogger.setBatch(workerName.substring(workerName.lastIndexOf(' ') + 1));
+		fireWorkerStart(workerName);
+		try {
+			if (!awaitTurn())
+				return;
+			ReportLogger.info("Starting " + workerName + " -> " + host + ":" + port);
+			processor.start();
+
+			List<String> lease;
+			while (!stopRequested && !RuntimeControls.isDraining() && (lease = client.acquire()) != null) {
+				for (int i = 0; i < lease.size(); i++) {
+					// Unprocessed UPCs of the lease go back to the queue on release.
+					if (!awaitTurn())
+						break;
+					processOne(processor, lease.get(i), i + 1 < lease.size() ? lease.get(i + 1) : null);
+					count++;
+				}
+				// Staged results must reach the coordinator under this lease id.
+				processor.drain();
+			}
+
+			ReportLogger.pass(workerName + " finished after " + count + " UPCs");
+		} catch (Throwable t) {
+			error = t;
+			failures.add(t);
+			ReportLogger.fail(workerName + " failed: " + t.getMessage());
+		} finally {
+			processor.close();
+			client.release();
+			client.close();
+			fireWorkerFinish(workerName, error);
+			ReportLogger.setBatch(null);
+		}
+	}
+
+	/**
+	 * Processes one UPC (prefetching nextUpc in pipelined mode). Listeners are
+	 * notified once the row is persisted, which in staged mode happens on the
+	 * persist thread after this method returned.
+	 */
+	private void processOne(UpcProcessor processor, String upc, String nextUpc) {
+		long start = System.currentTimeMillis();
+		long t = StageMetrics.start();
+		ReportLogger.beginUpc(upc);
+		for (EngineListener l : listeners)
+			l.onUpcStart(upc);
+		try {
+			processor.process(upc, nextUpc, status -> completed(upc, status, start, t));
+		} finally {
+			ReportLogger.endUpc();
+			for (EngineListener l : listeners)
+				l.onUpcFinish(upc);
+		}
+		processor.recycleIfNeeded();
+	}
+
+	/** Records the UPC total and notifies listeners (worker or persist thread). */
+	private void completed(String upc, String status, long start, long t) {
+		StageMetrics.record(StageMetrics.Stage.UPC_TOTAL, status, t);
+		processed.incrementAndGet();
+		long elapsed = System.currentTimeMillis() - start;
+		for (EngineListener l : listeners)
+			l.onUpcProcessed(upc, status, elapsed);
+	}
+
+	/** Runtime gate before a UPC (or before a worker opens its browser). */
+	private boolean awaitTurn() {
+		return RuntimeControls.awaitTurn(SLOT.get(), () -> stopRequested);
+	}
+
+	private ExecutorService startPool(int threads) {
+		AtomicInteger seq = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			int slot = seq.getAndIncrement();
+			return new Thread(() -> {
+				SLOT.set(slot);
+				r.run();
+			}, "scrape-worker-" + (slot + 1));
+		});
+		workers = pool;
+		WorkerAutoscaler.start(threads);
+		return pool;
+	}
+
+	private static void awaitPool(ExecutorService pool) {
+		pool.shutdown();
+		try {
+			while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+				// keep waiting; workers end when their UPCs are done
+			}
+		} catch (InterruptedException e) {
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void finish(Queue<Throwable> failures) {
+		WorkerAutoscaler.stop();
+		ScreenshotUtils.awaitPending(FrameworkConstants.ENGINE_SHUTDOWN_GRACE_MS);
+		AsyncLog.flush(5000);
+		HtmlArchive.closeWriter();
+		ResultStore.closeWriter();
+		for (EngineListener l : listeners)
+			l.onRunFinish(processed.get(), failures.size());
+
+		if (!failures.isEmpty()) {
+			throw new RuntimeException(failures.size() + " worker(s) failed; first error: "
+					+ failures.peek().getMessage(), failures.peek());
+		}
+	}
+
+	private void fireRunStart(int pending) {
+		RuntimeControls.start();
+		for (EngineListener l : listeners)
+			l.onRunStart(pending);
+	}
+
+	private void fireWorkerStart(String workerName) {
+		for (EngineListener l : listeners)
+			l.onWorkerStart(workerName);
+	}
+
+	private void fireWorkerFinish(String workerName, Throwable error) {
+		for (EngineListener l : listeners)
+			l.onWorkerFinish(workerName, error);
+	}
+
+	/**
+	 * Loads the configured input (shard-filtered) minus UPCs already in the
+	 * checkpoint, in upc.priority.policy order.
+	 *
+	 * @return UPCs still to process
+	 */
+	public static List<String> loadPendingUpcs() {
+		List<String> allUpcs = FileUtils.readUpcs(FrameworkConstants.UPC_FILE);
+		if (allUpcs == null || allUpcs.isEmpty()) {
+			throw new RuntimeException("No UPCs found in: " + FrameworkConstants.UPC_FILE);
+		}
+
+		reportInvalid(allUpcs);
+
+		// Resume support: skip UPCs that were already processed in a previous run.
+		Set<String> processed = ProgressTracker.loadProcessed();
+		if (processed.isEmpty())
+			return UpcPriority.order(allUpcs);
+
+		// Compared by GTIN-14 key: a UPC checkpointed in another form is done too.
+		Set<String> processedKeys = Gtin.keys(processed);
+		List<String> upcs = new ArrayList<>(allUpcs);
+		upcs.removeIf(upc -> processedKeys.contains(Gtin.key(upc)));
+		ReportLogger.info("Resuming run: " + processed.size() + " UPCs already done, " + upcs.size() + " remaining.");
+		return UpcPriority.order(upcs);
+	}
+
+	/**
+	 * Logs once how many input codes fail gtin.validation (with a few examples);
+	 * they stay in the work list so each still gets its INVALID_UPC row.
+	 */
+	private static void reportInvalid(List<String> upcs) {
+		List<String> examples = new ArrayList<>();
+		int invalid = 0;
+		for (String upc : upcs) {
+			if (UpcProcessor.isValidUpc(upc))
+				continue;
+			if (invalid++ < 5)
+				examples.add(upc == null ? "" : upc.trim());
+		}
+		if (invalid > 0)
+			ReportLogger.info(invalid + " input codes fail gtin.validation=" + FrameworkConstants.GTIN_VALIDATION
+					+ " (length or check digit) and will be written as INVALID_UPC, e.g. " + examples);
+	}
+
+	/**
+	 * Splits the UPC list into consecutive batches.
+	 *
+	 * @param upcs      input list
+	 * @param batchSize maximum batch size
+	 * @return batches in input order
+	 */
+	public static List<List<String>> slice(List<String> upcs, int batchSize) {
+		int size = Math.max(1, batchSize);
+		List<List<String>> batches = new ArrayList<>((upcs.size() + size - 1) / size);
+		for (int i = 0; i < upcs.size(); i += size) {
+			batches.add(new ArrayList<>(upcs.subList(i, Math.min(i + size, upcs.size()))));
+		}
+		return batches;
+	}
+
+	/**
+	 * Runnable-jar entry point. Configuration comes from config.properties and
+	 * -D overrides (engine.threads, batch.size, lease.worker, shard.*, ...).
+	 */
+	public static void main(String[] args) {
+		ScrapeEngine engine = withDefaultListeners(
+				FrameworkConstants.LEASE_WORKER ? FrameworkConstants.LEASE_WORKERS : FrameworkConstants.ENGINE_THREADS,
+				FrameworkConstants.BATCH_SIZE, true);
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			engine.requestStop();
+			engine.awaitWorkers(FrameworkConstants.ENGINE_SHUTDOWN_GRACE_MS);
+			ScreenshotUtils.awaitPending(5000);
+			RunReport.finish();
+			ExtentManager.flush();
+		}, "scrape-shutdown"));
+
+		int exitCode = 0;
+		try {
+			if (FrameworkConstants.LEASE_WORKER)
+				engine.runLeases(FrameworkConstants.COORDINATOR_HOST, FrameworkConstants.COORDINATOR_PORT);
+			else
+				engine.run(loadPendingUpcs());
+		} catch (RuntimeException e) {
+			System.out.println("Scrape finished with errors: " + e.getMessage());
+			exitCode = 1;
+		} finally {
+			ExtentManager.flush();
+		}
+		System.exit(exitCode);
+	}
+}
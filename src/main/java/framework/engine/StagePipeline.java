@@ -0,0 +1,79 @@
+package framework.engine;
+
+import framework.config.FrameworkConstants;
+import framework.metrics.StageMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared stages behind the browser workers when engine.staged=true:
+ *
+ * <pre>
+ * browser workers (navigate + read page) -> [extract queue] -> extract pool (classify + format row)
+ *                                        -> [persist queue] -> one persist thread (CSV/checkpoint/coordinator)
+ * </pre>
+ *
+ * Both queues are bounded (stage.queue.capacity). A full queue blocks the
+ * submitting thread, so a slow disk or coordinator slows the browsers down
+ * instead of growing memory; the blocked time is recorded as the
+ * stage_backpressure metric and the queue depths are exported as gauges.
+ */
+public final class StagePipeline {
+
+	private static final ThreadPoolExecutor EXTRACT = newStage("stage-extract",
+			Math.max(1, FrameworkConstants.STAGE_EXTRACT_THREADS));
+	private static final ThreadPoolExecutor PERSIST = newStage("stage-persist", 1);
+
+	static {
+		StageMetrics.registerQueue("extract", () -> EXTRACT.getQueue().size(), FrameworkConstants.STAGE_QUEUE_CAPACITY);
+		StageMetrics.registerQueue("persist", () -> PERSIST.getQueue().size(), FrameworkConstants.STAGE_QUEUE_CAPACITY);
+	}
+
+	private StagePipeline() {
+	}
+
+	/** Queues CPU-bound work; blocks while the extract queue is full. */
+	static void extract(Runnable task) {
+		EXTRACT.execute(task);
+	}
+
+	/** Queues persistence; blocks while the persist queue is full. */
+	static void persist(Runnable task) {
+		PERSIST.execute(task);
+	}
+
+	private static ThreadPoolExecutor newStage(String name, int threads) {
+		AtomicInteger seq = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, FrameworkConstants.STAGE_QUEUE_CAPACITY)), r -> {
+					Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}, blockWhenFull(name.substring(name.indexOf('-') + 1)));
+		pool.prestartAllCoreThreads();
+		return pool;
+	}
+
+	/** Backpressure: the submitter waits for queue space instead of failing. */
+	private static RejectedExecutionHandler blockWhenFull(String stage) {
+		return (task, pool) -> {
+			if (pool.isShutdown())
+				throw new RejectedExecutionException("Stage " + stage + " is shut down");
+			long t = StageMetrics.start();
+			try {
+				BlockingQueue<Runnable> queue = pool.getQueue();
+				queue.put(task);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for stage " + stage, e);
+			}
+			StageMetrics.record(StageMetrics.Stage.BACKPRESSURE, stage, t);
+		};
+	}
+}
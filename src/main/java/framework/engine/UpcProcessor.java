@@ -0,0 +1,907 @@
+package framework.engine;
+
+import framework.config.FrameworkConstants;
+import framework.config.RuntimeControls;
+import framework.driver.DriverFactory;
+import framework.driver.DriverHealth;
+import framework.driver.DriverManager;
+import framework.metrics.StageMetrics;
+import framework.pages.LoginPage;
+import framework.pages.ProductPageParser;
+import framework.pages.ProductSearchPage;
+import framework.utils.CSVUtils;
+import framework.utils.Gtin;
+import framework.utils.HtmlArchive;
+import framework.utils.NegativeCache;
+import framework.utils.Deadline;
+import framework.utils.ReportLogger;
+import framework.utils.ScreenshotUtils;
+import framework.utils.WaitUtils;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WindowType;
+
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Per-worker UPC processing: owns one browser session, runs search + PDP
+ * extraction for each UPC with network retry and driver recovery, and hands
+ * every resulting row to a {@link ResultSink}. Not thread-safe; one instance
+ * per worker thread.
+ *
+ * <p>Between UPCs the browser is checked against driver.recycle.* limits (UPC
+ * count, JS heap, DOM nodes, RSS) and replaced at that clean boundary instead
+ * of degrading until it crashes mid-UPC. With driver.prewarm the replacement
+ * is started and logged in on a background thread shortly before it is needed.
+ *
+ * <p>With engine.pipeline the worker keeps a second tab one UPC ahead: once
+ * the current search has an outcome, the next UPC's search is submitted in the
+ * other tab (and its first result clicked after extraction), so the next
+ * search loads while the current PDP is extracted. The tabs swap roles per UPC;
+ * a driver restart or recycle simply drops the prefetch.
+ *
+ * <p>With engine.staged the worker thread only drives the browser: the page
+ * is copied into a {@link ProductCapture}, classified and formatted on the
+ * {@link StagePipeline} extract pool and persisted by its single writer
+ * thread. Completion is then reported asynchronously through the callback
+ * passed to {@link #process(String, String, Consumer)}. extract.mode=html
+ * goes one step further: the browser only returns the settled page source and
+ * {@link ProductPageParser} reads the fields on the extract pool.
+ */
+public class UpcProcessor {
+
+	/** extract.mode=html: PDP fields are parsed from one page snapshot instead of read element by element. */
+	private static final boolean HTML_EXTRACT = "html".equals(FrameworkConstants.EXTRACT_MODE);
+
+	/** Results go through {@link StagePipeline}; implied by HTML extraction. */
+	private static final boolean STAGED = FrameworkConstants.ENGINE_STAGED || HTML_EXTRACT;
+
+	private static final String STATUS_PRESENT = "ADD TO CART PRESENT";
+	private static final String STATUS_NOT_PRESENT = "ADD TO CART NOT PRESENT";
+	private static final String STATUS_NO_PRODUCT_CACHED = "NO PRODUCT FOUND (cached)";
+	private static final String STATUS_TIMEOUT = "TIMEOUT";
+
+	private static final AtomicInteger PREWARM_SEQ = new AtomicInteger();
+	private static final ExecutorService PREWARM = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "driver-prewarm-" + PREWARM_SEQ.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final ResultSink sink;
+
+	private WebDriver driver;
+	private ProductSearchPage productPage;
+	private String lastStatus;
+
+	private DriverHealth health;
+	private int upcsOnDriver;
+	private Future<WebDriver> spare;
+
+	private String nextUpc;
+	private Consumer<String> onDone;
+	private boolean handedOff;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile RuntimeException stageError;
+	private String currentTab;
+	private String aheadTab;
+	private ProductSearchPage aheadPage;
+	private String aheadUpc;
+
+	/**
+	 * Creates a processor writing rows to the given sink.
+	 *
+	 * @param sink row destination
+	 */
+	public UpcProcessor(ResultSink sink) {
+		this.sink = sink;
+	}
+
+	/** Opens the browser for this worker and logs in. */
+	public void start() {
+		driver = DriverFactory.initDriver();
+		relogin(driver);
+		attach(driver);
+	}
+
+	/**
+	 * Quits the browser and any pre-warmed spare (best-effort) and clears the
+	 * thread-local driver. Staged results still queued are persisted first.
+	 */
+	public void close() {
+		try {
+			drain();
+		} catch (RuntimeException ignored) {
+			// Already reported by the worker's own drain() call.
+		}
+		quitQuietly(driver);
+		driver = null;
+		if (spare != null) {
+			// Let a still-starting spare finish, then quit it; cancelling would leak its browser.
+			Future<WebDriver> pending = spare;
+			spare = null;
+			PREWARM.submit(() -> {
+				try {
+					quitQuietly(pending.get());
+				} catch (Exception ignored) {
+				}
+			});
+		}
+		DriverManager.unload();
+	}
+
+	/** Returns the current browser of this worker (changes after recovery). */
+	public WebDriver getDriver() {
+		return driver;
+	}
+
+	/**
+	 * Processes one UPC with retries and driver recovery. Always persists exactly
+	 * one row for the UPC, FAILED if nothing else worked.
+	 *
+	 * @param upc input UPC
+	 * @return status written for the UPC
+	 */
+	public String process(String upc) {
+		return process(upc, null, null);
+	}
+
+	/**
+	 * Processes one UPC; in pipelined mode the search for nextUpc is started in
+	 * the second tab while this UPC is extracted. Every attempt gets its own
+	 * upc.budget.ms; a UPC whose attempts all run out of budget is written as
+	 * TIMEOUT, never as a negative result.
+	 *
+	 * @param upc     input UPC
+	 * @param nextUpc UPC this worker processes next, or null
+	 * @param onDone  called with the status once the row is persisted (in staged
+	 *                mode on the persist thread), or null
+	 * @return status written for the UPC, or null if it is still in the stages
+	 */
+	public String process(String upc, String nextUpc, Consumer<String> onDone) {
+		rethrowStageError();
+		lastStatus = null;
+		handedOff = false;
+		this.onDone = onDone;
+		this.nextUpc = FrameworkConstants.ENGINE_PIPELINE ? nextUpc : null;
+		takeAhead(upc);
+		try {
+			final WebDriver currentDriver = driver;
+			final ProductSearchPage currentPage = productPage;
+			WaitUtils.runWithRetry(FrameworkConstants.NETWORK_RETRY_COUNT, FrameworkConstants.NETWORK_RETRY_SLEEP_MS,
+					() -> attempt(upc, currentPage, currentDriver));
+		} catch (RuntimeException e) {
+			if (WaitUtils.isDriverInvalid(e)) {
+				ReportLogger.info("Driver invalid for UPC: " + upc + " -> restarting browser and retrying once.");
+				restartDriverAndLogin();
+				try {
+					attempt(upc, productPage, driver);
+				} catch (RuntimeException ex2) {
+					writeFailedOrTimeout(driver, upc, ex2);
+				}
+			} else {
+				writeFailedOrTimeout(driver, upc, e);
+			}
+		}
+		advanceAhead();
+		upcsOnDriver++;
+		if (!handedOff && onDone != null)
+			onDone.accept(lastStatus);
+		return handedOff ? null : lastStatus;
+	}
+
+	/**
+	 * Waits until every result this worker handed to the stages is persisted.
+	 * Must be called before the sink goes away (batch CSV closed, lease
+	 * released or renewed).
+	 *
+	 * @throws RuntimeException if a staged write failed
+	 */
+	public void drain() {
+		synchronized (inFlight) {
+			while (inFlight.get() > 0) {
+				try {
+					inFlight.wait(1000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		rethrowStageError();
+	}
+
+	private void rethrowStageError() {
+		RuntimeException e = stageError;
+		if (e != null) {
+			stageError = null;
+			throw new RuntimeException("Staged result write failed: " + e.getMessage(), e);
+		}
+	}
+
+	/** Switches to the second tab if it already holds the search for this UPC. */
+	private void takeAhead(String upc) {
+		String prefetched = aheadUpc;
+		aheadUpc = null;
+		if (prefetched == null || upc == null || !prefetched.equals(upc.trim()))
+			return;
+		try {
+			driver.switchTo().window(aheadTab);
+		} catch (RuntimeException e) {
+			// Tab unusable: forget it; the UPC is searched normally in the current tab.
+			aheadTab = null;
+			return;
+		}
+		String tab = currentTab;
+		currentTab = aheadTab;
+		aheadTab = tab;
+		ProductSearchPage page = productPage;
+		productPage = aheadPage;
+		aheadPage = page;
+	}
+
+	/** Submits the next UPC's search in the second tab, then returns to the current one. */
+	private void prefetchNext() {
+		String next = (nextUpc == null) ? null : nextUpc.trim();
+		if (next == null || next.equals(aheadUpc) || !isValidUpc(next))
+			return;
+		long t = StageMetrics.start();
+		aheadUpc = null;
+		try {
+			if (aheadTab == null)
+				openAheadTab();
+			driver.switchTo().window(aheadTab);
+			aheadUpc = aheadPage.submitSearch(Gtin.searchForm(next)) ? next : null;
+			StageMetrics.record(StageMetrics.Stage.PREFETCH, aheadUpc != null ? "submitted" : "not_ready", t);
+		} catch (NoSuchWindowException e) {
+			aheadTab = null;
+			StageMetrics.record(StageMetrics.Stage.PREFETCH, "error", t);
+		} catch (RuntimeException e) {
+			StageMetrics.record(StageMetrics.Stage.PREFETCH, "error", t);
+		}
+		// Failing to get back to the current tab is a driver problem for the normal retry/recovery.
+		driver.switchTo().window(currentTab);
+	}
+
+	/** Clicks the first result of the prefetched search if it is already listed. */
+	private void advanceAhead() {
+		if (aheadUpc == null)
+			return;
+		try {
+			driver.switchTo().window(aheadTab);
+			if (aheadPage.openFirstResultIfReady())
+				StageMetrics.record(StageMetrics.Stage.PREFETCH, "clicked", StageMetrics.start());
+			driver.switchTo().window(currentTab);
+		} catch (RuntimeException e) {
+			aheadUpc = null;
+			try {
+				driver.switchTo().window(currentTab);
+			} catch (RuntimeException ignored) {
+				// Next UPC detects the broken driver and recovers.
+			}
+		}
+	}
+
+	/** Opens the second tab on the storefront (once per browser). */
+	private void openAheadTab() {
+		currentTab = driver.getWindowHandle();
+		driver.switchTo().newWindow(WindowType.TAB);
+		aheadTab = driver.getWindowHandle();
+		driver.get(FrameworkConstants.BASE_URL);
+		aheadPage = new ProductSearchPage(driver);
+	}
+
+	/** Restarts the driver (using a ready spare if there is one) and performs login. */
+	private void restartDriverAndLogin() {
+		quitQuietly(driver);
+
+		WebDriver next = (spare != null) ? takeSpare(TimeUnit.MINUTES.toMillis(2)) : null;
+		if (next == null) {
+			next = DriverFactory.initDriver();
+			relogin(next);
+		}
+		attach(next);
+	}
+
+	/** Makes the driver current for this worker and resets its health state. */
+	private void attach(WebDriver next) {
+		driver = next;
+		DriverManager.set(driver);
+		productPage = new ProductSearchPage(driver);
+		health = new DriverHealth(driver);
+		upcsOnDriver = 0;
+		currentTab = aheadTab = aheadUpc = null;
+		aheadPage = null;
+	}
+
+	/**
+	 * Checks recycle limits between UPCs; starts a spare when close to a limit
+	 * and swaps the browser when a limit is reached. Called by the engine outside
+	 * the per-UPC timing.
+	 */
+	public void recycleIfNeeded() {
+		if (driver == null || health == null)
+			return;
+		int maxUpcs = FrameworkConstants.DRIVER_RECYCLE_MAX_UPCS;
+		String reason = null;
+		boolean nearLimit = maxUpcs > 0 && upcsOnDriver >= maxUpcs * 0.9;
+
+		if (maxUpcs > 0 && upcsOnDriver >= maxUpcs) {
+			reason = "max_upcs";
+		} else if (FrameworkConstants.DRIVER_HEALTH_CHECK_EVERY > 0
+				&& upcsOnDriver % FrameworkConstants.DRIVER_HEALTH_CHECK_EVERY == 0) {
+			DriverHealth.Sample s = health.sample();
+			if (over(s.jsHeapMb, FrameworkConstants.DRIVER_RECYCLE_MAX_HEAP_MB, 1.0))
+				reason = "js_heap";
+			else if (over(s.domNodes, FrameworkConstants.DRIVER_RECYCLE_MAX_NODES, 1.0))
+				reason = "dom_nodes";
+			else if (over(s.rssMb, FrameworkConstants.DRIVER_RECYCLE_MAX_RSS_MB, 1.0))
+				reason = "rss";
+			nearLimit |= over(s.jsHeapMb, FrameworkConstants.DRIVER_RECYCLE_MAX_HEAP_MB, 0.8)
+					|| over(s.domNodes, FrameworkConstants.DRIVER_RECYCLE_MAX_NODES, 0.8)
+					|| over(s.rssMb, FrameworkConstants.DRIVER_RECYCLE_MAX_RSS_MB, 0.8);
+			ReportLogger.stage("driver_health", s.toString(), -1);
+		}
+
+		if (spare == null && FrameworkConstants.DRIVER_PREWARM && (nearLimit || reason != null))
+			spare = PREWARM.submit(this::prewarm);
+		if (reason != null)
+			recycle(reason);
+	}
+
+	/** Replaces the browser at a UPC boundary. */
+	private void recycle(String reason) {
+		long t = StageMetrics.start();
+		int used = upcsOnDriver;
+		WebDriver next = (spare != null) ? takeSpare(TimeUnit.MINUTES.toMillis(2)) : null;
+		String outcome = (next != null) ? "prewarmed" : "cold";
+		try {
+			if (next == null) {
+				next = DriverFactory.initDriver();
+				relogin(next);
+			}
+		} catch (RuntimeException e) {
+			// Keep the old browser; the next health check tries again.
+			quitQuietly(next);
+			StageMetrics.record(StageMetrics.Stage.DRIVER_RECYCLE, "error", t);
+			ReportLogger.info("Browser recycle (" + reason + ") failed, keeping current browser: " + e.getMessage());
+			return;
+		}
+
+		WebDriver old = driver;
+		attach(next);
+		PREWARM.submit(() -> quitQuietly(old));
+		StageMetrics.record(StageMetrics.Stage.DRIVER_RECYCLE, outcome, t);
+		ReportLogger.info("Browser recycled (" + reason + ", " + outcome + ") after " + used + " UPCs");
+	}
+
+	/** Starts and logs in a replacement browser (background thread). */
+	private WebDriver prewarm() {
+		WebDriver next = DriverFactory.initDriver();
+		try {
+			relogin(next);
+			return next;
+		} catch (RuntimeException e) {
+			quitQuietly(next);
+			throw e;
+		}
+	}
+
+	/** Returns the spare browser, or null if it failed or is not ready in time. */
+	private WebDriver takeSpare(long timeoutMs) {
+		Future<WebDriver> f = spare;
+		spare = null;
+		try {
+			return f.get(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			f.cancel(true);
+		}
+		return null;
+	}
+
+	private static boolean over(long value, long limit, double factor) {
+		return limit > 0 && value >= 0 && value >= limit * factor;
+	}
+
+	private static void quitQuietly(WebDriver d) {
+		try {
+			if (d != null)
+				d.quit();
+		} catch (Exception ignored) {
+		}
+	}
+
+	/** Thrown when an attempt runs out of its UPC budget before reaching a definite result. */
+	private static final class BudgetExhaustedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		BudgetExhaustedException(String message) {
+			super(message);
+		}
+	}
+
+	/** Runs {@link #processSingleUpc} under a fresh UPC budget. */
+	private void attempt(String upc, ProductSearchPage page, WebDriver currentDriver) {
+		Deadline budget = Deadline.of(FrameworkConstants.UPC_BUDGET_MS);
+		Deadline previous = Deadline.enter(budget);
+		try {
+			processSingleUpc(upc, page, currentDriver);
+		} finally {
+			Deadline.restore(previous);
+		}
+	}
+
+	/** Throws if the current attempt's budget is spent. */
+	private static void failIfBudgetExhausted(String upc, String where) {
+		if (Deadline.current().isExpired())
+			throw budgetExhausted(upc, where);
+	}
+
+	private static BudgetExhaustedException budgetExhausted(String upc, String where) {
+		return new BudgetExhaustedException("UPC budget of " + Deadline.current().budgetMillis() + " ms exhausted "
+				+ where + " for UPC: " + upc);
+	}
+
+	/** Executes one UPC: search, classify outcome, capture PDP fields, persist. */
+	private void processSingleUpc(String upc, ProductSearchPage productPage, WebDriver currentDriver) {
+		String normUpc = (upc == null) ? "" : upc.trim();
+		if (!isValidUpc(normUpc)) {
+			writeInvalidUpc(currentDriver, normUpc);
+			return;
+		}
+
+		long cacheStart = StageMetrics.start();
+		ProductCapture duplicate = ProductCache.peek(ProductCache.upcKey(normUpc));
+		if (duplicate != null) {
+			// Exact duplicate input: reuse the earlier capture without searching.
+			StageMetrics.record(StageMetrics.Stage.PRODUCT_CACHE, "hit_upc", cacheStart);
+			prefetchNext();
+			deliver(normUpc, currentDriver, null, () -> duplicate.withUpc(normUpc));
+			return;
+		}
+
+		long missAt = NegativeCache.cachedMiss(normUpc);
+		if (missAt > 0) {
+			StageMetrics.record(StageMetrics.Stage.NEGATIVE_CACHE, "hit", cacheStart);
+			prefetchNext();
+			writeCachedNoProductsFound(normUpc, missAt);
+			return;
+		}
+
+		ensureOnlineOrThrow(currentDriver);
+
+		String searchText = Gtin.searchForm(normUpc);
+		ProductSearchPage.SearchOutcome outcome = productPage.searchUpcWithOutcome(searchText);
+
+		if (outcome == ProductSearchPage.SearchOutcome.LOGIN_REQUIRED) {
+			ReportLogger.info("Login required detected for UPC: " + normUpc + " -> re-login and retry.");
+			relogin(currentDriver);
+
+			outcome = productPage.searchUpcWithOutcome(searchText);
+			if (outcome == ProductSearchPage.SearchOutcome.LOGIN_REQUIRED) {
+				throw new RuntimeException("Session expired; re-login did not recover.");
+			}
+		}
+
+		if (outcome == ProductSearchPage.SearchOutcome.TIMEOUT)
+			throw budgetExhausted(normUpc, "during search");
+
+		prefetchNext();
+
+		if (outcome == ProductSearchPage.SearchOutcome.MAINTENANCE) {
+			writeMaintenance(currentDriver, normUpc);
+			return;
+		}
+
+		if (outcome == ProductSearchPage.SearchOutcome.BLOCKED) {
+			writeBlocked(currentDriver, normUpc, "Blocked/CAPTCHA detected after search");
+			backoffIfConfigured();
+			return;
+		}
+
+		if (outcome == ProductSearchPage.SearchOutcome.NO_PRODUCTS_FOUND) {
+			writeNoProductsFound(currentDriver, normUpc, productPage.isNoResultsShown());
+			return;
+		}
+		if (NegativeCache.contains(normUpc)) {
+			// Revalidation (or an expired entry) found the product.
+			NegativeCache.recordFound(normUpc);
+			StageMetrics.record(StageMetrics.Stage.NEGATIVE_CACHE, "recovered", StageMetrics.start());
+		}
+
+		String ownedKey = null;
+		if (ProductCache.isEnabled()) {
+			cacheStart = StageMetrics.start();
+			String outcomeLabel = "hit_item";
+			ProductCapture cached = ProductCache.peek(ProductCache.itemKey(productPage.peekItemNumber()));
+			if (cached == null) {
+				// Waits here while another worker extracts the same PDP.
+				outcomeLabel = "hit_url";
+				ProductCache.Claim claim = ProductCache.claim(ProductCache.urlKey(productPage.currentUrl()));
+				cached = claim.capture;
+				// Null for a waiter that gave up: the key stays with its owner.
+				ownedKey = claim.ownedKey;
+			}
+			if (cached != null) {
+				StageMetrics.record(StageMetrics.Stage.PRODUCT_CACHE, outcomeLabel, cacheStart);
+				ProductCapture hit = cached;
+				deliver(normUpc, currentDriver, null, () -> hit.withUpc(normUpc));
+				return;
+			}
+			StageMetrics.record(StageMetrics.Stage.PRODUCT_CACHE, "miss", cacheStart);
+		}
+
+		ProductSearchPage.AddToCartState atcState;
+		Supplier<ProductCapture> capture;
+		try {
+			if (HTML_EXTRACT) {
+				// One page-source call; fields are parsed on the extract pool.
+				String html = productPage.snapshotProductPage();
+				// A snapshot taken after the budget ran out may predate the page settling.
+				failIfBudgetExhausted(normUpc, "before the product page settled");
+				String url = productPage.currentUrl();
+				atcState = FrameworkConstants.SCREENSHOTS_ENABLED ? productPage.readAddToCartState() : null;
+				capture = () -> {
+					HtmlArchive.store(normUpc, url, html);
+					ProductPageParser.ParsedProduct parsed = ProductPageParser.parse(html, url);
+					return new ProductCapture(normUpc, url, parsed.getAddToCartState(), parsed.isSelectionRequired(),
+							parsed);
+				};
+			} else {
+				atcState = productPage.getAddToCartState();
+				if (atcState == ProductSearchPage.AddToCartState.MISSING)
+					// Add to Cart may just not have rendered within the budget.
+					failIfBudgetExhausted(normUpc, "before Add to Cart rendered");
+				ProductCapture live = new ProductCapture(normUpc, productPage.currentUrl(), atcState,
+						productPage.isSelectionRequired(), productPage);
+				String html = HtmlArchive.isEnabled() ? safePageSource(currentDriver) : null;
+				capture = () -> {
+					HtmlArchive.store(normUpc, live.url, html);
+					return live;
+				};
+			}
+		} catch (RuntimeException e) {
+			ProductCache.abandon(ownedKey);
+			throw e;
+		}
+		deliver(normUpc, currentDriver, atcState, ProductCache.publishing(ownedKey, capture));
+	}
+
+	/**
+	 * Screenshots a missing add-to-cart and classifies/persists the capture,
+	 * inline or on the stages.
+	 *
+	 * @param atcState live add-to-cart state, or null if the page was not read
+	 */
+	private void deliver(String normUpc, WebDriver currentDriver, ProductSearchPage.AddToCartState atcState,
+			Supplier<ProductCapture> capture) {
+		if (atcState == ProductSearchPage.AddToCartState.MISSING) {
+			String shot = ScreenshotUtils.capture(currentDriver, STATUS_NOT_PRESENT,
+					STATUS_NOT_PRESENT + "_" + normUpc);
+			if (shot != null)
+				ReportLogger.attachScreenshot(shot, STATUS_NOT_PRESENT + ": " + normUpc);
+		}
+
+		if (STAGED) {
+			Consumer<String> done = onDone;
+			String url = safeUrl(currentDriver);
+			handOff();
+			StagePipeline.extract(() -> {
+				long t = StageMetrics.start();
+				Classified c;
+				try {
+					c = classify(capture.get());
+					StageMetrics.record(StageMetrics.Stage.EXTRACT, HTML_EXTRACT ? "html" : "ok", t);
+				} catch (RuntimeException e) {
+					StageMetrics.record(StageMetrics.Stage.EXTRACT, "error", t);
+					String msg = "Extraction failed: " + safeMessage(e);
+					c = new Classified("FAILED", msg, emptyRow(normUpc, "NA", url, "FAILED", msg));
+				}
+				persistStaged(normUpc, c, done);
+			});
+			return;
+		}
+
+		Classified c = classify(capture.get());
+		persistRow(normUpc, c.status, c.row);
+		logClassified(normUpc, c);
+	}
+
+	/** Status, message and CSV row derived from a {@link ProductCapture}. */
+	static final class Classified {
+		final String status;
+		final String message;
+		final String row;
+
+		Classified(String status, String message, String row) {
+			this.status = status;
+			this.message = message;
+			this.row = row;
+		}
+	}
+
+	/** Maps captured PDP fields to the UPC status and CSV row; never touches the browser. */
+	static Classified classify(ProductCapture c) {
+		String status;
+		String message;
+		String addToCartCsv;
+
+		if (c.addToCartState == ProductSearchPage.AddToCartState.MISSING) {
+			status = STATUS_NOT_PRESENT;
+			message = "Add to Cart button not displayed";
+			addToCartCsv = "NO";
+		} else {
+			status = STATUS_PRESENT;
+			addToCartCsv = "YES";
+			if (c.isOutOfStock()) {
+				message = "Out of stock indicator detected";
+			} else if (c.selectionRequired) {
+				message = "Product requires selection before add to cart";
+			} else if (c.addToCartState == ProductSearchPage.AddToCartState.DISABLED) {
+				message = "Add to Cart is present but disabled";
+			} else {
+				message = "";
+			}
+		}
+
+		return new Classified(status, message, CSVUtils.formatFull(c.upc, addToCartCsv, c.url, status, message,
+				c.productName, c.itemNumber, c.productUPC, c.vendorItemNumber, c.casePack,
+				c.productDetailDescription, c.productDetailPrice, c.msrpPricing, c.stock, c.outOfStock, c.brandName,
+				c.itemUpcEanNumber, c.bulletFeatures, c.catalogPageNumber, c.dropShipOnly, c.msrpPrice,
+				c.primaryColor, c.prohibitedStates, c.vendorItemNo, c.yearLaunched, c.prop65Applies,
+				c.prop65CancerHarm, c.prop65ReproductiveHarm));
+	}
+
+	private static void logClassified(String upc, Classified c) {
+		if (STATUS_PRESENT.equals(c.status))
+			ReportLogger.pass(STATUS_PRESENT + " for UPC: " + upc);
+		else
+			ReportLogger.info(c.status + " for UPC: " + upc + " | " + c.message);
+	}
+
+	/** Performs a login using configured credentials (never cut by the UPC budget). */
+	private void relogin(WebDriver currentDriver) {
+		long t = StageMetrics.start();
+		try {
+			Deadline.unbounded(() -> {
+				LoginPage loginPage = new LoginPage(currentDriver);
+				loginPage.open();
+				loginPage.login(FrameworkConstants.USERNAME, FrameworkConstants.PASSWORD);
+				return null;
+			});
+			StageMetrics.record(StageMetrics.Stage.LOGIN, "ok", t);
+		} catch (RuntimeException e) {
+			StageMetrics.record(StageMetrics.Stage.LOGIN, "error", t);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes NO_PRODUCTS_FOUND status row and screenshot, and remembers the miss
+	 * if the site showed its no-results banner.
+	 */
+	private void writeNoProductsFound(WebDriver currentDriver, String upc, boolean noResultsShown) {
+		rememberMiss(upc, ProductSearchPage.SearchOutcome.NO_PRODUCTS_FOUND, noResultsShown);
+		String shot = ScreenshotUtils.capture(currentDriver, "NO_PRODUCTS_FOUND", "NO_PRODUCTS_FOUND_" + upc);
+		if (shot != null)
+			ReportLogger.attachScreenshot(shot, "NO_PRODUCTS_FOUND: " + upc);
+
+		appendEmptyRow(upc, "NO PRODUCT FOUND", "NO PRODUCT FOUND",
+				noResultsShown ? "No products found for this UPC" : "No product could be opened for this UPC",
+				currentDriver);
+	}
+
+	/**
+	 * Records a negative-cache miss only for a search that ended on the
+	 * no-results banner; a timeout or a search that merely found nothing to
+	 * click is searched again next run.
+	 *
+	 * @param upc            normalized UPC
+	 * @param outcome        search outcome
+	 * @param noResultsShown true if the no-results banner matched
+	 * @return true if a miss was recorded
+	 */
+	static boolean rememberMiss(String upc, ProductSearchPage.SearchOutcome outcome, boolean noResultsShown) {
+		if (outcome != ProductSearchPage.SearchOutcome.NO_PRODUCTS_FOUND || !noResultsShown)
+			return false;
+		if (NegativeCache.contains(upc))
+			StageMetrics.record(StageMetrics.Stage.NEGATIVE_CACHE, "confirmed", StageMetrics.start());
+		NegativeCache.recordMiss(upc);
+		return true;
+	}
+
+	/** Writes a NO PRODUCT FOUND row from the negative cache (no browser involved). */
+	private void writeCachedNoProductsFound(String upc, long missAt) {
+		String message = "No products found for this UPC (cached " + Instant.ofEpochMilli(missAt) + ")";
+		persistRow(upc, STATUS_NO_PRODUCT_CACHED,
+				emptyRow(upc, "NO PRODUCT FOUND", "", STATUS_NO_PRODUCT_CACHED, message));
+		ReportLogger.info(STATUS_NO_PRODUCT_CACHED + " for UPC: " + upc);
+	}
+
+	/** Writes BLOCKED status row and screenshot. */
+	private void writeBlocked(WebDriver currentDriver, String upc, String reason) {
+		String shot = ScreenshotUtils.capture(currentDriver, "BLOCKED", "BLOCKED_" + upc);
+		if (shot != null)
+			ReportLogger.attachScreenshot(shot, "BLOCKED: " + upc);
+
+		appendEmptyRow(upc, "NA", "BLOCKED", reason, currentDriver);
+
+		ReportLogger.fail("BLOCKED for UPC: " + upc + " | " + reason);
+	}
+
+	/** Writes a TIMEOUT row for a spent budget, a FAILED row for anything else. */
+	private void writeFailedOrTimeout(WebDriver currentDriver, String upc, RuntimeException e) {
+		if (!(e instanceof BudgetExhaustedException)) {
+			writeFailed(currentDriver, upc, e);
+			return;
+		}
+		String shot = ScreenshotUtils.capture(currentDriver, STATUS_TIMEOUT, STATUS_TIMEOUT + "_" + upc);
+		if (shot != null)
+			ReportLogger.attachScreenshot(shot, STATUS_TIMEOUT + ": " + upc);
+
+		appendEmptyRow(upc, "NA", STATUS_TIMEOUT, e.getMessage(), currentDriver);
+
+		ReportLogger.fail(STATUS_TIMEOUT + " for UPC: " + upc + " | " + e.getMessage());
+	}
+
+	/** Writes FAILED status row and screenshot. */
+	private void writeFailed(WebDriver currentDriver, String upc, Exception e) {
+		String msg = safeMessage(e);
+
+		String shot = ScreenshotUtils.capture(currentDriver, "FAILED", "FAILED_" + upc);
+		if (shot != null)
+			ReportLogger.attachScreenshot(shot, "FAILED: " + upc);
+
+		appendEmptyRow(upc, "NA", "FAILED", msg, currentDriver);
+
+		ReportLogger.fail("UPC failed: " + upc + " | " + msg);
+	}
+
+	/** Writes MAINTENANCE status row and screenshot. */
+	private void writeMaintenance(WebDriver currentDriver, String upc) {
+		String shot = ScreenshotUtils.capture(currentDriver, "MAINTENANCE", "MAINTENANCE_" + upc);
+		if (shot != null)
+			ReportLogger.attachScreenshot(shot, "MAINTENANCE: " + upc);
+
+		appendEmptyRow(upc, "NA", "MAINTENANCE", "Site is in maintenance mode", currentDriver);
+	}
+
+	/** Writes INVALID_UPC status row. */
+	private void writeInvalidUpc(WebDriver currentDriver, String upc) {
+		appendEmptyRow(upc, "NA", "INVALID_UPC", "Invalid UPC format or check digit", currentDriver);
+		ReportLogger.info("INVALID_UPC for input: " + upc);
+	}
+
+	/** Optional backoff when blocked or rate-limited is detected. */
+	private void backoffIfConfigured() {
+		try {
+			int backoffMs = RuntimeControls.blockedBackoffMs();
+			if (backoffMs > 0) {
+				Thread.sleep(backoffMs);
+			}
+		} catch (InterruptedException ignored) {
+		}
+	}
+
+	/** Detects offline browser state and throws if still offline after refresh. */
+	private void ensureOnlineOrThrow(WebDriver currentDriver) {
+		if (WaitUtils.isOfflinePage(currentDriver)) {
+			currentDriver.navigate().refresh();
+			WaitUtils.waitForPageLoad(currentDriver, 30);
+		}
+		if (WaitUtils.isOfflinePage(currentDriver)) {
+			throw new RuntimeException("Browser is offline after refresh.");
+		}
+	}
+
+	/** Appends a minimal CSV row with empty product fields. */
+	private void appendEmptyRow(String upc, String addToCart, String status, String message,
+			WebDriver currentDriver) {
+		persistRow(upc, status, emptyRow(upc, addToCart, safeUrl(currentDriver), status, message));
+	}
+
+	/** Formats a CSV row with empty product fields. */
+	private static String emptyRow(String upc, String addToCart, String url, String status, String message) {
+		return CSVUtils.formatFull(upc, addToCart, url, status, message, null, null, null, null, null, null, null,
+				null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+	}
+
+	/** Hands the row to the sink (or the persist stage) and remembers its status for the caller. */
+	private void persistRow(String upc, String status, String row) {
+		if (STAGED) {
+			Consumer<String> done = onDone;
+			handOff();
+			persistStaged(upc, new Classified(status, null, row), done);
+		} else {
+			sink.write(upc, row);
+		}
+		lastStatus = status;
+	}
+
+	/** Marks the current UPC as owned by the stages; completion is reported from there. */
+	private void handOff() {
+		handedOff = true;
+		inFlight.incrementAndGet();
+	}
+
+	/** Queues the sink write on the persist stage; blocks while that queue is full. */
+	private void persistStaged(String upc, Classified c, Consumer<String> done) {
+		try {
+			StagePipeline.persist(() -> {
+				try {
+					long t = StageMetrics.start();
+					try {
+						sink.write(upc, c.row);
+						StageMetrics.record(StageMetrics.Stage.PERSIST, "ok", t);
+					} catch (RuntimeException e) {
+						StageMetrics.record(StageMetrics.Stage.PERSIST, "error", t);
+						if (stageError == null)
+							stageError = e;
+						return;
+					}
+					if (c.message != null) {
+						ReportLogger.beginUpc(upc);
+						try {
+							logClassified(upc, c);
+						} finally {
+							ReportLogger.endUpc();
+						}
+					}
+					if (done != null)
+						done.accept(c.status);
+				} finally {
+					completeStaged();
+				}
+			});
+		} catch (RuntimeException e) {
+			completeStaged();
+			if (stageError == null)
+				stageError = e;
+		}
+	}
+
+	private void completeStaged() {
+		synchronized (inFlight) {
+			if (inFlight.decrementAndGet() == 0)
+				inFlight.notifyAll();
+		}
+	}
+
+	/** Safely returns the page source or null. */
+	private static String safePageSource(WebDriver currentDriver) {
+		try {
+			return currentDriver.getPageSource();
+		} catch (Exception ignored) {
+			return null;
+		}
+	}
+
+	/** Safely returns the current URL or empty string. */
+	private String safeUrl(WebDriver currentDriver) {
+		try {
+			return currentDriver.getCurrentUrl();
+		} catch (Exception ignored) {
+			return "";
+		}
+	}
+
+	/** Safely returns a message from an exception. */
+	private static String safeMessage(Exception e) {
+		String m = (e == null) ? "" : e.getMessage();
+		return (m == null) ? "" : m;
+	}
+
+	/** Returns true if the UPC is a valid GTIN (see {@link Gtin#isValid(String)}). */
+	public static boolean isValidUpc(String upc) {
+		return upc != null && Gtin.isValid(upc.trim());
+	}
+}
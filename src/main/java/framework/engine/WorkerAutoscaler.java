@@ -0,0 +1,220 @@
+package framework.engine;
+
+import framework.config.FrameworkConstants;
+import framework.config.RuntimeControls;
+import framework.driver.DriverHealth;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the number of active workers to the host (autoscale.enabled). Every
+ * autoscale.interval.ms it samples system CPU load, MemAvailable, /dev/shm
+ * usage and the RSS of every Chrome tree of this JVM, then moves the active
+ * count one step within [autoscale.min.workers, started workers]:
+ *
+ * <ul>
+ * <li>down when CPU is above autoscale.cpu.high, available memory is below
+ * autoscale.mem.reserve.mb or /dev/shm is fuller than autoscale.shm.max;</li>
+ * <li>up when CPU is below autoscale.cpu.low and one more browser of the
+ * average measured size still leaves the memory reserve free.</li>
+ * </ul>
+ *
+ * <p>The count is applied through {@link RuntimeControls}, so workers are
+ * added or retired between UPCs. After a change the next one waits
+ * autoscale.cooldown.ms, giving the new browser time to show its real cost.
+ * With autoscale.pin.cpus (taskset list, e.g. "1-3") every Chrome process
+ * tree is pinned to those CPUs, leaving the rest to the JVM. Linux only;
+ * elsewhere the sampled values are missing and the count stays put.
+ */
+public final class WorkerAutoscaler {
+
+	private static ScheduledExecutorService timer;
+	private static int maxWorkers;
+	private static int active;
+	private static long lastChange;
+	private static final Set<Long> PINNED = new HashSet<>();
+
+	private WorkerAutoscaler() {
+	}
+
+	/**
+	 * Starts sampling (no-op unless autoscale.enabled).
+	 *
+	 * @param workers number of started workers (upper bound)
+	 */
+	public static synchronized void start(int workers) {
+		if (!FrameworkConstants.AUTOSCALE_ENABLED || timer != null)
+			return;
+		maxWorkers = Math.max(1, workers);
+		active = clamp(FrameworkConstants.AUTOSCALE_START_WORKERS);
+		lastChange = System.currentTimeMillis();
+		RuntimeControls.setAutoscaledThreads(active);
+		System.out.println("Autoscaler: starting with " + active + " of " + maxWorkers + " workers");
+
+		timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "worker-autoscaler");
+			t.setDaemon(true);
+			return t;
+		});
+		long every = Math.max(1000, FrameworkConstants.AUTOSCALE_INTERVAL_MS);
+		timer.scheduleWithFixedDelay(WorkerAutoscaler::tick, every, every, TimeUnit.MILLISECONDS);
+	}
+
+	/** Stops sampling and lifts the autoscaler limit (end of run). */
+	public static synchronized void stop() {
+		if (timer == null)
+			return;
+		timer.shutdownNow();
+		timer = null;
+		RuntimeControls.setAutoscaledThreads(0);
+	}
+
+	private static void tick() {
+		try {
+			List<ProcessHandle> browsers = DriverHealth.browserProcesses();
+			long rssTotal = 0;
+			for (ProcessHandle b : browsers)
+				rssTotal += DriverHealth.treeRssMb(b);
+			long avgRss = browsers.isEmpty() ? 0 : rssTotal / browsers.size();
+			double cpu = systemCpuLoad();
+			long memAvail = memAvailableMb();
+			double shm = shmUsage();
+
+			decide(cpu, memAvail, shm, avgRss);
+			pin(browsers);
+		} catch (RuntimeException e) {
+			System.out.println("Autoscaler sample failed: " + e.getMessage());
+		}
+	}
+
+	private static synchronized void decide(double cpu, long memAvail, double shm, long avgRss) {
+		String sample = String.format("cpu=%.2f memAvailMb=%d shm=%.2f chromeRssMb=%d", cpu, memAvail, shm, avgRss);
+		int target = active;
+		String why = null;
+		if (cpu > FrameworkConstants.AUTOSCALE_CPU_HIGH) {
+			target = active - 1;
+			why = "cpu high";
+		} else if (memAvail >= 0 && memAvail < FrameworkConstants.AUTOSCALE_MEM_RESERVE_MB) {
+			target = active - 1;
+			why = "memory low";
+		} else if (shm > FrameworkConstants.AUTOSCALE_SHM_MAX) {
+			target = active - 1;
+			why = "/dev/shm full";
+		} else if (cpu >= 0 && cpu < FrameworkConstants.AUTOSCALE_CPU_LOW && memAvail >= 0
+				&& memAvail - avgRss > FrameworkConstants.AUTOSCALE_MEM_RESERVE_MB) {
+			target = active + 1;
+			why = "headroom";
+		}
+
+		target = clamp(target);
+		// Pressure is handled at once; growth waits out the cooldown.
+		boolean coolingDown = System.currentTimeMillis() - lastChange < FrameworkConstants.AUTOSCALE_COOLDOWN_MS;
+		if (target == active || (target > active && coolingDown))
+			return;
+		System.out.println("Autoscaler: " + active + " -> " + target + " workers (" + why + "; " + sample + ")");
+		active = target;
+		lastChange = System.currentTimeMillis();
+		RuntimeControls.setAutoscaledThreads(active);
+	}
+
+	private static int clamp(int n) {
+		return Math.max(Math.min(Math.max(1, FrameworkConstants.AUTOSCALE_MIN_WORKERS), maxWorkers),
+				Math.min(n, maxWorkers));
+	}
+
+	/** Pins new Chrome trees (browser and all children, via taskset -a) to autoscale.pin.cpus. */
+	private static void pin(List<ProcessHandle> browsers) {
+		String cpus = FrameworkConstants.AUTOSCALE_PIN_CPUS;
+		if (cpus.isEmpty())
+			return;
+		for (ProcessHandle b : browsers) {
+			if (!PINNED.add(b.pid()))
+				continue;
+			taskset(cpus, b.pid());
+			b.descendants().forEach(c -> taskset(cpus, c.pid()));
+		}
+		PINNED.removeIf(pid -> !ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false));
+	}
+
+	private static void taskset(String cpus, long pid) {
+		try {
+			Process p = new ProcessBuilder("taskset", "-a", "-p", "-c", cpus, String.valueOf(pid))
+					.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+			p.waitFor(5, TimeUnit.SECONDS);
+		} catch (IOException e) {
+			System.out.println("Autoscaler: CPU pinning unavailable (" + e.getMessage() + ")");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * getCpuLoad() (JDK 14+) or, on JDK 11, getSystemCpuLoad(), which later
+	 * JDKs deprecate in its favour; looked up by name so neither release
+	 * needs a deprecated call compiled in. Null if the platform MXBean has
+	 * neither.
+	 */
+	private static final Method CPU_LOAD = cpuLoadMethod();
+
+	private static Method cpuLoadMethod() {
+		for (String name : new String[] { "getCpuLoad", "getSystemCpuLoad" }) {
+			try {
+				return com.sun.management.OperatingSystemMXBean.class.getMethod(name);
+			} catch (NoSuchMethodException | RuntimeException | LinkageError ignored) {
+				// Try the next name.
+			}
+		}
+		return null;
+	}
+
+	/** System-wide CPU load 0..1, or -1. */
+	private static double systemCpuLoad() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (CPU_LOAD == null || !(os instanceof com.sun.management.OperatingSystemMXBean))
+			return -1;
+		try {
+			return ((Number) CPU_LOAD.invoke(os)).doubleValue();
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return -1;
+		}
+	}
+
+	/** MemAvailable from /proc/meminfo in MB, or -1. */
+	private static long memAvailableMb() {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/meminfo"))) {
+				if (line.startsWith("MemAvailable:"))
+					return Long.parseLong(line.substring(13).trim().split("\\s+")[0]) / 1024;
+			}
+		} catch (IOException | RuntimeException ignored) {
+		}
+		return -1;
+	}
+
+	/** Used fraction of /dev/shm, or -1. */
+	private static double shmUsage() {
+		Path shm = Paths.get("/dev/shm");
+		try {
+			if (!Files.isDirectory(shm))
+				return -1;
+			FileStore store = Files.getFileStore(shm);
+			long total = store.getTotalSpace();
+			return total <= 0 ? -1 : 1.0 - (double) store.getUsableSpace() / total;
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+}
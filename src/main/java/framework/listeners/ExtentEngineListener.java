@@ -0,0 +1,33 @@
+package framework.listeners;
+
+import com.aventstack.extentreports.ExtentTest;
+import framework.engine.EngineListener;
+import framework.utils.ExtentManager;
+
+/**
+ * Gives every ScrapeEngine worker (batch or lease worker) its own ExtentTest,
+ * so ReportLogger output from worker threads lands in the Extent report the
+ * same way one TestNG invocation per batch did.
+ */
+public class ExtentEngineListener implements EngineListener {
+
+	/** Creates and binds an ExtentTest for the worker thread. */
+	@Override
+	public void onWorkerStart(String workerName) {
+		ExtentTest test = ExtentManager.getInstance().createTest(workerName);
+		ExtentTestListener.bind(test);
+	}
+
+	/** Marks the worker's ExtentTest and unbinds it. */
+	@Override
+	public void onWorkerFinish(String workerName, Throwable error) {
+		ExtentTest test = ExtentTestListener.getTest();
+		if (test != null) {
+			if (error != null)
+				test.fail(error);
+			else
+				test.pass(workerName + " finished");
+		}
+		ExtentTestListener.unbind();
+	}
+}
@@ -29,6 +29,21 @@ public class ExtentTestListener implements ITestListener {
 		return TEST.get();
 	}
 
+	/**
+	 * Binds an ExtentTest to the current thread. Used by engine worker threads,
+	 * which are not TestNG test threads.
+	 *
+	 * @param test ExtentTest for this thread
+	 */
+	public static void bind(ExtentTest test) {
+		TEST.set(test);
+	}
+
+	/** Removes the ExtentTest bound to the current thread. */
+	public static void unbind() {
+		TEST.remove();
+	}
+
 	/** Creates a new ExtentTest for the current test method. */
 	@Override
 	public void onTestStart(ITestResult result) {
@@ -0,0 +1,53 @@
+package framework.listeners;
+
+import framework.engine.EngineListener;
+import framework.metrics.LiveStatus;
+
+/**
+ * Feeds {@link LiveStatus}: starts its HTTP endpoint when a ScrapeEngine run
+ * starts, tracks workers and their current UPC, and counts every result.
+ */
+public class LiveStatusEngineListener implements EngineListener {
+
+	/** Resets the live counters and starts the status server. */
+	@Override
+	public void onRunStart(int pendingUpcs) {
+		LiveStatus.start(pendingUpcs);
+	}
+
+	/** Registers the worker thread. */
+	@Override
+	public void onWorkerStart(String workerName) {
+		LiveStatus.workerStarted(workerName);
+	}
+
+	/** Marks the worker's current UPC. */
+	@Override
+	public void onUpcStart(String upc) {
+		LiveStatus.upcStarted(upc);
+	}
+
+	/** Clears the worker's current UPC. */
+	@Override
+	public void onUpcFinish(String upc) {
+		LiveStatus.upcFinished();
+	}
+
+	/** Counts the outcome. */
+	@Override
+	public void onUpcProcessed(String upc, String status, long elapsedMs) {
+		LiveStatus.upcProcessed(status);
+	}
+
+	/** Unregisters the worker thread. */
+	@Override
+	public void onWorkerFinish(String workerName, Throwable error) {
+		LiveStatus.workerFinished(workerName, error != null);
+	}
+
+	/** Stops the status server. */
+	@Override
+	public void onRunFinish(int processedUpcs, int failedWorkers) {
+		LiveStatus.stop();
+	}
+}
@@ -0,0 +1,29 @@
+package framework.listeners;
+
+import framework.engine.EngineListener;
+import framework.metrics.MetricsExporter;
+
+/**
+ * Starts periodic Prometheus export of the stage histograms when a
+ * ScrapeEngine run starts, and writes the final file plus a console summary
+ * when it ends.
+ */
+public class MetricsEngineListener implements EngineListener {
+
+	/** Starts the background exporter. */
+	@Override
+	public void onRunStart(int pendingUpcs) {
+		MetricsExporter.start();
+	}
+
+	/** Writes the final export and prints the latency summary. */
+	@Override
+	public void onRunFinish(int processedUpcs, int failedWorkers) {
+		String summary = MetricsExporter.stop();
+		if (!summary.isEmpty()) {
+			System.out.println("=== Stage latency summary (" + processedUpcs + " UPCs) -> "
+					+ MetricsExporter.promFile() + " ===");
+			System.out.print(summary);
+		}
+	}
+}
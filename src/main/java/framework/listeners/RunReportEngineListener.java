@@ -0,0 +1,35 @@
+package framework.listeners;
+
+import framework.engine.EngineListener;
+import framework.utils.RunReport;
+
+/**
+ * Feeds the streaming {@link RunReport}: opens it when a ScrapeEngine run
+ * starts, records every UPC result and writes the summary HTML at the end.
+ */
+public class RunReportEngineListener implements EngineListener {
+
+	/** Opens the event file. */
+	@Override
+	public void onRunStart(int pendingUpcs) {
+		RunReport.start();
+	}
+
+	/** Records the UPC status and duration. */
+	@Override
+	public void onUpcProcessed(String upc, String status, long elapsedMs) {
+		RunReport.result(upc, status, elapsedMs);
+	}
+
+	/** Counts the UPC for the worker thread that processed it. */
+	@Override
+	public void onUpcFinish(String upc) {
+		RunReport.workerUpc();
+	}
+
+	/** Closes the event file and writes the final summary. */
+	@Override
+	public void onRunFinish(int processedUpcs, int failedWorkers) {
+		RunReport.finish();
+	}
+}
@@ -0,0 +1,83 @@
+package framework.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram. Recording is lock-free (one LongAdder
+ * increment per bucket/sum/count), so it is cheap enough for every UPC stage
+ * on every worker thread. Bucket bounds suit browser work: 5 ms up to 2 min.
+ */
+public final class LatencyHistogram {
+
+	/** Upper bucket bounds in milliseconds; an implicit +Inf bucket follows. */
+	static final long[] BOUNDS_MS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 20000, 30000, 45000,
+			60000, 120000 };
+
+	private final LongAdder[] buckets = new LongAdder[BOUNDS_MS.length + 1];
+	private final LongAdder sumNanos = new LongAdder();
+	private final LongAdder count = new LongAdder();
+
+	LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = new LongAdder();
+	}
+
+	/** Records one observation. */
+	public void record(long nanos) {
+		long ms = nanos / 1_000_000L;
+		int i = 0;
+		while (i < BOUNDS_MS.length && ms > BOUNDS_MS[i])
+			i++;
+		buckets[i].increment();
+		sumNanos.add(nanos);
+		count.increment();
+	}
+
+	/** Returns the number of observations. */
+	public long count() {
+		return count.sum();
+	}
+
+	/** Returns the sum of all observations in seconds. */
+	public double sumSeconds() {
+		return sumNanos.sum() / 1e9;
+	}
+
+	/** Returns cumulative counts per bound (last entry is +Inf == count). */
+	long[] cumulative() {
+		long[] c = new long[buckets.length];
+		long running = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			running += buckets[i].sum();
+			c[i] = running;
+		}
+		return c;
+	}
+
+	/**
+	 * Estimates a quantile in milliseconds by linear interpolation inside the
+	 * bucket that holds it (the same estimate Prometheus' histogram_quantile uses).
+	 *
+	 * @param q quantile in [0, 1]
+	 * @return estimated latency in ms, or 0 when empty
+	 */
+	public double quantileMs(double q) {
+		long[] c = cumulative();
+		long total = c[c.length - 1];
+		if (total == 0)
+			return 0;
+		double rank = q * total;
+		for (int i = 0; i < c.length; i++) {
+			if (c[i] >= rank) {
+				if (i == BOUNDS_MS.length)
+					return BOUNDS_MS[BOUNDS_MS.length - 1];
+				long lower = (i == 0) ? 0 : BOUNDS_MS[i - 1];
+				long prev = (i == 0) ? 0 : c[i - 1];
+				long inBucket = c[i] - prev;
+				double frac = inBucket == 0 ? 0 : (rank - prev) / inBucket;
+				return lower + (BOUNDS_MS[i] - lower) * frac;
+			}
+		}
+		return BOUNDS_MS[BOUNDS_MS.length - 1];
+	}
+}
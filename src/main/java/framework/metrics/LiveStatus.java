@@ -0,0 +1,311 @@
+package framework.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import framework.config.FrameworkConstants;
+import framework.config.RuntimeControls;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live state of the running scrape, served as JSON by a small local HTTP
+ * server (status.port &gt; 0, bound to status.host) on one daemon thread:
+ *
+ * <ul>
+ * <li>GET /status - per-worker current UPC, last finished stage and browser
+ * starts; queue depths; processed/remaining counts; outcome counters (total
+ * and within status.window.sec); rolling UPCs/minute and ETA; browser starts,
+ * restarts and recycles; the effective runtime controls;</li>
+ * <li>GET /metrics - the stage histograms in Prometheus text format.</li>
+ * </ul>
+ *
+ * <p>Workers only update a few volatile fields and counters; the JSON is built
+ * on the HTTP thread when requested. A worker whose UPC runs longer than twice
+ * upc.budget.ms is reported as stalled.
+ */
+public final class LiveStatus {
+
+	/** State of one worker thread. */
+	private static final class Worker {
+		final String name;
+		final long startedAt = System.currentTimeMillis();
+		volatile String upc;
+		volatile long upcSince;
+		volatile String stage;
+		volatile long stageAt;
+		volatile int upcs;
+		volatile int browserStarts;
+
+		Worker(String name) {
+			this.name = name;
+		}
+	}
+
+	private static final ThreadLocal<Worker> CURRENT = new ThreadLocal<>();
+	private static final Map<String, Worker> WORKERS = new ConcurrentHashMap<>();
+	private static final Map<String, LongAdder> OUTCOMES = new ConcurrentHashMap<>();
+	/** Completion time and status of the UPCs within status.window.sec, oldest first. */
+	private static final ConcurrentLinkedDeque<Object[]> RECENT = new ConcurrentLinkedDeque<>();
+	private static final AtomicInteger PROCESSED = new AtomicInteger();
+	private static final AtomicInteger WORKERS_FINISHED = new AtomicInteger();
+	private static final AtomicInteger WORKERS_FAILED = new AtomicInteger();
+	private static final AtomicInteger BROWSER_STARTS = new AtomicInteger();
+	private static final AtomicInteger BROWSER_RESTARTS = new AtomicInteger();
+	private static final AtomicInteger BROWSER_RECYCLES = new AtomicInteger();
+
+	private static volatile long runStart;
+	private static volatile int pending = -1;
+	private static HttpServer server;
+
+	private LiveStatus() {
+	}
+
+	/**
+	 * Resets the counters and starts the HTTP server (if status.port &gt; 0).
+	 *
+	 * @param pendingUpcs UPCs of the run, or -1 if unknown (lease mode)
+	 */
+	public static synchronized void start(int pendingUpcs) {
+		runStart = System.currentTimeMillis();
+		pending = pendingUpcs;
+		WORKERS.clear();
+		OUTCOMES.clear();
+		RECENT.clear();
+		PROCESSED.set(0);
+		WORKERS_FINISHED.set(0);
+		WORKERS_FAILED.set(0);
+		BROWSER_STARTS.set(0);
+		BROWSER_RESTARTS.set(0);
+		BROWSER_RECYCLES.set(0);
+
+		if (FrameworkConstants.STATUS_PORT <= 0 || server != null)
+			return;
+		try {
+			HttpServer s = HttpServer.create(
+					new InetSocketAddress(FrameworkConstants.STATUS_HOST, FrameworkConstants.STATUS_PORT), 0);
+			s.createContext("/status", ex -> respond(ex, "application/json", render()));
+			s.createContext("/metrics", ex -> respond(ex, "text/plain; version=0.0.4", MetricsExporter.render()));
+			s.setExecutor(Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "status-http");
+				t.setDaemon(true);
+				return t;
+			}));
+			s.start();
+			server = s;
+			System.out.println("Live status: http://" + FrameworkConstants.STATUS_HOST + ":"
+					+ s.getAddress().getPort() + "/status");
+		} catch (IOException e) {
+			System.out.println("Live status server not started: " + e.getMessage());
+		}
+	}
+
+	/** Stops the HTTP server (end of run). */
+	public static synchronized void stop() {
+		if (server == null)
+			return;
+		server.stop(0);
+		server = null;
+	}
+
+	/** Registers the calling thread as a worker. */
+	public static void workerStarted(String name) {
+		Worker w = new Worker(name);
+		WORKERS.put(name, w);
+		CURRENT.set(w);
+	}
+
+	/** Unregisters the calling worker thread. */
+	public static void workerFinished(String name, boolean failed) {
+		WORKERS.remove(name);
+		CURRENT.remove();
+		(failed ? WORKERS_FAILED : WORKERS_FINISHED).incrementAndGet();
+	}
+
+	/** Marks the UPC the calling worker starts on. */
+	public static void upcStarted(String upc) {
+		Worker w = CURRENT.get();
+		if (w == null)
+			return;
+		w.upcSince = System.currentTimeMillis();
+		w.upc = upc;
+		w.stage = null;
+		w.upcs++;
+	}
+
+	/** Marks the calling worker idle between UPCs. */
+	public static void upcFinished() {
+		Worker w = CURRENT.get();
+		if (w == null)
+			return;
+		w.upc = null;
+		w.upcSince = 0;
+	}
+
+	/** Counts a persisted UPC (any thread). */
+	public static void upcProcessed(String status) {
+		long now = System.currentTimeMillis();
+		PROCESSED.incrementAndGet();
+		OUTCOMES.computeIfAbsent(status, k -> new LongAdder()).increment();
+		RECENT.addLast(new Object[] { now, status });
+		trim(now);
+	}
+
+	/** Notes a finished stage of the calling worker (called by {@link StageMetrics}). */
+	static void stage(StageMetrics.Stage stage, String outcome) {
+		if (stage == StageMetrics.Stage.DRIVER_RECYCLE)
+			BROWSER_RECYCLES.incrementAndGet();
+		Worker w = CURRENT.get();
+		if (w == null)
+			return;
+		if (stage == StageMetrics.Stage.DRIVER_START) {
+			BROWSER_STARTS.incrementAndGet();
+			if (++w.browserStarts > 1)
+				BROWSER_RESTARTS.incrementAndGet();
+		}
+		w.stageAt = System.currentTimeMillis();
+		w.stage = stage.label() + (outcome == null ? "" : ":" + outcome);
+	}
+
+	private static void trim(long now) {
+		long from = now - Math.max(1, FrameworkConstants.STATUS_WINDOW_SEC) * 1000L;
+		Object[] head;
+		while ((head = RECENT.peekFirst()) != null && (Long) head[0] < from)
+			RECENT.pollFirst();
+	}
+
+	/** Renders the current state as one JSON object. */
+	public static String render() {
+		long now = System.currentTimeMillis();
+		trim(now);
+		int processed = PROCESSED.get();
+		int remaining = pending < 0 ? -1 : Math.max(0, pending - processed);
+
+		Map<String, Integer> recent = new TreeMap<>();
+		int inWindow = 0;
+		for (Iterator<Object[]> it = RECENT.iterator(); it.hasNext();) {
+			recent.merge((String) it.next()[1], 1, Integer::sum);
+			inWindow++;
+		}
+		long windowMs = Math.min(Math.max(1, FrameworkConstants.STATUS_WINDOW_SEC) * 1000L, now - runStart);
+		double perMinute = windowMs <= 0 ? 0 : inWindow * 60000.0 / windowMs;
+
+		StringBuilder sb = new StringBuilder(1024);
+		sb.append('{');
+		field(sb, "time", now).append(',');
+		field(sb, "uptimeSec", (now - runStart) / 1000).append(',');
+		field(sb, "processed", processed).append(',');
+		field(sb, "pending", pending).append(',');
+		field(sb, "remaining", remaining).append(',');
+		field(sb, "upcsPerMinute", Math.round(perMinute * 10) / 10.0).append(',');
+		field(sb, "etaSec", remaining < 0 || perMinute <= 0 ? -1 : Math.round(remaining * 60 / perMinute))
+				.append(',');
+		field(sb, "windowSec", FrameworkConstants.STATUS_WINDOW_SEC).append(',');
+
+		sb.append("\"outcomes\":{");
+		Map<String, Long> totals = new TreeMap<>();
+		OUTCOMES.forEach((k, v) -> totals.put(k, v.sum()));
+		counters(sb, totals).append("},\"recentOutcomes\":{");
+		counters(sb, recent).append("},");
+
+		sb.append("\"browsers\":{");
+		field(sb, "starts", BROWSER_STARTS.get()).append(',');
+		field(sb, "restarts", BROWSER_RESTARTS.get()).append(',');
+		field(sb, "recycles", BROWSER_RECYCLES.get()).append("},");
+
+		sb.append("\"queues\":{");
+		boolean first = true;
+		for (Map.Entry<String, int[]> q : new TreeMap<>(StageMetrics.queueSnapshot()).entrySet()) {
+			if (!first)
+				sb.append(',');
+			first = false;
+			string(sb, q.getKey()).append(":{");
+			field(sb, "depth", q.getValue()[0]).append(',');
+			field(sb, "capacity", q.getValue()[1]).append('}');
+		}
+		sb.append("},");
+
+		sb.append("\"workers\":{");
+		field(sb, "active", WORKERS.size()).append(',');
+		field(sb, "finished", WORKERS_FINISHED.get()).append(',');
+		field(sb, "failed", WORKERS_FAILED.get()).append(',');
+		int limit = RuntimeControls.activeThreads();
+		field(sb, "limit", limit == Integer.MAX_VALUE ? -1 : limit).append(",\"list\":[");
+		List<Worker> workers = new ArrayList<>(WORKERS.values());
+		workers.sort((a, b) -> a.name.compareTo(b.name));
+		long stalledAfter = 2L * FrameworkConstants.UPC_BUDGET_MS;
+		for (int i = 0; i < workers.size(); i++) {
+			Worker w = workers.get(i);
+			String upc = w.upc;
+			long upcMs = upc == null ? 0 : now - w.upcSince;
+			String stage = w.stage;
+			sb.append(i == 0 ? "{" : ",{");
+			sb.append("\"name\":");
+			string(sb, w.name).append(",\"upc\":");
+			string(sb, upc).append(',');
+			field(sb, "upcElapsedMs", upcMs).append(",\"lastStage\":");
+			string(sb, stage).append(',');
+			field(sb, "lastStageAgoMs", stage == null ? -1 : now - w.stageAt).append(',');
+			field(sb, "upcs", w.upcs).append(',');
+			field(sb, "browserStarts", w.browserStarts).append(',');
+			field(sb, "uptimeSec", (now - w.startedAt) / 1000).append(',');
+			sb.append("\"stalled\":").append(upc != null && stalledAfter > 0 && upcMs > stalledAfter).append('}');
+		}
+		sb.append("]},\"controls\":");
+		string(sb, RuntimeControls.describe()).append('}');
+		return sb.toString();
+	}
+
+	private static StringBuilder counters(StringBuilder sb, Map<String, ? extends Number> m) {
+		boolean first = true;
+		for (Map.Entry<String, ? extends Number> e : m.entrySet()) {
+			if (!first)
+				sb.append(',');
+			first = false;
+			string(sb, e.getKey()).append(':').append(e.getValue());
+		}
+		return sb;
+	}
+
+	private static StringBuilder field(StringBuilder sb, String key, Number value) {
+		return sb.append('"').append(key).append("\":").append(value);
+	}
+
+	private static StringBuilder string(StringBuilder sb, String value) {
+		if (value == null)
+			return sb.append("null");
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(' ');
+			else
+				sb.append(c);
+		}
+		return sb.append('"');
+	}
+
+	private static void respond(HttpExchange ex, String type, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		ex.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+		ex.getResponseHeaders().set("Cache-Control", "no-store");
+		ex.sendResponseHeaders(200, bytes.length);
+		try (OutputStream os = ex.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package framework.metrics;
+
+import framework.config.FrameworkConstants;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link StageMetrics} as a Prometheus text-format file (suitable for
+ * the node_exporter textfile collector or for diffing between runs) on a
+ * background thread, plus a human-readable summary at the end of a run.
+ */
+public final class MetricsExporter {
+
+	/** Metric name of the stage histogram. */
+	public static final String METRIC = "scrape_stage_duration_seconds";
+
+	/** Metric name of the stage queue depth gauge. */
+	public static final String QUEUE_METRIC = "scrape_stage_queue_depth";
+
+	private static ScheduledExecutorService scheduler;
+
+	private MetricsExporter() {
+	}
+
+	/** Returns the configured Prometheus file path. */
+	public static Path promFile() {
+		return Paths.get(FrameworkConstants.METRICS_FILE);
+	}
+
+	/** Starts periodic export (idempotent). */
+	public static synchronized void start() {
+		if (!FrameworkConstants.METRICS_ENABLED || scheduler != null)
+			return;
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics-export");
+			t.setDaemon(true);
+			return t;
+		});
+		long every = Math.max(1, FrameworkConstants.METRICS_EXPORT_INTERVAL_SEC);
+		scheduler.scheduleAtFixedRate(MetricsExporter::writeQuietly, every, every, TimeUnit.SECONDS);
+	}
+
+	/** Stops periodic export, writes the final file and returns the summary text. */
+	public static synchronized String stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		if (!FrameworkConstants.METRICS_ENABLED)
+			return "";
+		writeQuietly();
+		return summary();
+	}
+
+	private static void writeQuietly() {
+		try {
+			write(promFile());
+		} catch (IOException ignored) {
+			// Metrics are best-effort and must never break a run.
+		}
+	}
+
+	/** Writes the Prometheus text file atomically (tmp file + move). */
+	public static void write(Path target) throws IOException {
+		if (target.getParent() != null)
+			Files.createDirectories(target.getParent());
+		Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+		Files.write(tmp, render().getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** Renders all histograms in Prometheus text exposition format. */
+	public static String render() {
+		StringBuilder sb = new StringBuilder(4096);
+		sb.append("# HELP ").append(METRIC).append(" Latency of UPC hot-path stages by outcome.\n");
+		sb.append("# TYPE ").append(METRIC).append(" histogram\n");
+		for (Map.Entry<String, LatencyHistogram> e : StageMetrics.snapshot().entrySet()) {
+			String[] key = e.getKey().split("\\|", 2);
+			String labels = "stage=\"" + key[0] + "\",outcome=\"" + key[1] + "\"";
+			LatencyHistogram h = e.getValue();
+			long[] cumulative = h.cumulative();
+			for (int i = 0; i < cumulative.length; i++) {
+				String le = (i < LatencyHistogram.BOUNDS_MS.length)
+						? String.format(Locale.ROOT, "%.3f", LatencyHistogram.BOUNDS_MS[i] / 1000.0)
+						: "+Inf";
+				sb.append(METRIC).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ")
+						.append(cumulative[i]).append('\n');
+			}
+			sb.append(METRIC).append("_sum{").append(labels).append("} ")
+					.append(String.format(Locale.ROOT, "%.6f", h.sumSeconds())).append('\n');
+			sb.append(METRIC).append("_count{").append(labels).append("} ").append(h.count()).append('\n');
+		}
+
+		Map<String, int[]> queues = StageMetrics.queueSnapshot();
+		if (!queues.isEmpty()) {
+			sb.append("# HELP ").append(QUEUE_METRIC).append(" Items waiting in a pipeline stage queue.\n");
+			sb.append("# TYPE ").append(QUEUE_METRIC).append(" gauge\n");
+			for (Map.Entry<String, int[]> e : queues.entrySet())
+				sb.append(QUEUE_METRIC).append("{queue=\"").append(e.getKey()).append("\",capacity=\"")
+						.append(e.getValue()[1]).append("\"} ").append(e.getValue()[0]).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/** Returns a fixed-width table of count/mean/p50/p95/p99 per stage and outcome. */
+	public static String summary() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "%-18s %-26s %8s %10s %10s %10s %10s%n", "stage", "outcome", "count",
+				"mean_ms", "p50_ms", "p95_ms", "p99_ms"));
+		for (Map.Entry<String, LatencyHistogram> e : StageMetrics.snapshot().entrySet()) {
+			String[] key = e.getKey().split("\\|", 2);
+			LatencyHistogram h = e.getValue();
+			double mean = h.count() == 0 ? 0 : h.sumSeconds() * 1000.0 / h.count();
+			sb.append(String.format(Locale.ROOT, "%-18s %-26s %8d %10.0f %10.0f %10.0f %10.0f%n", key[0], key[1],
+					h.count(), mean, h.quantileMs(0.50), h.quantileMs(0.95), h.quantileMs(0.99)));
+		}
+		return sb.toString();
+	}
+}
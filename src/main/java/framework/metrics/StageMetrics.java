@@ -0,0 +1,108 @@
+package framework.metrics;
+
+import framework.config.FrameworkConstants;
+import framework.utils.ReportLogger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Process-wide registry of per-stage latency histograms, labelled by stage and
+ * outcome. Typical use on the hot path:
+ *
+ * <pre>
+ * long t = StageMetrics.start();
+ * ... stage work ...
+ * StageMetrics.record(StageMetrics.Stage.LOGIN, "ok", t);
+ * </pre>
+ */
+public final class StageMetrics {
+
+	/** Instrumented stages of the UPC hot path. */
+	public enum Stage {
+		DRIVER_START, DRIVER_RECYCLE, LOGIN, SEARCH_READY, SEARCH, PREFETCH, ADD_TO_CART_WAIT, FIELD_CAPTURE, SCREENSHOT,
+		EXTRACT, PERSIST, BACKPRESSURE, PRODUCT_CACHE, NEGATIVE_CACHE, CSV_APPEND, CHECKPOINT, UPC_TOTAL;
+
+		/** Lower-case label used in the export. */
+		public String label() {
+			return name().toLowerCase();
+		}
+	}
+
+	private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+	private static final Map<String, IntSupplier> QUEUE_DEPTHS = new ConcurrentHashMap<>();
+	private static final Map<String, Integer> QUEUE_CAPACITIES = new ConcurrentHashMap<>();
+
+	private StageMetrics() {
+	}
+
+	/** Returns a start timestamp for {@link #record(Stage, String, long)}. */
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the time elapsed since startNanos.
+	 *
+	 * @param stage      stage
+	 * @param outcome    outcome label (e.g. ok, error, search outcome, UPC status)
+	 * @param startNanos value returned by {@link #start()}
+	 */
+	public static void record(Stage stage, String outcome, long startNanos) {
+		recordBetween(stage, outcome, startNanos, System.nanoTime());
+	}
+
+	/**
+	 * Records an interval measured with two {@link #start()} timestamps, for
+	 * stages whose label is only known after they ended.
+	 */
+	public static void recordBetween(Stage stage, String outcome, long startNanos, long endNanos) {
+		LiveStatus.stage(stage, outcome);
+		if (!FrameworkConstants.METRICS_ENABLED)
+			return;
+		String label = normalize(outcome);
+		HISTOGRAMS.computeIfAbsent(stage.label() + '|' + label, k -> new LatencyHistogram())
+				.record(endNanos - startNanos);
+		if (ReportLogger.isDebugEnabled())
+			ReportLogger.stage(stage.label(), label, (endNanos - startNanos) / 1_000_000L);
+	}
+
+	/** Returns a sorted snapshot of all histograms keyed by "stage|outcome". */
+	public static Map<String, LatencyHistogram> snapshot() {
+		return new TreeMap<>(HISTOGRAMS);
+	}
+
+	/**
+	 * Registers a queue whose current depth is exported as a gauge.
+	 *
+	 * @param name     queue label
+	 * @param depth    current depth supplier
+	 * @param capacity queue capacity
+	 */
+	public static void registerQueue(String name, IntSupplier depth, int capacity) {
+		QUEUE_DEPTHS.put(name, depth);
+		QUEUE_CAPACITIES.put(name, capacity);
+	}
+
+	/** Returns a sorted snapshot of queue name to {depth, capacity}. */
+	public static Map<String, int[]> queueSnapshot() {
+		Map<String, int[]> out = new TreeMap<>();
+		for (Map.Entry<String, IntSupplier> e : QUEUE_DEPTHS.entrySet())
+			out.put(e.getKey(), new int[] { e.getValue().getAsInt(), QUEUE_CAPACITIES.getOrDefault(e.getKey(), 0) });
+		return out;
+	}
+
+	/** Clears all histograms (benchmarks/tests). */
+	public static void reset() {
+		HISTOGRAMS.clear();
+	}
+
+	/** Turns free-form outcome text (e.g. "ADD TO CART PRESENT") into a label value. */
+	private static String normalize(String outcome) {
+		if (outcome == null || outcome.isEmpty())
+			return "unknown";
+		return outcome.trim().toLowerCase().replace(' ', '_');
+	}
+}
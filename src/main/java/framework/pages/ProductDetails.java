@@ -0,0 +1,78 @@
+package framework.pages;
+
+/**
+ * Captured PDP fields, read either live through WebDriver
+ * ({@link ProductSearchPage}) or from an HTML snapshot
+ * ({@link ProductPageParser}).
+ */
+public interface ProductDetails {
+
+	/** Returns the product name. */
+	String getProductName();
+
+	/** Returns the item number. */
+	String getItemNumber();
+
+	/** Returns the product UPC. */
+	String getProductUPC();
+
+	/** Returns the vendor item number. */
+	String getVendorItemNumber();
+
+	/** Returns the case pack. */
+	String getCasePack();
+
+	/** Returns the product detail description. */
+	String getProductDetailDescription();
+
+	/** Returns the product detail price. */
+	String getProductDetailPrice();
+
+	/** Returns the MSRP pricing text. */
+	String getMsrpPricing();
+
+	/** Returns the stock text. */
+	String getStock();
+
+	/** Returns the out-of-stock label text if present. */
+	String getOutOfStock();
+
+	/** Returns the brand name. */
+	String getBrandName();
+
+	/** Returns the item UPC/EAN number. */
+	String getItemUpcEanNumber();
+
+	/** Returns the bullet features text. */
+	String getBulletFeatures();
+
+	/** Returns the catalog page number. */
+	String getCatalogPageNumber();
+
+	/** Returns the drop-ship-only flag. */
+	String getDropShipOnly();
+
+	/** Returns the MSRP price. */
+	String getMsrpPrice();
+
+	/** Returns the primary color. */
+	String getPrimaryColor();
+
+	/** Returns the prohibited states text. */
+	String getProhibitedStates();
+
+	/** Returns the vendor item number from specs. */
+	String getVendorItemNo();
+
+	/** Returns the year launched. */
+	String getYearLaunched();
+
+	/** Returns Prop65 applies value. */
+	String getProp65Applies();
+
+	/** Returns Prop65 cancer harm value. */
+	String getProp65CancerHarm();
+
+	/** Returns Prop65 reproductive harm value. */
+	String getProp65ReproductiveHarm();
+}
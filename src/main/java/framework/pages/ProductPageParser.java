@@ -0,0 +1,300 @@
+package framework.pages;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+/**
+ * Parses a settled PDP HTML snapshot without the browser (extract.mode=html).
+ * The CSS selectors mirror the XPath locators of {@link ProductSearchPage}:
+ * exact class matches stay exact ([class=...]), contains(@class) becomes
+ * [class*=...], and "label span / following-sibling::span" pairs are resolved
+ * by {@link #labelledValue(Document, String, String)}. WebDriver only returns
+ * text of displayed elements; here hidden elements (hidden attribute,
+ * display:none / visibility:hidden style, d-none class on the element or an
+ * ancestor) are treated the same way.
+ */
+public final class ProductPageParser {
+
+	private static final String BUY_FORM = "form#productDetailPageBuyProductForm";
+
+	private ProductPageParser() {
+	}
+
+	/** Fields parsed from one snapshot. */
+	public static final class ParsedProduct implements ProductDetails {
+		private ProductSearchPage.AddToCartState addToCartState = ProductSearchPage.AddToCartState.MISSING;
+		private boolean selectionRequired;
+
+		private String productName, itemNumber, productUPC, vendorItemNumber, casePack, productDetailDescription,
+				productDetailPrice, msrpPricing, stock, outOfStock;
+
+		private String brandName, itemUpcEanNumber, bulletFeatures, catalogPageNumber, dropShipOnly, msrpPrice,
+				primaryColor, prohibitedStates, vendorItemNo, yearLaunched, prop65Applies, prop65CancerHarm,
+				prop65ReproductiveHarm;
+
+		/** Returns enabled/disabled/missing for Add-to-Cart. */
+		public ProductSearchPage.AddToCartState getAddToCartState() {
+			return addToCartState;
+		}
+
+		/** Returns true when a variant/option selection is required. */
+		public boolean isSelectionRequired() {
+			return selectionRequired;
+		}
+
+		@Override
+		public String getProductName() {
+			return productName;
+		}
+
+		@Override
+		public String getItemNumber() {
+			return itemNumber;
+		}
+
+		@Override
+		public String getProductUPC() {
+			return productUPC;
+		}
+
+		@Override
+		public String getVendorItemNumber() {
+			return vendorItemNumber;
+		}
+
+		@Override
+		public String getCasePack() {
+			return casePack;
+		}
+
+		@Override
+		public String getProductDetailDescription() {
+			return productDetailDescription;
+		}
+
+		@Override
+		public String getProductDetailPrice() {
+			return productDetailPrice;
+		}
+
+		@Override
+		public String getMsrpPricing() {
+			return msrpPricing;
+		}
+
+		@Override
+		public String getStock() {
+			return stock;
+		}
+
+		@Override
+		public String getOutOfStock() {
+			return outOfStock;
+		}
+
+		@Override
+		public String getBrandName() {
+			return brandName;
+		}
+
+		@Override
+		public String getItemUpcEanNumber() {
+			return itemUpcEanNumber;
+		}
+
+		@Override
+		public String getBulletFeatures() {
+			return bulletFeatures;
+		}
+
+		@Override
+		public String getCatalogPageNumber() {
+			return catalogPageNumber;
+		}
+
+		@Override
+		public String getDropShipOnly() {
+			return dropShipOnly;
+		}
+
+		@Override
+		public String getMsrpPrice() {
+			return msrpPrice;
+		}
+
+		@Override
+		public String getPrimaryColor() {
+			return primaryColor;
+		}
+
+		@Override
+		public String getProhibitedStates() {
+			return prohibitedStates;
+		}
+
+		@Override
+		public String getVendorItemNo() {
+			return vendorItemNo;
+		}
+
+		@Override
+		public String getYearLaunched() {
+			return yearLaunched;
+		}
+
+		@Override
+		public String getProp65Applies() {
+			return prop65Applies;
+		}
+
+		@Override
+		public String getProp65CancerHarm() {
+			return prop65CancerHarm;
+		}
+
+		@Override
+		public String getProp65ReproductiveHarm() {
+			return prop65ReproductiveHarm;
+		}
+	}
+
+	/**
+	 * Parses all PDP fields, the add-to-cart state and the selection flag.
+	 *
+	 * @param html    page source of the settled PDP
+	 * @param baseUrl page URL (for relative links; may be empty)
+	 * @return parsed fields
+	 */
+	public static ParsedProduct parse(String html, String baseUrl) {
+		Document doc = Jsoup.parse(html == null ? "" : html, baseUrl == null ? "" : baseUrl);
+		ParsedProduct p = new ParsedProduct();
+
+		// //div[@class='h1 product-name'], //div[@class='product-number']//span, ...
+		p.productName = text(doc, "div[class=h1 product-name]");
+		p.itemNumber = text(doc, "div[class=product-number] span");
+		p.productUPC = labelledValue(doc, "div[class=product-upc]", "UPC");
+		p.vendorItemNumber = labelledValue(doc, "div[class=product-vendor-item-no]", "Vendor Item No");
+		p.casePack = labelledValue(doc, "div[class=product-case-pack]", "Case Pack");
+		p.productDetailDescription = text(doc, "div[class=product-detail-description-text]");
+
+		p.productDetailPrice = text(doc, "span[class*=customer-price]");
+		if (p.productDetailPrice == null || p.productDetailPrice.isEmpty())
+			p.productDetailPrice = text(doc,
+					"p[class*=product-detail-price] span[class*=price]:not([class*=customer-price])");
+
+		p.msrpPricing = labelledValue(doc, "div[class=msrp-info]", "MSRP Pricing");
+		p.stock = text(doc, "div[class=product-data] span[class=product-stock] span[class=stock]");
+		p.outOfStock = text(doc, "div[class=product-data] span[class=product-stock] span[class*=out-of-stock]");
+
+		parseSpecifications(doc, p);
+		p.addToCartState = addToCartState(doc);
+		p.selectionRequired = selectionRequired(doc);
+		return p;
+	}
+
+	/** //table[contains(@class,'product-detail-properties-table')]/tbody rows. */
+	private static void parseSpecifications(Document doc, ParsedProduct p) {
+		Element tbody = doc.selectFirst("table[class*=product-detail-properties-table] > tbody");
+		if (tbody == null || !isDisplayed(tbody))
+			return;
+		for (Element row : tbody.select("tr.properties-row")) {
+			Element th = row.selectFirst("th.properties-label");
+			Element td = row.selectFirst("td.properties-value");
+			if (th == null || td == null)
+				continue;
+			String label = th.text().replace("\n", "").trim();
+			String value = td.text().trim();
+
+			if (label.equals("Brand Name"))
+				p.brandName = value;
+			if (label.equals("Item UPC/EAN Number"))
+				p.itemUpcEanNumber = value;
+			if (label.equals("BulletFeatures"))
+				p.bulletFeatures = value;
+			if (label.equals("Catalog Page Number"))
+				p.catalogPageNumber = value;
+			if (label.equals("Drop Ship Only"))
+				p.dropShipOnly = value;
+			if (label.equals("MSRP Price"))
+				p.msrpPrice = value;
+			if (label.equals("Primary Color"))
+				p.primaryColor = value;
+			if (label.equals("ProhibitedStates"))
+				p.prohibitedStates = value;
+			if (label.equals("Vendor Item No."))
+				p.vendorItemNo = value;
+			if (label.equals("Year Launched"))
+				p.yearLaunched = value;
+			if (label.equals("Case Pack") && (p.casePack == null || p.casePack.isEmpty()))
+				p.casePack = value;
+			if (label.equals("Prop65Applies"))
+				p.prop65Applies = value;
+			if (label.equals("Prop65CancerHarm"))
+				p.prop65CancerHarm = value;
+			if (label.equals("Prop65ReproductiveHarm"))
+				p.prop65ReproductiveHarm = value;
+		}
+	}
+
+	/** //form[@id='productDetailPageBuyProductForm']//button[@title='Add to Cart'] */
+	private static ProductSearchPage.AddToCartState addToCartState(Document doc) {
+		Element btn = doc.selectFirst(BUY_FORM + " button[title=Add to Cart]");
+		if (btn == null || !isDisplayed(btn))
+			return ProductSearchPage.AddToCartState.MISSING;
+		boolean disabled = btn.hasAttr("disabled") || "true".equalsIgnoreCase(btn.attr("aria-disabled"));
+		return disabled ? ProductSearchPage.AddToCartState.DISABLED : ProductSearchPage.AddToCartState.ENABLED;
+	}
+
+	/** Visible, enabled select/radio in the buy form, or an "select option" button. */
+	private static boolean selectionRequired(Document doc) {
+		for (Element el : doc.select(BUY_FORM + " select, " + BUY_FORM + " input[type=radio]")) {
+			if (isDisplayed(el) && !el.hasAttr("disabled"))
+				return true;
+		}
+		Element btn = doc.selectFirst(BUY_FORM + " button[title=Add to Cart]");
+		if (btn == null)
+			return false;
+		String text = btn.text().toLowerCase();
+		return text.contains("select") && text.contains("option");
+	}
+
+	/** Text of the first displayed match (like WaitUtils.safeGetText), or null. */
+	private static String text(Document doc, String css) {
+		Element el = doc.selectFirst(css);
+		if (el == null || !isDisplayed(el))
+			return null;
+		return el.text().trim();
+	}
+
+	/** Resolves "//container//span[contains(text(),label)]/following-sibling::span". */
+	private static String labelledValue(Document doc, String container, String label) {
+		for (Element box : doc.select(container)) {
+			for (Element span : box.select("span")) {
+				if (!span.ownText().contains(label))
+					continue;
+				Elements siblings = span.nextElementSiblings();
+				for (Element sib : siblings) {
+					if (sib.tagName().equals("span"))
+						return isDisplayed(sib) ? sib.text().trim() : null;
+				}
+			}
+		}
+		return null;
+	}
+
+	/** Static approximation of WebElement.isDisplayed() on the element and its ancestors. */
+	private static boolean isDisplayed(Element el) {
+		for (Element e = el; e != null; e = e.parent()) {
+			if (e.hasAttr("hidden") || e.hasClass("d-none"))
+				return false;
+			String style = e.attr("style").replace(" ", "").toLowerCase();
+			if (style.contains("display:none") || style.contains("visibility:hidden"))
+				return false;
+			if (e.tagName().equals("input") && "hidden".equalsIgnoreCase(e.attr("type")))
+				return false;
+		}
+		return true;
+	}
+}
@@ -1,5 +1,7 @@
 package framework.pages;
 
+import framework.metrics.StageMetrics;
+import framework.utils.Deadline;
 import framework.utils.ReportLogger;
 import framework.utils.WaitUtils;
 import org.openqa.selenium.*;
@@ -12,11 +14,14 @@ import java.util.List;
  * LOGIN_REQUIRED (session expiry) - Spinner/async stabilization for Add to Cart
  * detection
  */
-public class ProductSearchPage {
+public class ProductSearchPage implements ProductDetails {
 
-	/** Search flow outcome. */
+	/**
+	 * Search flow outcome. TIMEOUT means the UPC budget ran out before the
+	 * search reached any of the other outcomes.
+	 */
 	public enum SearchOutcome {
-		PRODUCT_OPENED, NO_PRODUCTS_FOUND, BLOCKED, LOGIN_REQUIRED, MAINTENANCE
+		PRODUCT_OPENED, NO_PRODUCTS_FOUND, BLOCKED, LOGIN_REQUIRED, MAINTENANCE, TIMEOUT
 	}
 
 	/** Add-to-cart state on PDP. */
@@ -69,6 +74,21 @@ public class ProductSearchPage {
 	private final By txt_welcomePopup = By.xpath("//h2[contains(text(),'Welcome')]");
 	private final By btn_acceptAll = By.xpath("//button[normalize-space(.)='Accept all']");
 
+	/** True once the required PDP element was found; optional fields are then read without waiting. */
+	private boolean optionalWait;
+
+	/** nanoTime of the last search submit (0 before submit); start of the SEARCH stage. */
+	private long submittedAt;
+
+	/** True when the last search ended on a no-results banner (not a fallthrough). */
+	private boolean noResultsShown;
+
+	/** UPC submitted ahead by {@link #submitSearch(String)} whose result has not been awaited yet. */
+	private String prefetchedUpc;
+	private String prefetchUrlBefore;
+	private WebElement prefetchBox;
+	private boolean prefetchClicked;
+
 	// Captured fields
 	private String productName, itemNumber, productUPC, vendorItemNumber, casePack, productDetailDescription,
 			productDetailPrice, msrpPricing, stock, outOfStock;
@@ -92,41 +112,79 @@ public class ProductSearchPage {
 
 	/**
 	 * Robust search that returns explicit outcome instead of throwing for expected
-	 * negatives.
+	 * negatives. Records the submit-to-outcome latency by outcome.
 	 */
 	public SearchOutcome searchUpcWithOutcome(String upc) {
-		ReportLogger.info("Searching UPC: " + upc);
+		submittedAt = 0;
+		noResultsShown = false;
+		long t = StageMetrics.start();
+		SearchOutcome outcome = null;
+		try {
+			outcome = runSearch(upc);
+			return outcome;
+		} finally {
+			StageMetrics.record(StageMetrics.Stage.SEARCH, outcome == null ? "error" : outcome.name(),
+					submittedAt != 0 ? submittedAt : t);
+		}
+	}
+
+	private SearchOutcome runSearch(String upc) {
+		boolean prefetched = upc != null && upc.equals(prefetchedUpc);
+		prefetchedUpc = null;
+		if (prefetched && !prefetchClicked && !leftPrefetchPage()) {
+			// The deferred submit never navigated: the tab still shows the previous
+			// UPC's product page, whose markers must not count for this UPC.
+			ReportLogger.info("Prefetched search did not leave the previous page; searching again for UPC: " + upc);
+			prefetched = false;
+		}
+		ReportLogger.info((prefetched ? "Collecting prefetched search for UPC: " : "Searching UPC: ") + upc);
 
 		for (int attempt = 0; attempt < 2; attempt++) {
-			WaitUtils.waitForPageLoad(driver, 20);
-			WaitUtils.applyZoom(driver);
+			WebElement box;
+			String urlBefore;
+			if (prefetched && attempt == 0) {
+				// Submitted earlier in this tab; only the outcome is left to wait for.
+				box = prefetchBox;
+				urlBefore = prefetchUrlBefore;
+				if (prefetchClicked) {
+					// Result already clicked: let the results page go before classifying.
+					try {
+						WaitUtils.wait(driver, 30).until(d -> d.findElements(link_productInfo).isEmpty());
+						WaitUtils.waitForPageLoad(driver, 30);
+					} catch (TimeoutException ignored) {
+					}
+				}
+			} else {
+				WaitUtils.waitForPageLoad(driver, 20);
+				WaitUtils.applyZoom(driver);
 
-			if (!ensureSearchReady()) {
-				if (WaitUtils.isVisible(driver, loginEmailField, 1))
-					return SearchOutcome.LOGIN_REQUIRED;
-				if (WaitUtils.isMaintenancePage(driver))
-					return SearchOutcome.MAINTENANCE;
-				if (WaitUtils.isBlockedPage(driver))
-					return SearchOutcome.BLOCKED;
-				throw new RuntimeException("Search input not available after recovery.");
-			}
+				if (!ensureSearchReady()) {
+					if (WaitUtils.isVisible(driver, loginEmailField, 1))
+						return SearchOutcome.LOGIN_REQUIRED;
+					if (WaitUtils.isMaintenancePage(driver))
+						return SearchOutcome.MAINTENANCE;
+					if (WaitUtils.isBlockedPage(driver))
+						return SearchOutcome.BLOCKED;
+					throw new RuntimeException("Search input not available after recovery.");
+				}
 
-			WebElement box = getSearchBox(20);
-			WaitUtils.scrollIntoViewCenter(driver, box);
+				box = getSearchBox(20);
+				WaitUtils.scrollIntoViewCenter(driver, box);
 
-			box.clear();
-			box.sendKeys(upc);
+				box.clear();
+				box.sendKeys(upc);
 
-			// Try native ENTER first
-			String urlBefore = driver.getCurrentUrl();
-			box.sendKeys(Keys.ENTER);
+				// Try native ENTER first
+				urlBefore = driver.getCurrentUrl();
+				submittedAt = StageMetrics.start();
+				box.sendKeys(Keys.ENTER);
 
-			// Fallback if nothing happened: force submit and retry ENTER
-			try {
-				Thread.sleep(800);
+				// Fallback if nothing happened: force submit and retry ENTER
+				WaitUtils.pause(800);
 				if (urlBefore != null && urlBefore.equals(driver.getCurrentUrl())) {
 					try {
-						((JavascriptExecutor) driver).executeScript("arguments[0].form && arguments[0].form.submit();", box);
+						((JavascriptExecutor) driver).executeScript("arguments[0].form && arguments[0].form.submit();",
+								box);
 					} catch (Exception ignored) {
 					}
 					try {
@@ -134,20 +192,18 @@ public class ProductSearchPage {
 					} catch (Exception ignored) {
 					}
 				}
-			} catch (InterruptedException ignored) {
 			}
 
 			long start = System.currentTimeMillis();
 			boolean retriedSubmit = false;
-			while (System.currentTimeMillis() - start < 45000) {
+			while (System.currentTimeMillis() - start < 45000 && !Deadline.current().isExpired()) {
 				if (WaitUtils.isVisible(driver, loginEmailField, 1))
 					return SearchOutcome.LOGIN_REQUIRED;
 				if (WaitUtils.isMaintenancePage(driver))
 					return SearchOutcome.MAINTENANCE;
 				if (WaitUtils.isBlockedPage(driver))
 					return SearchOutcome.BLOCKED;
-				if (WaitUtils.isVisible(driver, noProductsBanner1, 1) || WaitUtils.isVisible(driver, noProductsBanner2, 1)
-						|| WaitUtils.isVisible(driver, noProductsBanner3, 1))
+				if (noResultsBannerVisible())
 					return SearchOutcome.NO_PRODUCTS_FOUND;
 				if (!driver.findElements(link_productInfo).isEmpty())
 					break;
@@ -162,10 +218,7 @@ public class ProductSearchPage {
 					}
 				}
 
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException ignored) {
-				}
+				WaitUtils.pause(500);
 			}
 
 			if (WaitUtils.isVisible(driver, loginEmailField, 1)) {
@@ -180,11 +233,15 @@ public class ProductSearchPage {
 				return SearchOutcome.BLOCKED;
 			}
 
-			if (WaitUtils.isVisible(driver, noProductsBanner1, 1) || WaitUtils.isVisible(driver, noProductsBanner2, 1)
-					|| WaitUtils.isVisible(driver, noProductsBanner3, 1)) {
+			if (noResultsBannerVisible()) {
 				return SearchOutcome.NO_PRODUCTS_FOUND;
 			}
 
+			if (Deadline.current().isExpired()) {
+				// Results page not settled within the budget; do not guess an outcome.
+				return SearchOutcome.TIMEOUT;
+			}
+
 			if (!driver.findElements(link_productInfo).isEmpty()) {
 				int attempts = 0;
 				while (attempts < 3) {
@@ -217,10 +274,102 @@ public class ProductSearchPage {
 			}
 		}
 
-		return SearchOutcome.NO_PRODUCTS_FOUND;
+		return Deadline.current().isExpired() ? SearchOutcome.TIMEOUT : SearchOutcome.NO_PRODUCTS_FOUND;
+	}
+
+	/**
+	 * Waits for the prefetched submit to navigate away from the page it was
+	 * issued on. A slow search keeps the old URL until the response arrives.
+	 */
+	private boolean leftPrefetchPage() {
+		String before = prefetchUrlBefore;
+		if (before == null)
+			return false;
+		try {
+			WaitUtils.wait(driver, 15).until(d -> !before.equals(d.getCurrentUrl()));
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		}
+	}
+
+	/** Checks the no-results banners and remembers a match for {@link #isNoResultsShown()}. */
+	private boolean noResultsBannerVisible() {
+		noResultsShown = WaitUtils.isVisible(driver, noProductsBanner1, 1)
+				|| WaitUtils.isVisible(driver, noProductsBanner2, 1) || WaitUtils.isVisible(driver, noProductsBanner3, 1);
+		return noResultsShown;
+	}
+
+	/**
+	 * Returns true if the last NO_PRODUCTS_FOUND came from a no-results banner.
+	 * Other NO_PRODUCTS_FOUND outcomes (no result link could be opened, nothing
+	 * recognizable on the page) are not proof that the site lacks the product.
+	 */
+	public boolean isNoResultsShown() {
+		return noResultsShown;
+	}
+
+	/**
+	 * Pipelined mode: types the UPC into this tab's search box and submits it
+	 * without waiting for the result, so the search loads while another tab is
+	 * being extracted. The next {@link #searchUpcWithOutcome(String)} for the
+	 * same UPC only waits for the outcome.
+	 *
+	 * @param upc UPC to search ahead
+	 * @return true if submitted; false if the search box was not ready
+	 */
+	public boolean submitSearch(String upc) {
+		prefetchedUpc = null;
+		prefetchClicked = false;
+		try {
+			if (!WaitUtils.isVisible(driver, searchBox, 1) && !WaitUtils.isVisible(driver, searchBoxAlt, 1))
+				return false;
+			WebElement box = getSearchBox(2);
+			String urlBefore = driver.getCurrentUrl();
+			// Deferred submit: returns immediately instead of blocking on the navigation.
+			((JavascriptExecutor) driver).executeScript("var b = arguments[0]; b.value = arguments[1];"
+					+ "b.dispatchEvent(new Event('input', {bubbles: true}));"
+					+ "setTimeout(function () { if (b.form) { b.form.requestSubmit ? b.form.requestSubmit() : b.form.submit(); } }, 0);",
+					box, upc);
+			prefetchBox = box;
+			prefetchUrlBefore = urlBefore;
+			prefetchedUpc = upc;
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Pipelined mode: clicks the first search result of a prefetched search if
+	 * the result list is already there, without waiting for the product page.
+	 *
+	 * @return true if a result link was clicked
+	 */
+	public boolean openFirstResultIfReady() {
+		if (prefetchedUpc == null || prefetchClicked)
+			return false;
+		try {
+			List<WebElement> links = driver.findElements(link_productInfo);
+			if (links.isEmpty())
+				return false;
+			((JavascriptExecutor) driver).executeScript("var a = arguments[0]; setTimeout(function () { a.click(); }, 0);",
+					links.get(0));
+			prefetchClicked = true;
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
 	}
 
 	private boolean ensureSearchReady() {
+		long t = StageMetrics.start();
+		boolean ready = searchReady();
+		StageMetrics.record(StageMetrics.Stage.SEARCH_READY, ready ? "ok" : "not_ready", t);
+		return ready;
+	}
+
+	private boolean searchReady() {
 		if (WaitUtils.isVisible(driver, searchBox, 3) || WaitUtils.isVisible(driver, searchBoxAlt, 3))
 			return true;
 
@@ -261,8 +410,41 @@ public class ProductSearchPage {
 	 */
 	public AddToCartState getAddToCartState() {
 		resetCapturedData();
+		long waitStart = StageMetrics.start();
+		waitForBuyBox();
+		long waitEnd = StageMetrics.start();
+
+		captureProductDetails();
+		captureProductSpecifications();
+
+		long captureEnd = StageMetrics.start();
+		AddToCartState state = readAddToCartState();
+		String label = state.name();
+		StageMetrics.recordBetween(StageMetrics.Stage.ADD_TO_CART_WAIT, label, waitStart, waitEnd);
+		StageMetrics.recordBetween(StageMetrics.Stage.FIELD_CAPTURE, label, waitEnd, captureEnd);
+		return state;
+	}
+
+	/**
+	 * extract.mode=html: waits for the PDP to settle exactly like
+	 * {@link #getAddToCartState()} and returns the page HTML in one call, so the
+	 * fields can be parsed off the browser by {@link ProductPageParser}.
+	 *
+	 * @return page source of the settled PDP
+	 */
+	public String snapshotProductPage() {
+		resetCapturedData();
+		long waitStart = StageMetrics.start();
+		waitForBuyBox();
+		long waitEnd = StageMetrics.start();
+		String html = driver.getPageSource();
+		StageMetrics.recordBetween(StageMetrics.Stage.ADD_TO_CART_WAIT, "snapshot", waitStart, waitEnd);
+		StageMetrics.record(StageMetrics.Stage.FIELD_CAPTURE, "html_snapshot", waitEnd);
+		return html;
+	}
 
-		// Bug C stabilization: spinner -> price/stock -> then evaluate
+	/** Bug C stabilization: spinner -> price/stock, before anything is read. */
+	private void waitForBuyBox() {
 		WaitUtils.waitInvisibleIfPresent(driver, buyBoxSpinner, 10);
 
 		// Best-effort: wait for price/stock to populate to reduce false negatives
@@ -274,10 +456,10 @@ public class ProductSearchPage {
 			WaitUtils.waitTextNotEmpty(driver, txt_stock, 4);
 		} catch (Exception ignored) {
 		}
+	}
 
-		captureProductDetails();
-		captureProductSpecifications();
-
+	/** Reads the add-to-cart state from the live page (no stabilization waits). */
+	public AddToCartState readAddToCartState() {
 		try {
 			WebElement btn = driver.findElement(btn_addToCart);
 			if (!btn.isDisplayed())
@@ -299,6 +481,17 @@ public class ProductSearchPage {
 
 	/** Returns true when the current item appears to be out of stock. */
 	public boolean isOutOfStock() {
+		return isOutOfStock(stock, outOfStock);
+	}
+
+	/**
+	 * Out-of-stock rule on captured stock texts (usable without the browser).
+	 *
+	 * @param stock      stock text
+	 * @param outOfStock out-of-stock label text
+	 * @return true if either text indicates out of stock
+	 */
+	public static boolean isOutOfStock(String stock, String outOfStock) {
 		String oos = outOfStock;
 		if (oos != null && !oos.trim().isEmpty())
 			return true;
@@ -319,29 +512,40 @@ public class ProductSearchPage {
 		prop65Applies = prop65CancerHarm = prop65ReproductiveHarm = null;
 	}
 
-	/** Captures product details from PDP fields. */
+	/**
+	 * Captures product details from PDP fields. The product name is required;
+	 * once it is there the page has rendered, so optional fields are read
+	 * without waiting (a missing field costs one lookup, not its timeout).
+	 */
 	private void captureProductDetails() {
 		productName = WaitUtils.safeGetText(driver, txt_productName, 8);
-		itemNumber = WaitUtils.safeGetText(driver, txt_itemNumber, 8);
-		productUPC = WaitUtils.safeGetText(driver, txt_productUPC, 8);
-		vendorItemNumber = WaitUtils.safeGetText(driver, txt_vendorItemNumber, 8);
-		casePack = WaitUtils.safeGetText(driver, txt_casePack, 8);
-		productDetailDescription = WaitUtils.safeGetText(driver, txt_productDetailDescription, 8);
+		optionalWait = (productName != null);
+
+		itemNumber = WaitUtils.safeGetText(driver, txt_itemNumber, optional(8));
+		productUPC = WaitUtils.safeGetText(driver, txt_productUPC, optional(8));
+		vendorItemNumber = WaitUtils.safeGetText(driver, txt_vendorItemNumber, optional(8));
+		casePack = WaitUtils.safeGetText(driver, txt_casePack, optional(8));
+		productDetailDescription = WaitUtils.safeGetText(driver, txt_productDetailDescription, optional(8));
 
-		productDetailPrice = WaitUtils.safeGetText(driver, txt_productDetailPrice, 4);
+		productDetailPrice = WaitUtils.safeGetText(driver, txt_productDetailPrice, optional(4));
 		if (productDetailPrice == null || productDetailPrice.isEmpty()) {
-			productDetailPrice = WaitUtils.safeGetText(driver, txt_productDetailPriceFallback, 4);
+			productDetailPrice = WaitUtils.safeGetText(driver, txt_productDetailPriceFallback, optional(4));
 		}
 
-		msrpPricing = WaitUtils.safeGetText(driver, txt_MSRPPricing, 8);
-		stock = WaitUtils.safeGetText(driver, txt_stock, 3);
-		outOfStock = WaitUtils.safeGetText(driver, txt_outOfStock, 3);
+		msrpPricing = WaitUtils.safeGetText(driver, txt_MSRPPricing, optional(8));
+		stock = WaitUtils.safeGetText(driver, txt_stock, optional(3));
+		outOfStock = WaitUtils.safeGetText(driver, txt_outOfStock, optional(3));
+	}
+
+	/** Timeout for an optional element: zero once the required ones were found. */
+	private long optional(long seconds) {
+		return optionalWait ? 0 : seconds;
 	}
 
 	/** Captures product specs from the specs table if present. */
 	private void captureProductSpecifications() {
 		try {
-			WebElement tbody = WaitUtils.waitVisible(driver, specTableBody, 5);
+			WebElement tbody = WaitUtils.waitVisible(driver, specTableBody, optional(5));
 			List<WebElement> rows = tbody.findElements(By.cssSelector("tr.properties-row"));
 
 			for (WebElement row : rows) {
@@ -383,6 +587,15 @@ public class ProductSearchPage {
 		}
 	}
 
+	/**
+	 * Reads the item number, waiting at most one second for it: right after
+	 * the click the PDP has rarely rendered it yet, so a zero wait would
+	 * almost never find it (null if it is still not rendered).
+	 */
+	public String peekItemNumber() {
+		return WaitUtils.safeGetText(driver, txt_itemNumber, 1);
+	}
+
 	/** Returns the current page URL. */
 	public String currentUrl() {
 		return driver.getCurrentUrl();
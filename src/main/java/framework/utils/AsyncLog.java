@@ -0,0 +1,263 @@
+package framework.utils;
+
+import framework.config.FrameworkConstants;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Console sink behind {@link ReportLogger}. Each logging thread owns a
+ * fixed-size ring of reusable entries (single producer); one daemon writer
+ * thread drains all rings and prints in batches, so workers never wait on
+ * console I/O. When a ring is full the entry is dropped (log.full.policy=drop,
+ * counted) or the producer waits for space (block). Entries carry structured
+ * fields (upc, batch, worker, stage, duration) printed as "k=v" or JSON.
+ */
+public final class AsyncLog {
+
+	/** Log levels in ascending severity; the tag is the console prefix. */
+	public enum Level {
+		DEBUG("DEBUG"), INFO("STEP"), PASS("PASS"), FAIL("FAIL");
+
+		private final String tag;
+
+		Level(String tag) {
+			this.tag = tag;
+		}
+	}
+
+	/** Reusable log record. */
+	private static final class Entry {
+		Level level;
+		long millis;
+		String message;
+		String worker;
+		String upc;
+		String batch;
+		String stage;
+		long durationMs;
+
+		void clear() {
+			message = worker = upc = batch = stage = null;
+		}
+	}
+
+	/** Single-producer/single-consumer ring owned by one thread. */
+	private static final class Ring {
+		final Thread owner;
+		final Entry[] slots;
+		final int mask;
+		volatile long head;
+		volatile long tail;
+
+		Ring(Thread owner, int capacity) {
+			int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+			this.owner = owner;
+			this.slots = new Entry[size];
+			this.mask = size - 1;
+			for (int i = 0; i < size; i++)
+				slots[i] = new Entry();
+		}
+
+		boolean isEmpty() {
+			return head == tail;
+		}
+	}
+
+	private static final Level MIN_LEVEL = parseLevel(FrameworkConstants.LOG_LEVEL);
+	private static final boolean BLOCK_WHEN_FULL = "block".equalsIgnoreCase(FrameworkConstants.LOG_FULL_POLICY);
+	private static final boolean JSON = "json".equalsIgnoreCase(FrameworkConstants.LOG_FORMAT);
+	private static final PrintStream OUT = System.out;
+
+	private static final List<Ring> RINGS = new CopyOnWriteArrayList<>();
+	private static final ThreadLocal<Ring> RING = ThreadLocal.withInitial(AsyncLog::register);
+	private static final AtomicLong DROPPED = new AtomicLong();
+	private static final Thread WRITER = FrameworkConstants.LOG_ASYNC ? startWriter() : null;
+
+	private AsyncLog() {
+	}
+
+	/** Returns true if messages of the level are printed. */
+	public static boolean isEnabled(Level level) {
+		return level.ordinal() >= MIN_LEVEL.ordinal();
+	}
+
+	/**
+	 * Queues one log line for the console.
+	 *
+	 * @param level      level
+	 * @param message    message text
+	 * @param upc        UPC field (nullable)
+	 * @param batch      batch field (nullable)
+	 * @param stage      stage field (nullable)
+	 * @param durationMs duration field, or -1
+	 */
+	public static void log(Level level, String message, String upc, String batch, String stage, long durationMs) {
+		if (!isEnabled(level))
+			return;
+		if (WRITER == null) {
+			Entry e = new Entry();
+			fill(e, level, message, upc, batch, stage, durationMs);
+			StringBuilder sb = new StringBuilder(128);
+			format(e, sb);
+			synchronized (OUT) {
+				OUT.print(sb);
+			}
+			return;
+		}
+
+		Ring ring = RING.get();
+		while (ring.head - ring.tail == ring.slots.length) {
+			if (!BLOCK_WHEN_FULL) {
+				DROPPED.incrementAndGet();
+				return;
+			}
+			LockSupport.unpark(WRITER);
+			LockSupport.parkNanos(100_000);
+		}
+		long h = ring.head;
+		fill(ring.slots[(int) (h & ring.mask)], level, message, upc, batch, stage, durationMs);
+		ring.head = h + 1;
+	}
+
+	/**
+	 * Waits until every queued line was printed (end of run / shutdown hook).
+	 *
+	 * @param timeoutMs maximum wait
+	 */
+	public static void flush(long timeoutMs) {
+		if (WRITER == null)
+			return;
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		while (System.currentTimeMillis() < deadline) {
+			boolean empty = true;
+			for (Ring r : RINGS)
+				empty &= r.isEmpty();
+			if (empty)
+				break;
+			LockSupport.unpark(WRITER);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+		}
+		long dropped = DROPPED.getAndSet(0);
+		if (dropped > 0) {
+			synchronized (OUT) {
+				OUT.println("LOG -> dropped " + dropped + " line(s) (ring full, log.full.policy=drop)");
+			}
+		}
+	}
+
+	private static Ring register() {
+		Ring ring = new Ring(Thread.currentThread(), FrameworkConstants.LOG_BUFFER_SIZE);
+		RINGS.add(ring);
+		return ring;
+	}
+
+	private static void fill(Entry e, Level level, String message, String upc, String batch, String stage,
+			long durationMs) {
+		e.level = level;
+		e.millis = System.currentTimeMillis();
+		e.message = message;
+		e.worker = Thread.currentThread().getName();
+		e.upc = upc;
+		e.batch = batch;
+		e.stage = stage;
+		e.durationMs = durationMs;
+	}
+
+	private static Thread startWriter() {
+		Thread t = new Thread(AsyncLog::drainLoop, "log-writer");
+		t.setDaemon(true);
+		t.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(2000), "log-flush"));
+		return t;
+	}
+
+	private static void drainLoop() {
+		StringBuilder sb = new StringBuilder(16 * 1024);
+		while (true) {
+			boolean any = false;
+			for (Ring r : RINGS) {
+				long tail = r.tail;
+				long head = r.head;
+				while (tail < head) {
+					Entry e = r.slots[(int) (tail & r.mask)];
+					format(e, sb);
+					e.clear();
+					tail++;
+					any = true;
+				}
+				r.tail = tail;
+				if (!r.owner.isAlive() && r.isEmpty())
+					RINGS.remove(r);
+			}
+			if (sb.length() > 0) {
+				synchronized (OUT) {
+					OUT.print(sb);
+					OUT.flush();
+				}
+				sb.setLength(0);
+			}
+			if (!any)
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+		}
+	}
+
+	/** Appends one formatted line (text: "TAG -> message | k=v ...", or one JSON object). */
+	private static void format(Entry e, StringBuilder sb) {
+		if (JSON) {
+			sb.append("{\"ts\":\"").append(Instant.ofEpochMilli(e.millis)).append("\",\"level\":\"")
+					.append(e.level.name()).append('"');
+			jsonField(sb, "worker", e.worker);
+			jsonField(sb, "upc", e.upc);
+			jsonField(sb, "batch", e.batch);
+			jsonField(sb, "stage", e.stage);
+			if (e.durationMs >= 0)
+				sb.append(",\"durationMs\":").append(e.durationMs);
+			jsonField(sb, "msg", e.message);
+			sb.append("}\n");
+			return;
+		}
+		sb.append(e.level.tag).append(" -> ").append(e.message);
+		if (e.upc != null || e.batch != null || e.stage != null) {
+			sb.append(" | worker=").append(e.worker);
+			if (e.batch != null)
+				sb.append(" batch=").append(e.batch);
+			if (e.upc != null)
+				sb.append(" upc=").append(e.upc);
+			if (e.stage != null)
+				sb.append(" stage=").append(e.stage);
+			if (e.durationMs >= 0)
+				sb.append(" durationMs=").append(e.durationMs);
+		}
+		sb.append('\n');
+	}
+
+	private static void jsonField(StringBuilder sb, String key, String value) {
+		if (value == null)
+			return;
+		sb.append(",\"").append(key).append("\":\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(' ');
+			else
+				sb.append(c);
+		}
+		sb.append('"');
+	}
+
+	private static Level parseLevel(String value) {
+		try {
+			return Level.valueOf(value.trim().toUpperCase());
+		} catch (RuntimeException e) {
+			return Level.INFO;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package framework.utils;
 
+import framework.metrics.StageMetrics;
+
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.*;
@@ -12,19 +14,39 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public final class CSVUtils {
 
+	/** Header row of every result CSV. */
+	public static final String HEADER = "UPC,AddToCart,ProductURL,Status,Message,ProductName,ItemNumber,ProductUPC,"
+			+ "VendorItemNumber,CasePack,ProductDetailDescription,ProductDetailPrice,MsrpPricing,Stock,OutOfStock,"
+			+ "BrandName,ItemUpcEanNumber,BulletFeatures,CatalogPageNumber,DropShipOnly,MsrpPrice,PrimaryColor,"
+			+ "ProhibitedStates,VendorItemNo,YearLaunched,Prop65Applies,Prop65CancerHarm,Prop65ReproductiveHarm";
+
 	private static final Object LOCK = new Object();
 	private static final Map<String, BufferedWriter> WRITERS = new ConcurrentHashMap<>();
 
 	private CSVUtils() {
 	}
 
-	/** Sanitizes a value for CSV output. */
-	private static String sanitize(String v) {
+	/** Sanitizes a value for CSV output (quotes it; public for the JMH benchmarks). */
+	public static String sanitize(String v) {
 		if (v == null)
 			return "\"\"";
 		return "\"" + v.replace("\"", "'").replace("\n", " ").replace("\r", " ").trim() + "\"";
 	}
 
+	/**
+	 * Splits a row written by this class back into its values (every value is
+	 * quoted and never contains a double quote, see {@link #sanitize(String)}).
+	 *
+	 * @param line CSV row
+	 * @return column values
+	 */
+	public static String[] parseRow(String line) {
+		String t = line.trim();
+		if (t.startsWith("\"") && t.endsWith("\"") && t.length() >= 2)
+			return t.substring(1, t.length() - 1).split("\",\"", -1);
+		return t.split(",", -1);
+	}
+
 	/** Initializes a CSV file with header row. */
 	public static void initCsvFull(String csvPath) {
 		synchronized (LOCK) {
@@ -39,11 +61,7 @@ public final class CSVUtils {
 						StandardOpenOption.TRUNCATE_EXISTING);
 				WRITERS.put(csvPath, bw);
 
-				bw.write(
-						"UPC,AddToCart,ProductURL,Status,Message,ProductName,ItemNumber,ProductUPC,VendorItemNumber,CasePack,"
-								+ "ProductDetailDescription,ProductDetailPrice,MsrpPricing,Stock,OutOfStock,BrandName,ItemUpcEanNumber,"
-								+ "BulletFeatures,CatalogPageNumber,DropShipOnly,MsrpPrice,PrimaryColor,ProhibitedStates,VendorItemNo,"
-								+ "YearLaunched,Prop65Applies,Prop65CancerHarm,Prop65ReproductiveHarm");
+				bw.write(HEADER);
 				bw.newLine();
 			} catch (IOException e) {
 				throw new RuntimeException("Unable to init CSV: " + csvPath, e);
@@ -60,6 +78,39 @@ public final class CSVUtils {
 			String prohibitedStates, String vendorItemNo, String yearLaunched, String prop65Applies,
 			String prop65CancerHarm, String prop65ReproductiveHarm) {
 
+		appendLine(csvPath, formatFull(upc, addToCart, url, status, message, productName, itemNumber, productUPC,
+				vendorItemNumber, casePack, productDetailDescription, productDetailPrice, msrpPricing, stock,
+				outOfStock, brandName, itemUpcEanNumber, bulletFeatures, catalogPageNumber, dropShipOnly, msrpPrice,
+				primaryColor, prohibitedStates, vendorItemNo, yearLaunched, prop65Applies, prop65CancerHarm,
+				prop65ReproductiveHarm));
+	}
+
+	/**
+	 * Formats a full row without writing it. The result never contains line
+	 * breaks, so it can be shipped as a single protocol line (lease workers) and
+	 * appended later with {@link #appendLine(String, String)}.
+	 */
+	public static String formatFull(String upc, String addToCart, String url, String status, String message,
+			String productName, String itemNumber, String productUPC, String vendorItemNumber, String casePack,
+			String productDetailDescription, String productDetailPrice, String msrpPricing, String stock,
+			String outOfStock, String brandName, String itemUpcEanNumber, String bulletFeatures,
+			String catalogPageNumber, String dropShipOnly, String msrpPrice, String primaryColor,
+			String prohibitedStates, String vendorItemNo, String yearLaunched, String prop65Applies,
+			String prop65CancerHarm, String prop65ReproductiveHarm) {
+
+		return String.join(",", sanitize(upc), sanitize(addToCart), sanitize(url), sanitize(status),
+				sanitize(message), sanitize(productName), sanitize(itemNumber), sanitize(productUPC),
+				sanitize(vendorItemNumber), sanitize(casePack), sanitize(productDetailDescription),
+				sanitize(productDetailPrice), sanitize(msrpPricing), sanitize(stock), sanitize(outOfStock),
+				sanitize(brandName), sanitize(itemUpcEanNumber), sanitize(bulletFeatures),
+				sanitize(catalogPageNumber), sanitize(dropShipOnly), sanitize(msrpPrice), sanitize(primaryColor),
+				sanitize(prohibitedStates), sanitize(vendorItemNo), sanitize(yearLaunched),
+				sanitize(prop65Applies), sanitize(prop65CancerHarm), sanitize(prop65ReproductiveHarm));
+	}
+
+	/** Appends an already formatted row (see formatFull) to the CSV. */
+	public static void appendLine(String csvPath, String line) {
+		long t = StageMetrics.start();
 		synchronized (LOCK) {
 			try {
 				BufferedWriter bw = WRITERS.get(csvPath);
@@ -71,20 +122,14 @@ public final class CSVUtils {
 					WRITERS.put(csvPath, bw);
 				}
 
-				bw.write(String.join(",", sanitize(upc), sanitize(addToCart), sanitize(url), sanitize(status),
-						sanitize(message), sanitize(productName), sanitize(itemNumber), sanitize(productUPC),
-						sanitize(vendorItemNumber), sanitize(casePack), sanitize(productDetailDescription),
-						sanitize(productDetailPrice), sanitize(msrpPricing), sanitize(stock), sanitize(outOfStock),
-						sanitize(brandName), sanitize(itemUpcEanNumber), sanitize(bulletFeatures),
-						sanitize(catalogPageNumber), sanitize(dropShipOnly), sanitize(msrpPrice),
-						sanitize(primaryColor), sanitize(prohibitedStates), sanitize(vendorItemNo),
-						sanitize(yearLaunched), sanitize(prop65Applies), sanitize(prop65CancerHarm),
-						sanitize(prop65ReproductiveHarm)));
+				bw.write(line);
 				bw.newLine();
 			} catch (IOException e) {
+				StageMetrics.record(StageMetrics.Stage.CSV_APPEND, "error", t);
 				throw new RuntimeException("Failed to append CSV: " + csvPath, e);
 			}
 		}
+		StageMetrics.record(StageMetrics.Stage.CSV_APPEND, "ok", t);
 	}
 
 	/** Flushes and closes a CSV writer if present. */
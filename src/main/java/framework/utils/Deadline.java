@@ -0,0 +1,109 @@
+package framework.utils;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Time budget for one unit of work (one UPC). The budget installed on the
+ * current thread caps every {@link WaitUtils} wait: a wait gets the smaller of
+ * its own timeout and the remaining budget, and once the budget is spent waits
+ * only check the page once. Per-UPC latency is therefore bounded by
+ * upc.budget.ms instead of by the sum of all timeouts on the path.
+ *
+ * <pre>
+ * Deadline previous = Deadline.enter(Deadline.of(FrameworkConstants.UPC_BUDGET_MS));
+ * try {
+ * 	... page-object calls ...
+ * } finally {
+ * 	Deadline.restore(previous);
+ * }
+ * </pre>
+ */
+public final class Deadline {
+
+	private static final Deadline UNBOUNDED = new Deadline(Long.MAX_VALUE);
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+	private final long budgetMs;
+	private final long endNanos;
+
+	private Deadline(long budgetMs) {
+		this.budgetMs = budgetMs;
+		this.endNanos = (budgetMs == Long.MAX_VALUE) ? Long.MAX_VALUE : System.nanoTime() + budgetMs * 1_000_000L;
+	}
+
+	/**
+	 * Starts a budget now.
+	 *
+	 * @param budgetMs budget in milliseconds (&lt;= 0: unbounded)
+	 * @return deadline
+	 */
+	public static Deadline of(long budgetMs) {
+		return budgetMs <= 0 ? UNBOUNDED : new Deadline(budgetMs);
+	}
+
+	/** Returns the configured budget in milliseconds (Long.MAX_VALUE if unbounded). */
+	public long budgetMillis() {
+		return budgetMs;
+	}
+
+	/** Returns the remaining budget in milliseconds (0 once expired). */
+	public long remainingMillis() {
+		if (endNanos == Long.MAX_VALUE)
+			return Long.MAX_VALUE;
+		return Math.max(0, (endNanos - System.nanoTime()) / 1_000_000L);
+	}
+
+	/** Returns true once the budget is spent. */
+	public boolean isExpired() {
+		return remainingMillis() == 0;
+	}
+
+	/** Returns the smaller of timeout and the remaining budget. */
+	public Duration cap(Duration timeout) {
+		long remaining = remainingMillis();
+		return (remaining == Long.MAX_VALUE || timeout.toMillis() <= remaining) ? timeout
+				: Duration.ofMillis(remaining);
+	}
+
+	/**
+	 * Installs a deadline for the current thread.
+	 *
+	 * @param deadline deadline to install
+	 * @return the previously installed deadline (pass to {@link #restore(Deadline)})
+	 */
+	public static Deadline enter(Deadline deadline) {
+		Deadline previous = CURRENT.get();
+		CURRENT.set(deadline);
+		return previous;
+	}
+
+	/** Restores the deadline returned by {@link #enter(Deadline)}. */
+	public static void restore(Deadline previous) {
+		if (previous == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(previous);
+	}
+
+	/** Returns the deadline of the current thread (unbounded if none). */
+	public static Deadline current() {
+		Deadline d = CURRENT.get();
+		return d == null ? UNBOUNDED : d;
+	}
+
+	/**
+	 * Runs work that must not be cut by the UPC budget (login, browser restart).
+	 *
+	 * @param work work to run without a deadline
+	 * @return result of the work
+	 */
+	public static <T> T unbounded(Supplier<T> work) {
+		Deadline previous = enter(UNBOUNDED);
+		try {
+			return work.get();
+		} finally {
+			restore(previous);
+		}
+	}
+}
@@ -2,23 +2,34 @@ package framework.utils;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import framework.config.FrameworkConstants;
+import framework.distributed.Sharding;
 
 /**
  * File utilities for loading input datasets.
  */
 public final class FileUtils {
 
+	private static final Pattern RUN_TIMESTAMP = Pattern.compile("_(\\d{8}_\\d{6})(?=[_.])");
+	private static final Pattern BATCH_NUMBER = Pattern.compile("_batch_(\\d+)");
+
 	private FileUtils() {
 		// Utility class
 	}
 
 	/**
-	 * Reads UPCs from a text file and returns a clean list.
+	 * Reads UPCs from a text file and returns a clean list. With
+	 * upc.deduplicate, codes with the same GTIN-14 key (e.g. UPC-A and EAN-13
+	 * forms) are kept once, in their first form. When sharding is configured
+	 * (shard.count &gt; 1) only this JVM's shard is returned.
 	 *
 	 * @param path file path
 	 * @return list of UPC strings
@@ -29,16 +40,62 @@ public final class FileUtils {
 			if (p.getParent() != null)
 				Files.createDirectories(p.getParent());
 
-			List<String> raw = Files.readAllLines(p).stream().map(String::trim).filter(s -> !s.isEmpty())
+			// Only the first column is the UPC; a second one is an optional priority (see UpcPriority).
+			List<String> raw = Files.readAllLines(p).stream().map(s -> columns(s)[0]).filter(s -> !s.isEmpty())
 					.filter(s -> !s.equalsIgnoreCase("UPC")).collect(Collectors.toList());
 
 			if (!FrameworkConstants.DEDUP_UPC)
-				return raw;
+				return Sharding.filter(raw);
 
-			return new ArrayList<>(new LinkedHashSet<>(raw));
+			Map<String, String> byKey = new LinkedHashMap<>();
+			for (String upc : raw)
+				byKey.putIfAbsent(Gtin.key(upc), upc);
+			return Sharding.filter(new ArrayList<>(byKey.values()));
 
 		} catch (IOException e) {
 			throw new RuntimeException("Unable to read UPC file: " + path, e);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Splits an input line on comma, semicolon or tab; values are trimmed and
+	 * unquoted.
+	 *
+	 * @param line input line
+	 * @return columns (at least one, possibly empty)
+	 */
+	public static String[] columns(String line) {
+		String[] cols = line.split("[,;\\t]", -1);
+		for (int i = 0; i < cols.length; i++)
+			cols[i] = cols[i].trim().replace("\"", "");
+		return cols;
+	}
+
+	/**
+	 * Orders result files oldest run first by the yyyyMMdd_HHmmss timestamp in
+	 * their name (see FrameworkConstants.getResultCsvPath), then by batch
+	 * number. Unlike the modification time, the name survives CI artifact
+	 * upload and download.
+	 *
+	 * @return comparator for result CSV paths
+	 */
+	public static Comparator<Path> byRunTimestamp() {
+		return Comparator.comparing((Path p) -> runTimestamp(p.getFileName().toString()))
+				.thenComparingInt(p -> batchNumber(p.getFileName().toString()))
+				.thenComparing(p -> p.getFileName().toString());
+	}
+
+	/** Run timestamp embedded in a file name, or "" if there is none. */
+	static String runTimestamp(String name) {
+		Matcher m = RUN_TIMESTAMP.matcher(name);
+		String last = "";
+		while (m.find())
+			last = m.group(1);
+		return last;
+	}
+
+	private static int batchNumber(String name) {
+		Matcher m = BATCH_NUMBER.matcher(name);
+		return m.find() ? Integer.parseInt(m.group(1)) : 0;
+	}
+}
@@ -0,0 +1,125 @@
+package framework.utils;
+
+import framework.config.FrameworkConstants;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * GS1 GTIN handling for input codes. GTIN-8, UPC-A (12), EAN-13 and GTIN-14
+ * are the same number with different amounts of leading zeros; the canonical
+ * key of a code is its GTIN-14 (left-padded with zeros), so "012345678905",
+ * "0012345678905" and "00012345678905" are one product for dedup, sharding,
+ * the checkpoint and the caches.
+ *
+ * <p>gtin.validation=strict (default) requires a GTIN length and a correct
+ * mod-10 check digit; lenient accepts any 8-14 digit string as before.
+ * gtin.search.form picks what is typed into the site search: input (as
+ * given), gtin14, or short (the shortest of UPC-A / EAN-13 / GTIN-14 that
+ * holds the number; a GTIN-8 stays 8 digits).
+ */
+public final class Gtin {
+
+	private static final int MIN_LEN = 8;
+	private static final int MAX_LEN = 14;
+
+	private Gtin() {
+	}
+
+	/**
+	 * Returns true if the code is acceptable input under gtin.validation.
+	 *
+	 * @param code trimmed input code
+	 * @return true if it may be searched
+	 */
+	public static boolean isValid(String code) {
+		if (!isDigits(code, MIN_LEN, MAX_LEN))
+			return false;
+		if (!"strict".equals(FrameworkConstants.GTIN_VALIDATION))
+			return true;
+		int len = code.length();
+		return (len == 8 || len == 12 || len == 13 || len == 14) && hasValidCheckDigit(code);
+	}
+
+	/**
+	 * Verifies the GS1 mod-10 check digit (last digit) of an all-digit code.
+	 *
+	 * @param code digits including the check digit
+	 * @return true if the check digit matches
+	 */
+	public static boolean hasValidCheckDigit(String code) {
+		int sum = 0;
+		int n = code.length();
+		// Weights 3,1,3,... from the digit left of the check digit.
+		for (int i = n - 2, w = 3; i >= 0; i--, w = 4 - w)
+			sum += (code.charAt(i) - '0') * w;
+		return (10 - sum % 10) % 10 == code.charAt(n - 1) - '0';
+	}
+
+	/**
+	 * Canonical key of a code: its GTIN-14 if it is all digits and at most 14
+	 * long, otherwise the trimmed input (so invalid codes keep their identity).
+	 *
+	 * @param code input code
+	 * @return canonical key
+	 */
+	public static String key(String code) {
+		String t = (code == null) ? "" : code.trim();
+		if (!isDigits(t, 1, MAX_LEN))
+			return t;
+		return "00000000000000".substring(t.length()) + t;
+	}
+
+	/**
+	 * Canonical keys of a set of codes (e.g. a checkpoint).
+	 *
+	 * @param codes input codes
+	 * @return keys
+	 */
+	public static Set<String> keys(Collection<String> codes) {
+		Set<String> out = new HashSet<>(codes.size() * 2);
+		for (String c : codes)
+			out.add(key(c));
+		return out;
+	}
+
+	/**
+	 * The form of a valid code that is typed into the site search (gtin.search.form).
+	 *
+	 * @param code valid input code
+	 * @return search text
+	 */
+	public static String searchForm(String code) {
+		return searchForm(code, FrameworkConstants.GTIN_SEARCH_FORM);
+	}
+
+	/** {@link #searchForm(String)} for an explicit form (input, gtin14 or short). */
+	static String searchForm(String code, String form) {
+		String t = code.trim();
+		switch (form) {
+		case "gtin14":
+			return key(t);
+		case "short":
+			String k = key(t);
+			String s = k.startsWith("00") ? k.substring(2) // UPC-A
+					: k.startsWith("0") ? k.substring(1) // EAN-13
+							: k;
+			// Never widen: a GTIN-8 is searched in its native 8 digits.
+			return s.length() > t.length() ? t : s;
+		default:
+			return t;
+		}
+	}
+
+	private static boolean isDigits(String s, int minLen, int maxLen) {
+		if (s == null || s.length() < minLen || s.length() > maxLen)
+			return false;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+}
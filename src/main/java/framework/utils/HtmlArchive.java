@@ -0,0 +1,306 @@
+package framework.utils;
+
+import framework.config.FrameworkConstants;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only archive of raw PDP HTML under archive.dir, so columns and
+ * locators can be re-extracted offline (see ArchiveReExtractor) instead of
+ * re-scraping.
+ *
+ * <p>Layout: segment files seg_&lt;run&gt;_NNNN.dat hold deflate-compressed
+ * entries ("HTA1", raw length, compressed length, SHA-256, data) and roll at
+ * archive.segment.mb; index_&lt;run&gt;.tsv maps every capture to its entry
+ * (upc, epoch millis, sha256, segment, offset, compressed length, url).
+ * Identical HTML is stored once and only indexed again. Each JVM writes its
+ * own files, so shards and lease workers can share the directory. Segments
+ * are read through read-only memory mappings.
+ */
+public final class HtmlArchive {
+
+	private static final int MAGIC = 0x48544131; // "HTA1"
+	private static final int HEADER_BYTES = 12 + 32;
+
+	/** One indexed capture. */
+	public static final class Entry {
+		public final String upc;
+		public final long timestamp;
+		public final String sha256;
+		public final String segment;
+		public final long offset;
+		public final int length;
+		public final String url;
+
+		Entry(String upc, long timestamp, String sha256, String segment, long offset, int length, String url) {
+			this.upc = upc;
+			this.timestamp = timestamp;
+			this.sha256 = sha256;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.url = url;
+		}
+	}
+
+	private static HtmlArchive writer;
+
+	private final Path dir;
+	private final String run;
+	private final Map<String, Entry> byHash = new HashMap<>();
+	private final Map<String, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+
+	private FileChannel segment;
+	private String segmentName;
+	private int segmentNo;
+	private BufferedWriter index;
+
+	private HtmlArchive(Path dir) {
+		this.dir = dir;
+		this.run = FrameworkConstants.timestamp() + "_" + ProcessHandle.current().pid();
+	}
+
+	/** Returns true if PDP HTML is archived during scraping. */
+	public static boolean isEnabled() {
+		return FrameworkConstants.ARCHIVE_ENABLED;
+	}
+
+	/**
+	 * Archives one PDP snapshot (no-op when disabled; failures are logged, never
+	 * thrown). Thread-safe.
+	 *
+	 * @param upc  UPC the page belongs to
+	 * @param url  page URL
+	 * @param html page source
+	 */
+	public static void store(String upc, String url, String html) {
+		if (!isEnabled() || html == null)
+			return;
+		try {
+			writer().append(upc, url, html);
+		} catch (IOException | RuntimeException e) {
+			System.out.println("HTML archive write failed for UPC " + upc + ": " + e.getMessage());
+		}
+	}
+
+	/** Flushes and closes the archive of this JVM (end of run). */
+	public static synchronized void closeWriter() {
+		if (writer == null)
+			return;
+		writer.close();
+		writer = null;
+	}
+
+	private static synchronized HtmlArchive writer() throws IOException {
+		if (writer == null) {
+			HtmlArchive a = new HtmlArchive(Paths.get(FrameworkConstants.ARCHIVE_DIR));
+			Files.createDirectories(a.dir);
+			for (Entry e : a.readIndex())
+				a.byHash.putIfAbsent(e.sha256, e);
+			writer = a;
+		}
+		return writer;
+	}
+
+	/**
+	 * Opens an archive directory for reading.
+	 *
+	 * @param dir archive directory
+	 * @return reader
+	 */
+	public static HtmlArchive open(Path dir) {
+		return new HtmlArchive(dir);
+	}
+
+	private synchronized void append(String upc, String url, String html) throws IOException {
+		byte[] raw = html.getBytes(StandardCharsets.UTF_8);
+		String hash = sha256(raw);
+		Entry existing = byHash.get(hash);
+		if (existing == null) {
+			byte[] packed = deflate(raw);
+			FileChannel ch = segmentFor(HEADER_BYTES + packed.length);
+			long offset = ch.position();
+			ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + packed.length);
+			buf.putInt(MAGIC).putInt(raw.length).putInt(packed.length).put(hex(hash)).put(packed).flip();
+			while (buf.hasRemaining())
+				ch.write(buf);
+			existing = new Entry(upc, System.currentTimeMillis(), hash, segmentName, offset, packed.length, url);
+			byHash.put(hash, existing);
+		}
+
+		if (index == null)
+			index = Files.newBufferedWriter(dir.resolve("index_" + run + ".tsv"), StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		index.write(upc + "\t" + System.currentTimeMillis() + "\t" + hash + "\t" + existing.segment + "\t"
+				+ existing.offset + "\t" + existing.length + "\t" + (url == null ? "" : url.replace('\t', ' ')));
+		index.newLine();
+		index.flush();
+	}
+
+	/** Returns the open segment, rolling to a new one when the entry would exceed archive.segment.mb. */
+	private FileChannel segmentFor(int bytes) throws IOException {
+		long limit = Math.max(1, FrameworkConstants.ARCHIVE_SEGMENT_MB) * 1024L * 1024L;
+		if (segment != null && segment.position() + bytes > limit) {
+			segment.close();
+			segment = null;
+		}
+		if (segment == null) {
+			segmentName = String.format("seg_%s_%04d.dat", run, ++segmentNo);
+			segment = FileChannel.open(dir.resolve(segmentName), StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE);
+		}
+		return segment;
+	}
+
+	private synchronized void close() {
+		try {
+			if (segment != null)
+				segment.close();
+			if (index != null)
+				index.close();
+		} catch (IOException ignored) {
+		}
+		segment = null;
+		index = null;
+	}
+
+	/**
+	 * Reads every index file of the directory.
+	 *
+	 * @return all captures in index order
+	 */
+	public List<Entry> readIndex() throws IOException {
+		List<Entry> out = new ArrayList<>();
+		if (!Files.isDirectory(dir))
+			return out;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "index_*.tsv")) {
+			for (Path f : files) {
+				for (String line : Files.readAllLines(f, StandardCharsets.UTF_8)) {
+					String[] p = line.split("\t", 7);
+					if (p.length < 6)
+						continue; // torn last line of a killed run
+					try {
+						out.add(new Entry(p[0], Long.parseLong(p[1]), p[2], p[3], Long.parseLong(p[4]),
+								Integer.parseInt(p[5]), p.length > 6 ? p[6] : ""));
+					} catch (NumberFormatException ignored) {
+					}
+				}
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Keeps the newest capture per item, keyed by GTIN-14 so UPC-A, EAN-13 and
+	 * GTIN-14 spellings of one UPC count once.
+	 *
+	 * @param entries index entries
+	 * @return latest entry for every UPC
+	 */
+	public static Collection<Entry> latestPerUpc(List<Entry> entries) {
+		Map<String, Entry> latest = new HashMap<>();
+		for (Entry e : entries)
+			latest.merge(Gtin.key(e.upc), e, (a, b) -> b.timestamp >= a.timestamp ? b : a);
+		return latest.values();
+	}
+
+	/**
+	 * Decompresses the HTML of an entry from its memory-mapped segment. Safe to
+	 * call from many threads.
+	 *
+	 * @param e index entry
+	 * @return page source
+	 */
+	public String read(Entry e) throws IOException {
+		ByteBuffer seg = mapped.computeIfAbsent(e.segment, this::map).duplicate();
+		seg.position((int) e.offset);
+		if (seg.getInt() != MAGIC)
+			throw new IOException("Corrupt archive entry at " + e.segment + ":" + e.offset);
+		int rawLength = seg.getInt();
+		int packedLength = seg.getInt();
+		seg.position(seg.position() + 32);
+		byte[] packed = new byte[packedLength];
+		seg.get(packed);
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(packed);
+			byte[] raw = new byte[rawLength];
+			int n = 0;
+			while (n < rawLength && !inflater.finished())
+				n += inflater.inflate(raw, n, rawLength - n);
+			return new String(raw, 0, n, StandardCharsets.UTF_8);
+		} catch (DataFormatException ex) {
+			throw new IOException("Corrupt archive entry at " + e.segment + ":" + e.offset, ex);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private MappedByteBuffer map(String segmentName) {
+		try (FileChannel ch = FileChannel.open(dir.resolve(segmentName), StandardOpenOption.READ)) {
+			return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		} catch (IOException ex) {
+			throw new RuntimeException("Unable to map archive segment: " + segmentName, ex);
+		}
+	}
+
+	private static byte[] deflate(byte[] raw) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			byte[] buf = new byte[Math.max(64, raw.length / 2)];
+			int n = 0;
+			while (!deflater.finished()) {
+				if (n == buf.length)
+					buf = Arrays.copyOf(buf, buf.length * 2);
+				n += deflater.deflate(buf, n, buf.length - n);
+			}
+			return Arrays.copyOf(buf, n);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static String sha256(byte[] data) {
+		try {
+			byte[] d = MessageDigest.getInstance("SHA-256").digest(data);
+			StringBuilder sb = new StringBuilder(64);
+			for (byte b : d)
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] hex(String hash) {
+		byte[] out = new byte[32];
+		for (int i = 0; i < 32; i++)
+			out[i] = (byte) Integer.parseInt(hash.substring(2 * i, 2 * i + 2), 16);
+		return out;
+	}
+}
@@ -0,0 +1,159 @@
+package framework.utils;
+
+import framework.config.FrameworkConstants;
+import framework.distributed.Sharding;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UPCs that returned NO_PRODUCTS_FOUND, kept across runs so scheduled
+ * refreshes do not search them again. Every miss is appended to
+ * negative.cache.file as "gtin14 TAB epochMillis"; a later search that finds
+ * the product appends "gtin14 TAB 0", which removes the entry. The last line per UPC
+ * wins.
+ *
+ * <p>An entry is used for negative.cache.ttl.days. A random
+ * negative.cache.revalidate.percent of the lookups is not answered from the
+ * cache, so the UPC is searched again and the entry refreshed or dropped.
+ * Unsharded, non-lease runs compact the file on load.
+ */
+public final class NegativeCache {
+
+	private static final Object LOCK = new Object();
+	private static volatile Map<String, Long> misses;
+
+	private NegativeCache() {
+	}
+
+	/** Returns true if negative.cache.ttl.days &gt; 0. */
+	public static boolean isEnabled() {
+		return FrameworkConstants.NEGATIVE_CACHE_TTL_DAYS > 0;
+	}
+
+	/**
+	 * Decides whether a UPC can be written as a cached miss without searching.
+	 *
+	 * @param upc normalized UPC
+	 * @return epoch millis of the cached miss, or -1 if the UPC must be searched
+	 *         (not cached, expired or picked for revalidation)
+	 */
+	public static long cachedMiss(String upc) {
+		if (!isEnabled())
+			return -1;
+		Long at = entries().get(Gtin.key(upc));
+		if (at == null)
+			return -1;
+		long ttl = TimeUnit.DAYS.toMillis(FrameworkConstants.NEGATIVE_CACHE_TTL_DAYS);
+		if (System.currentTimeMillis() - at > ttl)
+			return -1;
+		if (ThreadLocalRandom.current().nextDouble(100.0) < FrameworkConstants.NEGATIVE_CACHE_REVALIDATE_PERCENT)
+			return -1;
+		return at;
+	}
+
+	/** Returns true if the UPC has a (possibly expired) entry. */
+	public static boolean contains(String upc) {
+		return isEnabled() && entries().containsKey(Gtin.key(upc));
+	}
+
+	/** Records (or refreshes) a miss for the UPC. */
+	public static void recordMiss(String upc) {
+		if (!isEnabled())
+			return;
+		long now = System.currentTimeMillis();
+		String key = Gtin.key(upc);
+		entries().put(key, now);
+		append(key + "\t" + now);
+	}
+
+	/** Drops the entry of a UPC whose search found a product. */
+	public static void recordFound(String upc) {
+		String key = Gtin.key(upc);
+		if (!isEnabled() || entries().remove(key) == null)
+			return;
+		append(key + "\t0");
+	}
+
+	private static Map<String, Long> entries() {
+		Map<String, Long> m = misses;
+		if (m == null) {
+			synchronized (LOCK) {
+				if (misses == null)
+					misses = load(Paths.get(FrameworkConstants.NEGATIVE_CACHE_FILE));
+				m = misses;
+			}
+		}
+		return m;
+	}
+
+	private static Map<String, Long> load(Path p) {
+		Map<String, Long> m = new ConcurrentHashMap<>();
+		if (!Files.exists(p))
+			return m;
+		int lines = 0;
+		try {
+			for (String line : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+				lines++;
+				String[] parts = line.split("\t");
+				if (parts.length < 2)
+					continue; // torn last line
+				try {
+					long at = Long.parseLong(parts[1].trim());
+					if (at > 0)
+						m.put(Gtin.key(parts[0]), at);
+					else
+						m.remove(Gtin.key(parts[0]));
+				} catch (NumberFormatException ignored) {
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Negative cache " + p + " not loaded: " + e.getMessage());
+			return m;
+		}
+		// Shards and lease workers share the file; only a single JVM may rewrite it.
+		if (!Sharding.isSharded() && !FrameworkConstants.LEASE_WORKER && lines > 2 * m.size() + 1000)
+			compact(p, m);
+		return m;
+	}
+
+	private static void compact(Path p, Map<String, Long> m) {
+		long ttl = TimeUnit.DAYS.toMillis(FrameworkConstants.NEGATIVE_CACHE_TTL_DAYS);
+		long now = System.currentTimeMillis();
+		m.values().removeIf(at -> now - at > ttl);
+		List<String> out = new ArrayList<>(m.size());
+		m.forEach((upc, at) -> out.add(upc + "\t" + at));
+		try {
+			Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+			Files.write(tmp, out, StandardCharsets.UTF_8);
+			Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.out.println("Negative cache compaction skipped: " + e.getMessage());
+		}
+	}
+
+	private static void append(String line) {
+		Path p = Paths.get(FrameworkConstants.NEGATIVE_CACHE_FILE);
+		synchronized (LOCK) {
+			try {
+				if (p.getParent() != null)
+					Files.createDirectories(p.getParent());
+				Files.writeString(p, line + System.lineSeparator(), StandardOpenOption.CREATE,
+						StandardOpenOption.APPEND);
+			} catch (IOException ignored) {
+				// Best-effort: a lost entry only means the UPC is searched again.
+			}
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package framework.utils;
 
+import framework.distributed.Sharding;
+import framework.metrics.StageMetrics;
+
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.Collections;
@@ -14,11 +17,18 @@ import java.util.Set;
  * <p>On the next run {@link #loadProcessed()} returns the full set and the
  * test filters them out of the input list, continuing only with the remaining
  * work.
+ *
+ * <p>Sharded runs (shard.count &gt; 1) keep one checkpoint file per shard so
+ * independent JVMs never contend on the same file; {@code ShardMerger} unions
+ * them afterwards.
  */
 public final class ProgressTracker {
 
+	/** Directory holding checkpoint files (relative to the working directory). */
+	public static final String PROGRESS_DIR = "ScrapingOutputResults/progress";
+
 	/** Path of the checkpoint file (relative to the working directory). */
-	public static final String CHECKPOINT_FILE = "ScrapingOutputResults/progress/checkpoint.txt";
+	public static final String CHECKPOINT_FILE = PROGRESS_DIR + "/checkpoint" + Sharding.suffix() + ".txt";
 
 	private static final Object LOCK = new Object();
 
@@ -32,7 +42,16 @@ public final class ProgressTracker {
 	 *         exists
 	 */
 	public static Set<String> loadProcessed() {
-		Path p = Paths.get(CHECKPOINT_FILE);
+		return loadProcessed(Paths.get(CHECKPOINT_FILE));
+	}
+
+	/**
+	 * Loads all UPCs from the given checkpoint file.
+	 *
+	 * @param p checkpoint path
+	 * @return set of processed UPC strings, or an empty set if it does not exist
+	 */
+	public static Set<String> loadProcessed(Path p) {
 		if (!Files.exists(p)) {
 			return Collections.emptySet();
 		}
@@ -54,9 +73,19 @@ public final class ProgressTracker {
 	 * @param upc the UPC string that was just written to CSV
 	 */
 	public static void markProcessed(String upc) {
+		markProcessed(Paths.get(CHECKPOINT_FILE), upc);
+	}
+
+	/**
+	 * Records a UPC as processed in the given checkpoint file.
+	 *
+	 * @param p   checkpoint path
+	 * @param upc the UPC string that was just written to CSV
+	 */
+	public static void markProcessed(Path p, String upc) {
+		long t = StageMetrics.start();
 		synchronized (LOCK) {
 			try {
-				Path p = Paths.get(CHECKPOINT_FILE);
 				if (p.getParent() != null) {
 					Files.createDirectories(p.getParent());
 				}
@@ -67,5 +96,6 @@ public final class ProgressTracker {
 				// re-processed on the next run, which is safe.
 			}
 		}
+		StageMetrics.record(StageMetrics.Stage.CHECKPOINT, "ok", t);
 	}
 }
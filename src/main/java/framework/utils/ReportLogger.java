@@ -4,10 +4,21 @@ import com.aventstack.extentreports.ExtentTest;
 import framework.listeners.ExtentTestListener;
 
 /**
- * Unified logger for console + ExtentReport.
+ * Unified logger for console + ExtentReport. Console output goes through
+ * {@link AsyncLog} (per-thread buffers, one writer thread, level filter) with
+ * the thread's UPC/batch as structured fields. While a UPC is in scope (see
+ * {@link #beginUpc(String)}) and the streaming {@link RunReport} is active,
+ * messages go to the run report instead of the Extent test, so Extent only
+ * keeps suite/worker-level entries.
  */
 public final class ReportLogger {
 
+	/** UPC currently processed on this thread (null outside a UPC). */
+	private static final ThreadLocal<String> UPC = new ThreadLocal<>();
+
+	/** Batch (or lease worker) label of this thread, printed as a log field. */
+	private static final ThreadLocal<String> BATCH = new ThreadLocal<>();
+
 	private ReportLogger() {
 		// Utility class
 	}
@@ -21,16 +32,63 @@ public final class ReportLogger {
 		return ExtentTestListener.getTest();
 	}
 
+	/** Marks the start of a UPC on this thread. */
+	public static void beginUpc(String upc) {
+		UPC.set(upc);
+	}
+
+	/** Clears the UPC scope of this thread. */
+	public static void endUpc() {
+		UPC.remove();
+	}
+
+	/** Sets (or clears with null) the batch label of this thread. */
+	public static void setBatch(String batch) {
+		if (batch == null)
+			BATCH.remove();
+		else
+			BATCH.set(batch);
+	}
+
+	/** Returns true if DEBUG lines (per-stage timings) are printed. */
+	public static boolean isDebugEnabled() {
+		return AsyncLog.isEnabled(AsyncLog.Level.DEBUG);
+	}
+
+	/**
+	 * Logs a stage timing at DEBUG level (console only).
+	 *
+	 * @param stage      stage label
+	 * @param outcome    outcome label
+	 * @param durationMs stage duration
+	 */
+	public static void stage(String stage, String outcome, long durationMs) {
+		AsyncLog.log(AsyncLog.Level.DEBUG, outcome, UPC.get(), BATCH.get(), stage, durationMs);
+	}
+
+	private static void console(AsyncLog.Level level, String message) {
+		AsyncLog.log(level, message, UPC.get(), BATCH.get(), null, -1);
+	}
+
+	/** Routes a per-UPC message to the streaming report; returns false if not in UPC scope. */
+	private static boolean streamed(String level, String message) {
+		String upc = UPC.get();
+		if (upc == null || !RunReport.isActive())
+			return false;
+		RunReport.event(level, upc, message);
+		return true;
+	}
+
 	/**
 	 * Logs informational message.
 	 *
 	 * @param message message
 	 */
 	public static void info(String message) {
-		ExtentTest test = getSafeTest();
+		ExtentTest test = streamed("INFO", message) ? null : getSafeTest();
 		if (test != null)
 			test.info("STEP -> " + message);
-		System.out.println("STEP -> " + message);
+		console(AsyncLog.Level.INFO, message);
 	}
 
 	/**
@@ -39,10 +97,10 @@ public final class ReportLogger {
 	 * @param message message
 	 */
 	public static void pass(String message) {
-		ExtentTest test = getSafeTest();
+		ExtentTest test = streamed("PASS", message) ? null : getSafeTest();
 		if (test != null)
 			test.pass("STEP -> " + message);
-		System.out.println("PASS -> " + message);
+		console(AsyncLog.Level.PASS, message);
 	}
 
 	/**
@@ -51,23 +109,29 @@ public final class ReportLogger {
 	 * @param message message
 	 */
 	public static void fail(String message) {
-		ExtentTest test = getSafeTest();
+		ExtentTest test = streamed("FAIL", message) ? null : getSafeTest();
 		if (test != null)
 			test.fail("STEP -> " + message);
-		System.out.println("FAIL -> " + message);
+		console(AsyncLog.Level.FAIL, message);
 	}
 
 	/**
-	 * Attaches a screenshot to the Extent report if possible.
+	 * Attaches a screenshot to the Extent report if possible (DOM snapshots are
+	 * linked by path).
 	 *
 	 * @param screenshotPath screenshot path
 	 * @param caption        label in report
 	 */
 	public static void attachScreenshot(String screenshotPath, String caption) {
+		if (screenshotPath != null && streamed("EVIDENCE", caption + " -> " + screenshotPath))
+			return;
 		ExtentTest test = getSafeTest();
 		if (test != null && screenshotPath != null) {
 			try {
-				test.addScreenCaptureFromPath(screenshotPath, caption);
+				if (screenshotPath.endsWith(".html.gz"))
+					test.info(caption + " -> DOM snapshot: " + screenshotPath);
+				else
+					test.addScreenCaptureFromPath(screenshotPath, caption);
 			} catch (Exception e) {
 				System.out.println("Screenshot attach failed: " + e.getMessage());
 			}
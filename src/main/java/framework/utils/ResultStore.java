@@ -0,0 +1,582 @@
+package framework.utils;
+
+import framework.config.FrameworkConstants;
+import framework.pages.ProductSearchPage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Embedded store of the latest result row per UPC (result.store.enabled), so
+ * "current state of the catalog" questions do not scan every batch CSV.
+ *
+ * <p>Layout: every JVM appends to its own rows_&lt;run&gt;.log under
+ * result.store.dir, one "epochMillis TAB csv row" line per processed UPC, so
+ * shards and lease coordinators can share the directory. The newest line per
+ * GTIN-14 key wins (upsert). {@link #open(Path)} scans the logs once and keeps
+ * only indexes in memory: the file position of each UPC's latest row (sorted
+ * by key, for range queries) plus secondary indexes on status, brand, stock
+ * flag and price. Rows are read back with positional reads, so memory grows
+ * with the number of UPCs, not with row size.
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=framework.utils.ResultStore -Dexec.args="status 'ADD TO CART PRESENT'"
+ * </pre>
+ */
+public final class ResultStore {
+
+	private static final String STATUS_PRESENT = "ADD TO CART PRESENT";
+	private static final int COL_UPC = 0;
+	private static final int COL_STATUS = 3;
+	private static final int COL_PRICE = 11;
+	private static final int COL_STOCK = 13;
+	private static final int COL_OUT_OF_STOCK = 14;
+	private static final int COL_BRAND = 15;
+
+	/** Position and indexed fields of the latest row of one UPC. */
+	private static final class Ref {
+		final int file;
+		final long offset;
+		final int length;
+		final long timestamp;
+		final String status;
+		final String brand;
+		final boolean inStock;
+		final boolean outOfStock;
+		final double price;
+
+		Ref(int file, long offset, int length, long timestamp, String status, String brand, boolean inStock,
+				boolean outOfStock, double price) {
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+			this.timestamp = timestamp;
+			this.status = status;
+			this.brand = brand;
+			this.inStock = inStock;
+			this.outOfStock = outOfStock;
+			this.price = price;
+		}
+	}
+
+	private static ResultStore writer;
+
+	private final Path dir;
+	private final String run;
+	private final List<Path> files = new ArrayList<>();
+	private final Map<Integer, FileChannel> readers = new ConcurrentHashMap<>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final NavigableMap<String, Ref> byKey = new TreeMap<>();
+	private final Map<String, NavigableSet<String>> byStatus = new HashMap<>();
+	private final Map<String, NavigableSet<String>> byBrand = new HashMap<>();
+	private final NavigableSet<String> inStock = new TreeSet<>();
+	private final NavigableSet<String> outOfStock = new TreeSet<>();
+	private final NavigableMap<Double, NavigableSet<String>> byPrice = new TreeMap<>();
+	/** One instance per distinct status and brand text, shared by every Ref that has it. */
+	private final Map<String, String> names = new HashMap<>();
+	private long lines;
+
+	private FileChannel out;
+	private int outFile = -1;
+
+	private ResultStore(Path dir) {
+		this.dir = dir;
+		this.run = FrameworkConstants.timestamp() + "_" + ProcessHandle.current().pid();
+	}
+
+	/** Returns true if result rows are also upserted into the store during scraping. */
+	public static boolean isEnabled() {
+		return FrameworkConstants.RESULT_STORE_ENABLED;
+	}
+
+	/**
+	 * Upserts one result row into the store of this JVM (no-op when disabled;
+	 * failures are logged, never thrown). Thread-safe. The writer only indexes
+	 * what it wrote itself; earlier runs are read by {@link #open(Path)}.
+	 *
+	 * @param row CSV row formatted by CSVUtils.formatFull
+	 */
+	public static void record(String row) {
+		if (!isEnabled() || row == null)
+			return;
+		try {
+			writer().upsert(row);
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Result store write failed: " + e.getMessage());
+		}
+	}
+
+	/** Closes the store of this JVM (end of run). */
+	public static synchronized void closeWriter() {
+		if (writer == null)
+			return;
+		writer.close();
+		writer = null;
+	}
+
+	private static synchronized ResultStore writer() throws IOException {
+		if (writer == null) {
+			ResultStore s = new ResultStore(Paths.get(FrameworkConstants.RESULT_STORE_DIR));
+			Files.createDirectories(s.dir);
+			writer = s;
+		}
+		return writer;
+	}
+
+	/**
+	 * Opens a store directory and builds its indexes from every log.
+	 *
+	 * @param dir store directory
+	 * @return store ready for queries (and further upserts)
+	 */
+	public static ResultStore open(Path dir) throws IOException {
+		ResultStore s = new ResultStore(dir);
+		if (!Files.isDirectory(dir))
+			return s;
+		List<Path> logs = new ArrayList<>();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "rows_*.log")) {
+			ds.forEach(logs::add);
+		}
+		Collections.sort(logs);
+		s.lock.writeLock().lock();
+		try {
+			for (Path f : logs) {
+				s.files.add(f);
+				s.load(s.files.size() - 1, f);
+			}
+		} finally {
+			s.lock.writeLock().unlock();
+		}
+		return s;
+	}
+
+	/**
+	 * Appends a row and makes it the latest row of its UPC.
+	 *
+	 * @param row CSV row formatted by CSVUtils.formatFull
+	 */
+	public void upsert(String row) throws IOException {
+		String[] v = CSVUtils.parseRow(row);
+		String key = Gtin.key(value(v, COL_UPC));
+		if (key.isEmpty())
+			return;
+		long now = System.currentTimeMillis();
+		byte[] prefix = (now + "\t").getBytes(StandardCharsets.UTF_8);
+		byte[] data = row.getBytes(StandardCharsets.UTF_8);
+
+		lock.writeLock().lock();
+		try {
+			if (out == null) {
+				Path f = dir.resolve("rows_" + run + ".log");
+				out = FileChannel.open(f, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				files.add(f);
+				outFile = files.size() - 1;
+			}
+			long start = out.position();
+			ByteBuffer buf = ByteBuffer.allocate(prefix.length + data.length + 1);
+			buf.put(prefix).put(data).put((byte) '\n').flip();
+			while (buf.hasRemaining())
+				out.write(buf);
+			index(key, ref(outFile, start + prefix.length, data.length, now, v));
+			lines++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** Number of UPCs in the store. */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return byKey.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Latest row of a UPC (any GTIN spelling).
+	 *
+	 * @param upc UPC
+	 * @return CSV row, or null
+	 */
+	public String get(String upc) throws IOException {
+		// Held across the read: compact() deletes the logs a Ref points into.
+		lock.readLock().lock();
+		try {
+			Ref r = byKey.get(Gtin.key(upc));
+			return r == null ? null : read(r);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/** GTIN-14 keys of all UPCs, ascending. */
+	public List<String> all() {
+		return keys(() -> byKey.navigableKeySet());
+	}
+
+	/** Keys of UPCs whose latest status equals status (case-insensitive). */
+	public List<String> byStatus(String status) {
+		return keys(() -> byStatus.get(status.trim().toUpperCase(Locale.ROOT)));
+	}
+
+	/** Keys of UPCs whose latest brand equals brand (case-insensitive). */
+	public List<String> byBrand(String brand) {
+		return keys(() -> byBrand.get(brand.trim().toLowerCase(Locale.ROOT)));
+	}
+
+	/**
+	 * Keys by stock flag.
+	 *
+	 * @param available true: add to cart present and not out of stock; false:
+	 *                  out of stock by ProductSearchPage.isOutOfStock
+	 * @return keys, ascending
+	 */
+	public List<String> byStock(boolean available) {
+		return keys(() -> available ? inStock : outOfStock);
+	}
+
+	/**
+	 * Keys in a GTIN-14 range.
+	 *
+	 * @param fromUpc lowest UPC (inclusive)
+	 * @param toUpc   highest UPC (inclusive)
+	 * @return keys, ascending
+	 */
+	public List<String> range(String fromUpc, String toUpc) {
+		return keys(() -> byKey.subMap(Gtin.key(fromUpc), true, Gtin.key(toUpc), true).navigableKeySet());
+	}
+
+	/**
+	 * Keys whose latest parsed ProductDetailPrice is within [min, max],
+	 * cheapest first.
+	 *
+	 * @param min lowest price (inclusive)
+	 * @param max highest price (inclusive)
+	 * @return keys
+	 */
+	public List<String> priceBetween(double min, double max) {
+		lock.readLock().lock();
+		try {
+			List<String> outKeys = new ArrayList<>();
+			for (NavigableSet<String> ks : byPrice.subMap(min, true, max, true).values())
+				outKeys.addAll(ks);
+			return outKeys;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes the latest rows of the given keys as a regular result CSV.
+	 *
+	 * @param target CSV path
+	 * @param keys   keys returned by a query
+	 * @return number of rows written
+	 */
+	public int export(Path target, Collection<String> keys) throws IOException {
+		if (target.getParent() != null)
+			Files.createDirectories(target.getParent());
+		int n = 0;
+		try (BufferedWriter bw = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+			bw.write(CSVUtils.HEADER);
+			bw.newLine();
+			for (String k : keys) {
+				String row = get(k);
+				if (row == null)
+					continue;
+				bw.write(row);
+				bw.newLine();
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Rewrites the store as one log holding only the latest row per UPC and
+	 * deletes the old logs. Only safe while no other JVM writes to the
+	 * directory.
+	 *
+	 * @return number of rows kept
+	 */
+	public int compact() throws IOException {
+		lock.writeLock().lock();
+		try {
+			Path target = dir.resolve("rows_" + FrameworkConstants.timestamp() + "_" + ProcessHandle.current().pid()
+					+ "_compact.log");
+			int n = 0;
+			try (BufferedWriter bw = Files.newBufferedWriter(target, StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE_NEW)) {
+				for (Ref r : byKey.values()) {
+					bw.write(r.timestamp + "\t" + read(r));
+					bw.write('\n');
+					n++;
+				}
+			}
+			closeChannels();
+			for (Path f : files)
+				Files.deleteIfExists(f);
+			clear();
+			files.add(target);
+			load(0, target);
+			return n;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** Closes all open files. */
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			closeChannels();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void closeChannels() {
+		try {
+			if (out != null)
+				out.close();
+		} catch (IOException ignored) {
+		}
+		out = null;
+		outFile = -1;
+		for (FileChannel ch : readers.values()) {
+			try {
+				ch.close();
+			} catch (IOException ignored) {
+			}
+		}
+		readers.clear();
+	}
+
+	private void clear() {
+		files.clear();
+		byKey.clear();
+		byStatus.clear();
+		byBrand.clear();
+		inStock.clear();
+		outOfStock.clear();
+		byPrice.clear();
+		names.clear();
+		lines = 0;
+	}
+
+	/** Indexes every complete line of a log, tracking byte offsets. */
+	private void load(int fileNo, Path f) throws IOException {
+		try (InputStream in = Files.newInputStream(f)) {
+			byte[] buf = new byte[1 << 20];
+			int len = 0;
+			long bufStart = 0;
+			int n;
+			while ((n = in.read(buf, len, buf.length - len)) > 0) {
+				len += n;
+				int lineStart = 0;
+				for (int i = 0; i < len; i++) {
+					if (buf[i] == '\n') {
+						loadLine(fileNo, bufStart + lineStart, buf, lineStart, i - lineStart);
+						lineStart = i + 1;
+					}
+				}
+				// Keep the incomplete tail for the next read, growing the buffer for long rows.
+				len -= lineStart;
+				System.arraycopy(buf, lineStart, buf, 0, len);
+				bufStart += lineStart;
+				if (len == buf.length)
+					buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			// A trailing line without newline is a torn write of a killed run.
+		}
+	}
+
+	private void loadLine(int fileNo, long lineStart, byte[] buf, int from, int len) {
+		int tab = 0;
+		while (tab < len && buf[from + tab] != '\t')
+			tab++;
+		if (tab == 0 || tab >= len)
+			return;
+		long ts;
+		try {
+			ts = Long.parseLong(new String(buf, from, tab, StandardCharsets.US_ASCII));
+		} catch (NumberFormatException e) {
+			return;
+		}
+		String row = new String(buf, from + tab + 1, len - tab - 1, StandardCharsets.UTF_8);
+		String[] v = CSVUtils.parseRow(row);
+		String key = Gtin.key(value(v, COL_UPC));
+		if (key.isEmpty())
+			return;
+		lines++;
+		Ref prev = byKey.get(key);
+		if (prev == null || ts >= prev.timestamp)
+			index(key, ref(fileNo, lineStart + tab + 1, len - tab - 1, ts, v));
+	}
+
+	/** Builds the Ref of a parsed row (caller holds the write lock). */
+	private Ref ref(int fileNo, long offset, int length, long ts, String[] v) {
+		String status = names.computeIfAbsent(value(v, COL_STATUS).toUpperCase(Locale.ROOT), k -> k);
+		String brand = names.computeIfAbsent(value(v, COL_BRAND).toLowerCase(Locale.ROOT), k -> k);
+		boolean oos = ProductSearchPage.isOutOfStock(value(v, COL_STOCK), value(v, COL_OUT_OF_STOCK));
+		double price = UpcPriority.parsePrice(value(v, COL_PRICE));
+		return new Ref(fileNo, offset, length, ts, status, brand, STATUS_PRESENT.equals(status) && !oos, oos,
+				price);
+	}
+
+	/** Replaces the latest row of a key in all indexes (caller holds the write lock). */
+	private void index(String key, Ref r) {
+		Ref prev = byKey.put(key, r);
+		if (prev != null) {
+			remove(byStatus, prev.status, key);
+			remove(byBrand, prev.brand, key);
+			inStock.remove(key);
+			outOfStock.remove(key);
+			if (prev.price >= 0)
+				remove(byPrice, prev.price, key);
+		}
+		byStatus.computeIfAbsent(r.status, k -> new TreeSet<>()).add(key);
+		if (!r.brand.isEmpty())
+			byBrand.computeIfAbsent(r.brand, k -> new TreeSet<>()).add(key);
+		if (r.inStock)
+			inStock.add(key);
+		if (r.outOfStock)
+			outOfStock.add(key);
+		if (r.price >= 0)
+			byPrice.computeIfAbsent(r.price, k -> new TreeSet<>()).add(key);
+	}
+
+	private static <K> void remove(Map<K, NavigableSet<String>> index, K value, String key) {
+		NavigableSet<String> ks = index.get(value);
+		if (ks != null && ks.remove(key) && ks.isEmpty())
+			index.remove(value);
+	}
+
+	private List<String> keys(Supplier<Collection<String>> index) {
+		lock.readLock().lock();
+		try {
+			Collection<String> ks = index.get();
+			return ks == null ? new ArrayList<>() : new ArrayList<>(ks);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private String read(Ref r) throws IOException {
+		FileChannel ch = readers.get(r.file);
+		if (ch == null) {
+			ch = FileChannel.open(files.get(r.file), StandardOpenOption.READ);
+			FileChannel raced = readers.putIfAbsent(r.file, ch);
+			if (raced != null) {
+				ch.close();
+				ch = raced;
+			}
+		}
+		ByteBuffer buf = ByteBuffer.allocate(r.length);
+		long pos = r.offset;
+		while (buf.hasRemaining()) {
+			int n = ch.read(buf, pos);
+			if (n < 0)
+				throw new IOException("Truncated result store log: " + files.get(r.file));
+			pos += n;
+		}
+		return new String(buf.array(), StandardCharsets.UTF_8);
+	}
+
+	private static String value(String[] v, int col) {
+		return (col >= v.length || v[col] == null) ? "" : v[col].trim();
+	}
+
+	/**
+	 * Command line: [export target.csv] query, where query is one of all,
+	 * get UPC, status STATUS, brand BRAND, in-stock, out-of-stock,
+	 * range FROM_UPC TO_UPC, price MIN MAX; or compact. Without export the rows
+	 * are printed as CSV.
+	 */
+	public static void main(String[] args) throws IOException {
+		long start = System.currentTimeMillis();
+		ResultStore store = open(Paths.get(FrameworkConstants.RESULT_STORE_DIR));
+		System.err.println("Result store " + FrameworkConstants.RESULT_STORE_DIR + ": " + store.size() + " UPCs, "
+				+ store.lines + " rows, opened in " + (System.currentTimeMillis() - start) + " ms");
+		try {
+			List<String> a = new ArrayList<>(Arrays.asList(args));
+			if (!a.isEmpty() && a.get(0).equals("compact")) {
+				System.err.println("Compacted to " + store.compact() + " rows");
+				return;
+			}
+			Path target = null;
+			if (a.size() >= 2 && a.get(0).equals("export")) {
+				target = Paths.get(a.get(1));
+				a = a.subList(2, a.size());
+			}
+			List<String> keys = query(store, a);
+			if (target != null) {
+				System.err.println("Exported " + store.export(target, keys) + " rows to " + target);
+				return;
+			}
+			System.out.println(CSVUtils.HEADER);
+			for (String k : keys)
+				System.out.println(store.get(k));
+		} finally {
+			store.close();
+		}
+	}
+
+	private static List<String> query(ResultStore store, List<String> a) {
+		String cmd = a.isEmpty() ? "all" : a.get(0);
+		switch (cmd) {
+		case "all":
+			return store.all();
+		case "get":
+			return store.range(arg(a, 1), arg(a, 1));
+		case "status":
+			return store.byStatus(arg(a, 1));
+		case "brand":
+			return store.byBrand(arg(a, 1));
+		case "in-stock":
+			return store.byStock(true);
+		case "out-of-stock":
+			return store.byStock(false);
+		case "range":
+			return store.range(arg(a, 1), arg(a, 2));
+		case "price":
+			return store.priceBetween(Double.parseDouble(arg(a, 1)), Double.parseDouble(arg(a, 2)));
+		default:
+			throw new RuntimeException("Unknown result store query: " + cmd
+					+ " (expected all, get, status, brand, in-stock, out-of-stock, range, price, export, compact)");
+		}
+	}
+
+	private static String arg(List<String> a, int i) {
+		if (i >= a.size())
+			throw new RuntimeException("Missing argument for result store query: " + a);
+		return a.get(i);
+	}
+}
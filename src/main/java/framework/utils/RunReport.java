@@ -0,0 +1,254 @@
+package framework.utils;
+
+import framework.config.FrameworkConstants;
+import framework.distributed.Sharding;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming per-UPC run report with bounded memory. Per-UPC log lines and
+ * results are appended as JSON lines to a rolling event file (flushed every
+ * report.stream.flush.ms) instead of being held as Extent nodes until suite
+ * end; only aggregated counters and the last few failures stay in memory. A
+ * compact summary HTML is rewritten periodically and at the end, so a run
+ * killed at the CI timeout still leaves a usable report.
+ */
+public final class RunReport {
+
+	private static final int RECENT_FAILURES = 200;
+
+	private static final Map<String, LongAdder> STATUS_COUNTS = new ConcurrentHashMap<>();
+	private static final Map<String, LongAdder> WORKER_COUNTS = new ConcurrentHashMap<>();
+	private static final LongAdder UPCS = new LongAdder();
+	private static final LongAdder ELAPSED_MS = new LongAdder();
+	private static final Deque<String[]> FAILURES = new ArrayDeque<>();
+
+	private static BufferedWriter writer;
+	private static Path eventFile;
+	private static Path summaryFile;
+	private static String baseName;
+	private static final List<Path> PARTS = new ArrayList<>();
+	private static long written;
+	private static long startedAt;
+	private static ScheduledExecutorService scheduler;
+
+	private RunReport() {
+	}
+
+	/** Returns true while a streaming report is open. */
+	public static synchronized boolean isActive() {
+		return writer != null;
+	}
+
+	/** Opens the event file and starts periodic flush/summary (idempotent). */
+	public static synchronized void start() {
+		if (!FrameworkConstants.REPORT_STREAMING || writer != null)
+			return;
+		try {
+			Files.createDirectories(Paths.get(FrameworkConstants.REPORT_DIR));
+			String stamp = FrameworkConstants.timestamp();
+			baseName = FrameworkConstants.REPORT_DIR + "/run_events" + Sharding.suffix() + "_" + stamp;
+			summaryFile = Paths.get(FrameworkConstants.REPORT_DIR,
+					"run_summary" + Sharding.suffix() + "_" + stamp + ".html");
+			startedAt = System.currentTimeMillis();
+			openPart();
+		} catch (IOException e) {
+			System.out.println("Run report disabled: " + e.getMessage());
+			return;
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "run-report");
+			t.setDaemon(true);
+			return t;
+		});
+		long flushMs = Math.max(100, FrameworkConstants.REPORT_STREAM_FLUSH_MS);
+		scheduler.scheduleAtFixedRate(RunReport::flushQuietly, flushMs, flushMs, TimeUnit.MILLISECONDS);
+		long summarySec = Math.max(5, FrameworkConstants.REPORT_SUMMARY_INTERVAL_SEC);
+		scheduler.scheduleAtFixedRate(RunReport::writeSummaryQuietly, summarySec, summarySec, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Appends a log event for the UPC currently processed on this thread.
+	 *
+	 * @param level   INFO, PASS, FAIL or EVIDENCE
+	 * @param upc     UPC in scope
+	 * @param message log text
+	 */
+	public static void event(String level, String upc, String message) {
+		append("{\"ts\":\"" + Instant.now() + "\",\"thread\":\"" + json(Thread.currentThread().getName())
+				+ "\",\"upc\":\"" + json(upc) + "\",\"level\":\"" + level + "\",\"msg\":\"" + json(message)
+				+ "\"}");
+	}
+
+	/**
+	 * Records the final status of one UPC.
+	 *
+	 * @param upc       UPC
+	 * @param status    written status
+	 * @param elapsedMs wall time of the UPC
+	 */
+	public static void result(String upc, String status, long elapsedMs) {
+		String s = (status == null) ? "UNKNOWN" : status;
+		STATUS_COUNTS.computeIfAbsent(s, k -> new LongAdder()).increment();
+		UPCS.increment();
+		ELAPSED_MS.add(elapsedMs);
+
+		if (!s.startsWith("ADD TO CART")) {
+			synchronized (FAILURES) {
+				if (FAILURES.size() == RECENT_FAILURES)
+					FAILURES.removeFirst();
+				FAILURES.addLast(new String[] { Instant.now().toString(), upc, s });
+			}
+		}
+		append("{\"ts\":\"" + Instant.now() + "\",\"thread\":\"" + json(Thread.currentThread().getName())
+				+ "\",\"upc\":\"" + json(upc) + "\",\"level\":\"RESULT\",\"status\":\"" + json(s)
+				+ "\",\"elapsedMs\":" + elapsedMs + "}");
+	}
+
+	/**
+	 * Counts one UPC for the calling worker thread. Called on the worker, not
+	 * from {@link #result}: with engine.staged results arrive on the persist
+	 * thread.
+	 */
+	public static void workerUpc() {
+		WORKER_COUNTS.computeIfAbsent(Thread.currentThread().getName(), k -> new LongAdder()).increment();
+	}
+
+	/** Flushes events, writes the final summary HTML and closes the report. */
+	public static synchronized void finish() {
+		if (writer == null)
+			return;
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		try {
+			writer.close();
+		} catch (IOException ignored) {
+		}
+		writer = null;
+		writeSummaryQuietly();
+		System.out.println("Run summary -> " + summaryFile + " | events -> " + eventFile);
+	}
+
+	private static synchronized void append(String line) {
+		if (writer == null)
+			return;
+		try {
+			writer.write(line);
+			writer.write('\n');
+			written += line.length() + 1;
+			if (written >= FrameworkConstants.REPORT_STREAM_ROLL_MB * 1024L * 1024L) {
+				writer.close();
+				openPart();
+			}
+		} catch (IOException e) {
+			System.out.println("Run report write failed: " + e.getMessage());
+		}
+	}
+
+	private static void openPart() throws IOException {
+		eventFile = Paths.get(baseName + (PARTS.isEmpty() ? "" : "." + PARTS.size()) + ".jsonl");
+		PARTS.add(eventFile);
+		writer = Files.newBufferedWriter(eventFile, StandardCharsets.UTF_8);
+		written = 0;
+	}
+
+	private static synchronized void flushQuietly() {
+		try {
+			if (writer != null)
+				writer.flush();
+		} catch (IOException ignored) {
+		}
+	}
+
+	private static void writeSummaryQuietly() {
+		if (summaryFile == null)
+			return;
+		try {
+			Path tmp = summaryFile.resolveSibling(summaryFile.getFileName() + ".tmp");
+			Files.write(tmp, renderSummary().getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp, summaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ignored) {
+			// Best-effort; the event file is the source of truth.
+		}
+	}
+
+	/** Renders the compact summary HTML from the aggregated counters. */
+	static String renderSummary() {
+		long upcs = UPCS.sum();
+		double minutes = Math.max(1, System.currentTimeMillis() - startedAt) / 60000.0;
+		StringBuilder sb = new StringBuilder(8192);
+		sb.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Kinsey UPC Run Summary</title>")
+				.append("<style>body{font-family:sans-serif}table{border-collapse:collapse}")
+				.append("td,th{border:1px solid #ccc;padding:4px 8px;text-align:left}</style></head><body>")
+				.append("<h1>Kinsey UPC Run Summary</h1>");
+		sb.append(String.format(Locale.ROOT,
+				"<p>Updated %s | UPCs: %d | %.1f UPCs/min | mean %.0f ms/UPC | base URL: %s</p>", Instant.now(),
+				upcs, upcs / minutes, upcs == 0 ? 0.0 : ELAPSED_MS.sum() / (double) upcs,
+				esc(FrameworkConstants.BASE_URL)));
+
+		sb.append("<h2>Status</h2><table><tr><th>Status</th><th>Count</th></tr>");
+		for (Map.Entry<String, LongAdder> e : new TreeMap<>(STATUS_COUNTS).entrySet())
+			sb.append("<tr><td>").append(esc(e.getKey())).append("</td><td>").append(e.getValue().sum())
+					.append("</td></tr>");
+		sb.append("</table><h2>Workers</h2><table><tr><th>Thread</th><th>UPCs</th></tr>");
+		for (Map.Entry<String, LongAdder> e : new TreeMap<>(WORKER_COUNTS).entrySet())
+			sb.append("<tr><td>").append(esc(e.getKey())).append("</td><td>").append(e.getValue().sum())
+					.append("</td></tr>");
+
+		sb.append("</table><h2>Recent non-passing UPCs (last ").append(RECENT_FAILURES).append(")</h2>")
+				.append("<table><tr><th>Time</th><th>UPC</th><th>Status</th></tr>");
+		synchronized (FAILURES) {
+			for (String[] f : FAILURES)
+				sb.append("<tr><td>").append(f[0]).append("</td><td>").append(esc(f[1])).append("</td><td>")
+						.append(esc(f[2])).append("</td></tr>");
+		}
+		sb.append("</table><h2>Event files</h2><ul>");
+		synchronized (RunReport.class) {
+			for (Path p : PARTS)
+				sb.append("<li>").append(esc(String.valueOf(p.getFileName()))).append("</li>");
+		}
+		return sb.append("</ul></body></html>").toString();
+	}
+
+	private static String json(String s) {
+		if (s == null)
+			return "";
+		StringBuilder sb = new StringBuilder(s.length() + 8);
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	private static String esc(String s) {
+		return (s == null) ? "" : s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+}
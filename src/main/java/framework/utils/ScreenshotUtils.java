@@ -1,18 +1,53 @@
 package framework.utils;
 
 import framework.config.FrameworkConstants;
+import framework.config.RuntimeControls;
+import framework.metrics.StageMetrics;
 import org.openqa.selenium.*;
+import org.openqa.selenium.chromium.HasCdp;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Screenshot helper. Captures only when screenshots.enabled=true.
+ *
+ * <p>screenshot.mode selects the evidence type:
+ * <ul>
+ * <li>png - legacy synchronous full PNG through a temp file</li>
+ * <li>jpeg / webp - clipped, scaled, lossy capture via DevTools
+ * Page.captureScreenshot (a full .png on drivers without DevTools)</li>
+ * <li>html - gzip-compressed DOM snapshot (page source)</li>
+ * </ul>
+ * In the lossy and html modes the worker thread only grabs the bytes; decoding,
+ * compression and file I/O happen on one background writer thread. Evidence is
+ * sampled per status: the first screenshot.sample.first captures of each
+ * status are kept, then one in screenshot.sample.every.
  */
 public final class ScreenshotUtils {
 
+	private static final int WRITE_QUEUE_CAPACITY = 256;
+
+	private static final Map<String, AtomicLong> SEEN = new ConcurrentHashMap<>();
+	private static final AtomicLong DROPPED = new AtomicLong();
+	private static final ThreadPoolExecutor WRITER = newWriter();
+
 	private ScreenshotUtils() {
 	}
 
@@ -24,22 +59,148 @@ public final class ScreenshotUtils {
 	 * @return saved file path or null if disabled/failure
 	 */
 	public static String capture(WebDriver driver, String name) {
-		if (!FrameworkConstants.SCREENSHOTS_ENABLED)
+		return capture(driver, name, name);
+	}
+
+	/**
+	 * Captures failure evidence for a status, subject to per-status sampling.
+	 * Returns the path the evidence is (or will shortly be) written to.
+	 *
+	 * @param driver WebDriver
+	 * @param status sampling key, e.g. the UPC status
+	 * @param name   file prefix
+	 * @return evidence path, or null if disabled, sampled out or failed
+	 */
+	public static String capture(WebDriver driver, String status, String name) {
+		if (!FrameworkConstants.SCREENSHOTS_ENABLED || !sampled(status))
 			return null;
 
+		long t = StageMetrics.start();
 		try {
 			Files.createDirectories(Paths.get(FrameworkConstants.SCREENSHOT_DIR));
 
 			String safe = (name == null) ? "SHOT" : name.replaceAll("[^a-zA-Z0-9._-]", "_");
-			String filePath = FrameworkConstants.SCREENSHOT_DIR + "/" + safe + "_" + System.currentTimeMillis()
-					+ ".png";
+			String base = FrameworkConstants.SCREENSHOT_DIR + "/" + safe + "_" + System.currentTimeMillis();
+			String mode = FrameworkConstants.SCREENSHOT_MODE;
 
-			File src = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
-			Files.copy(src.toPath(), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING);
+			String filePath;
+			boolean queued = true;
+			if ("png".equals(mode)) {
+				filePath = base + ".png";
+				File src = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
+				Files.copy(src.toPath(), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING);
+			} else if ("html".equals(mode)) {
+				filePath = base + ".html.gz";
+				String html = driver.getPageSource();
+				queued = submit(filePath, () -> writeGzip(Paths.get(filePath), html));
+			} else {
+				// Without DevTools only the WebDriver PNG exists; name the file for what it holds.
+				boolean cdp = driver instanceof HasCdp;
+				String format = !cdp ? "png" : "webp".equals(mode) ? "webp" : "jpeg";
+				filePath = base + "." + (format.equals("jpeg") ? "jpg" : format);
+				String data = cdp ? captureLossy((HasCdp) driver, format)
+						: ((TakesScreenshot) driver).getScreenshotAs(OutputType.BASE64);
+				queued = submit(filePath, () -> Files.write(Paths.get(filePath), Base64.getDecoder().decode(data)));
+			}
 
+			if (!queued) {
+				StageMetrics.record(StageMetrics.Stage.SCREENSHOT, "dropped", t);
+				return null;
+			}
+			StageMetrics.record(StageMetrics.Stage.SCREENSHOT, "ok", t);
 			return filePath;
 		} catch (Exception e) {
+			StageMetrics.record(StageMetrics.Stage.SCREENSHOT, "error", t);
 			return null;
 		}
 	}
+
+	/**
+	 * Waits until queued evidence is written (end of run / shutdown hook).
+	 *
+	 * @param timeoutMs maximum wait
+	 */
+	public static void awaitPending(long timeoutMs) {
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		while ((WRITER.getActiveCount() > 0 || !WRITER.getQueue().isEmpty())
+				&& System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		long dropped = DROPPED.get();
+		if (dropped > 0)
+			System.out.println("Screenshot writer dropped " + dropped + " capture(s) (queue full).");
+	}
+
+	/** First N per status, then 1 in M (M <= 0: none after the first N). */
+	private static boolean sampled(String status) {
+		long n = SEEN.computeIfAbsent(String.valueOf(status), k -> new AtomicLong()).incrementAndGet();
+		int first = RuntimeControls.screenshotSampleFirst();
+		int every = RuntimeControls.screenshotSampleEvery();
+		if (first < 0 || n <= first)
+			return true;
+		return every > 0 && (n - first) % every == 0;
+	}
+
+	/** Viewport-clipped, scaled JPEG/WebP via DevTools; returns base64 data. */
+	private static String captureLossy(HasCdp driver, String format) {
+		Map<String, Object> clip = new HashMap<>();
+		clip.put("x", 0);
+		clip.put("y", 0);
+		clip.put("width", FrameworkConstants.WINDOW_WIDTH);
+		clip.put("height", FrameworkConstants.SCREENSHOT_CLIP_HEIGHT);
+		clip.put("scale", FrameworkConstants.SCREENSHOT_SCALE);
+
+		Map<String, Object> params = new HashMap<>();
+		params.put("format", format);
+		params.put("quality", FrameworkConstants.SCREENSHOT_QUALITY);
+		params.put("clip", clip);
+		params.put("captureBeyondViewport", false);
+
+		Map<String, Object> result = driver.executeCdpCommand("Page.captureScreenshot", params);
+		return String.valueOf(result.get("data"));
+	}
+
+	private static void writeGzip(Path target, String html) throws IOException {
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target))) {
+			out.write(html.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/** File write executed on the writer thread. */
+	private interface WriteTask {
+		void write() throws IOException;
+	}
+
+	/** Queues a write; drops it (instead of blocking the worker) when the queue is full. */
+	private static boolean submit(String filePath, WriteTask task) {
+		try {
+			WRITER.execute(() -> {
+				try {
+					task.write();
+				} catch (IOException e) {
+					System.out.println("Screenshot write failed: " + filePath + " | " + e.getMessage());
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			DROPPED.incrementAndGet();
+			return false;
+		}
+	}
+
+	private static ThreadPoolExecutor newWriter() {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY), r -> {
+					Thread t = new Thread(r, "screenshot-writer");
+					t.setDaemon(true);
+					return t;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
 }
@@ -0,0 +1,226 @@
+package framework.utils;
+
+import framework.config.FrameworkConstants;
+import framework.pages.ProductSearchPage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Orders the work list by business value so a run that is cut off (CI
+ * timeout) has already refreshed the items that matter most.
+ * upc.priority.policy is a comma-separated list of criteria, applied in
+ * order; ties keep input order:
+ *
+ * <ul>
+ * <li>column - explicit priority, higher first: a second column in the UPC
+ * file ("upc,priority") or upc.priority.file with the same format;</li>
+ * <li>never_scraped - UPCs without a previous result first;</li>
+ * <li>in_stock - UPCs that were add-to-cart present and not out of stock
+ * last time first;</li>
+ * <li>price - highest last known price first;</li>
+ * <li>changed - most recently changed (status, price or stock) first.</li>
+ * </ul>
+ *
+ * <p>History comes from the result CSVs (results_batch_*.csv) under
+ * upc.priority.history.dir, read oldest run first (by the timestamp in the
+ * file name) and matched by GTIN-14 key.
+ */
+public final class UpcPriority {
+
+	private static final String STATUS_PRESENT = "ADD TO CART PRESENT";
+
+	/** Last known state of one UPC. */
+	static final class History {
+		String status;
+		String price;
+		String stock;
+		boolean inStock;
+		double priceValue = -1;
+		/** Position (1 = oldest) of the result file that last showed a change. */
+		long lastChanged;
+	}
+
+	private UpcPriority() {
+	}
+
+	/**
+	 * Returns the UPCs ordered by upc.priority.policy (the input list itself if
+	 * no policy is configured).
+	 *
+	 * @param upcs pending UPCs in input order
+	 * @return prioritized list
+	 */
+	public static List<String> order(List<String> upcs) {
+		String policy = FrameworkConstants.UPC_PRIORITY_POLICY;
+		if (policy.isEmpty() || upcs.size() < 2)
+			return upcs;
+
+		List<String> criteria = Arrays.stream(policy.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+				.collect(Collectors.toList());
+		Map<String, Double> explicit = criteria.contains("column") ? loadExplicit() : new HashMap<>();
+		Map<String, History> history = criteria.stream().anyMatch(c -> !c.equals("column"))
+				? loadHistory(Paths.get(FrameworkConstants.UPC_PRIORITY_HISTORY_DIR))
+				: new HashMap<>();
+
+		Comparator<String> order = (a, b) -> 0;
+		for (String c : criteria)
+			order = order.thenComparing(criterion(c, explicit, history));
+
+		List<String> sorted = new ArrayList<>(upcs);
+		sorted.sort(order); // stable: input order breaks ties
+		ReportLogger.info("UPC priority (" + policy + "): " + sorted.size() + " UPCs, " + history.size()
+				+ " with history, " + explicit.size() + " explicit priorities");
+		return sorted;
+	}
+
+	private static Comparator<String> criterion(String name, Map<String, Double> explicit,
+			Map<String, History> history) {
+		switch (name) {
+		case "column":
+			return Comparator.comparingDouble(u -> -explicit.getOrDefault(Gtin.key(u), 0.0));
+		case "never_scraped":
+			return Comparator.comparingInt(u -> history.containsKey(Gtin.key(u)) ? 1 : 0);
+		case "in_stock":
+			return Comparator.comparingInt(u -> {
+				History h = history.get(Gtin.key(u));
+				return (h != null && h.inStock) ? 0 : 1;
+			});
+		case "price":
+			return Comparator.comparingDouble(u -> {
+				History h = history.get(Gtin.key(u));
+				return h == null ? 1 : -h.priceValue;
+			});
+		case "changed":
+			return Comparator.comparingLong(u -> {
+				History h = history.get(Gtin.key(u));
+				return h == null ? 0 : -h.lastChanged;
+			});
+		default:
+			throw new RuntimeException("Unknown upc.priority.policy criterion: " + name
+					+ " (expected column, never_scraped, in_stock, price, changed)");
+		}
+	}
+
+	/** Priorities from the second column of the UPC file and from upc.priority.file (the latter wins). */
+	private static Map<String, Double> loadExplicit() {
+		Map<String, Double> out = new HashMap<>();
+		readPriorities(Paths.get(FrameworkConstants.UPC_FILE), out);
+		if (!FrameworkConstants.UPC_PRIORITY_FILE.isEmpty())
+			readPriorities(Paths.get(FrameworkConstants.UPC_PRIORITY_FILE), out);
+		return out;
+	}
+
+	private static void readPriorities(Path p, Map<String, Double> out) {
+		if (!Files.exists(p))
+			return;
+		try {
+			for (String line : Files.readAllLines(p)) {
+				String[] cols = FileUtils.columns(line);
+				if (cols.length < 2)
+					continue;
+				try {
+					out.put(Gtin.key(cols[0]), Double.parseDouble(cols[1]));
+				} catch (NumberFormatException ignored) {
+					// header or free text
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read UPC priorities: " + p, e);
+		}
+	}
+
+	/**
+	 * Loads the last known state per GTIN-14 key from previous result CSVs.
+	 *
+	 * @param dir directory with results_batch_*.csv files
+	 * @return history by key
+	 */
+	static Map<String, History> loadHistory(Path dir) {
+		Map<String, History> out = new HashMap<>();
+		if (!Files.isDirectory(dir))
+			return out;
+		List<Path> files;
+		try (Stream<Path> s = Files.list(dir)) {
+			files = s.filter(p -> {
+				String n = p.getFileName().toString();
+				return n.startsWith("results_batch_") && n.endsWith(".csv");
+			}).sorted(FileUtils.byRunTimestamp()).collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to list: " + dir, e);
+		}
+
+		long at = 0;
+		for (Path f : files) {
+			at++;
+			try (BufferedReader br = Files.newBufferedReader(f)) {
+				String header = br.readLine();
+				if (header == null)
+					continue;
+				List<String> names = Arrays.asList(header.split(","));
+				int upcCol = names.indexOf("UPC");
+				int statusCol = names.indexOf("Status");
+				int priceCol = names.indexOf("ProductDetailPrice");
+				int stockCol = names.indexOf("Stock");
+				int oosCol = names.indexOf("OutOfStock");
+				String line;
+				while ((line = br.readLine()) != null) {
+					if (line.isEmpty())
+						continue;
+					String[] v = CSVUtils.parseRow(line);
+					String upc = value(v, upcCol);
+					if (upc.isEmpty())
+						continue;
+					observe(out.computeIfAbsent(Gtin.key(upc), k -> new History()), value(v, statusCol),
+							value(v, priceCol), value(v, stockCol), value(v, oosCol), at);
+				}
+			} catch (IOException e) {
+				ReportLogger.info("UPC priority: skipping unreadable " + f + ": " + e.getMessage());
+			}
+		}
+		return out;
+	}
+
+	private static void observe(History h, String status, String price, String stock, String outOfStock, long at) {
+		boolean changed = h.status != null
+				&& (!status.equals(h.status) || !price.equals(h.price) || !stock.equals(h.stock));
+		if (changed)
+			h.lastChanged = at;
+		h.status = status;
+		h.price = price;
+		h.stock = stock;
+		h.inStock = STATUS_PRESENT.equals(status) && !ProductSearchPage.isOutOfStock(stock, outOfStock);
+		h.priceValue = parsePrice(price);
+	}
+
+	/** First decimal number in a price text such as "$1,234.50 / EA", or -1. */
+	static double parsePrice(String text) {
+		StringBuilder sb = new StringBuilder();
+		for (char c : text.toCharArray()) {
+			if ((c >= '0' && c <= '9') || (c == '.' && sb.indexOf(".") < 0))
+				sb.append(c);
+			else if (c != ',' && sb.length() > 0)
+				break;
+		}
+		try {
+			return sb.length() == 0 ? -1 : Double.parseDouble(sb.toString());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static String value(String[] v, int col) {
+		return (col < 0 || col >= v.length || v[col] == null) ? "" : v[col].trim();
+	}
+}
@@ -8,16 +8,29 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 import java.time.Duration;
 
 /**
- * Central explicit-wait utilities and safe interaction helpers.
+ * Central explicit-wait utilities and safe interaction helpers. Every wait is
+ * capped by the current thread's {@link Deadline}.
  */
 public final class WaitUtils {
 
 	private WaitUtils() {
 	}
 
-	/** Creates a WebDriverWait with the given timeout. */
+	/** Creates a WebDriverWait with the given timeout, capped by the current deadline. */
 	public static WebDriverWait wait(WebDriver driver, long seconds) {
-		return new WebDriverWait(driver, Duration.ofSeconds(seconds));
+		return new WebDriverWait(driver, Deadline.current().cap(Duration.ofSeconds(seconds)));
+	}
+
+	/** Sleeps for ms, cut short by the current deadline. */
+	public static void pause(long ms) {
+		long capped = Math.min(ms, Deadline.current().remainingMillis());
+		if (capped <= 0)
+			return;
+		try {
+			Thread.sleep(capped);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
 
 	/** Waits for visibility of an element and returns it. */
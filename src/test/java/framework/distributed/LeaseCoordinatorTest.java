@@ -0,0 +1,121 @@
+package framework.distributed;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/** Lease bookkeeping and line framing of {@link LeaseCoordinator#dispatch(String)}, without a socket. */
+public class LeaseCoordinatorTest {
+
+	private static final long TTL_MS = 60000;
+
+	private final List<String[]> persisted = new ArrayList<>();
+
+	private LeaseCoordinator coordinator(int leaseSize, List<String> upcs, String... done) {
+		persisted.clear();
+		return new LeaseCoordinator(upcs, new HashSet<>(Arrays.asList(done)), leaseSize, TTL_MS,
+				(upc, row) -> persisted.add(new String[] { upc, row }));
+	}
+
+	/** Lease id of a "LEASE id upc..." reply. */
+	private static long id(String reply) {
+		Assert.assertTrue(reply.startsWith("LEASE "), reply);
+		return Long.parseLong(reply.split(" ")[1]);
+	}
+
+	@Test
+	public void leasesInInputOrderSkippingDoneAndDuplicateSpellings() {
+		LeaseCoordinator c = coordinator(2,
+				Arrays.asList("012345678905", "00012345678905", "036000291452", "042100005264", "096385074"),
+				"0042100005264");
+		Assert.assertEquals(c.dispatch("LEASE w1"), "LEASE 1 012345678905 036000291452");
+		Assert.assertEquals(c.dispatch("LEASE w2"), "LEASE 2 096385074");
+		Assert.assertEquals(c.dispatch("LEASE w3"), "WAIT " + LeaseCoordinator.WAIT_MS);
+	}
+
+	@Test
+	public void resultsFinishLeaseAndQueue() {
+		LeaseCoordinator c = coordinator(5, Arrays.asList("012345678905", "036000291452"));
+		long lease = id(c.dispatch("LEASE w1"));
+		Assert.assertEquals(c.dispatch("RESULT " + lease + " 012345678905 \"012345678905\",\"YES\""), "OK");
+		Assert.assertEquals(c.dispatch("LEASE w2"), "WAIT " + LeaseCoordinator.WAIT_MS);
+		// Reported in another GTIN spelling: still the same UPC of the lease.
+		Assert.assertEquals(c.dispatch("RESULT " + lease + " 00036000291452 \"row\""), "OK");
+		Assert.assertEquals(c.dispatch("LEASE w2"), "DONE");
+		Assert.assertEquals(persisted.size(), 2);
+	}
+
+	@Test
+	public void duplicateResultIsNotPersistedTwice() {
+		LeaseCoordinator c = coordinator(5, Arrays.asList("012345678905", "036000291452"));
+		long lease = id(c.dispatch("LEASE w1"));
+		Assert.assertEquals(c.dispatch("RESULT " + lease + " 012345678905 \"a\""), "OK");
+		Assert.assertEquals(c.dispatch("RESULT " + lease + " 0012345678905 \"b\""), "DUPLICATE");
+		Assert.assertEquals(persisted.size(), 1);
+	}
+
+	@Test
+	public void releaseRequeuesOnlyUnreportedUpcs() {
+		LeaseCoordinator c = coordinator(3, Arrays.asList("012345678905", "036000291452", "042100005264"));
+		long lease = id(c.dispatch("LEASE w1"));
+		c.dispatch("RESULT " + lease + " 036000291452 \"row\"");
+		Assert.assertEquals(c.dispatch("RELEASE " + lease), "OK");
+		Assert.assertEquals(c.dispatch("LEASE w2"), "LEASE 2 012345678905 042100005264");
+		// Releasing an unknown or already released lease is harmless.
+		Assert.assertEquals(c.dispatch("RELEASE " + lease), "OK");
+	}
+
+	@Test
+	public void expiredLeaseIsReissuedAndLateResultStillCounts() {
+		LeaseCoordinator c = coordinator(2, Arrays.asList("012345678905", "036000291452"));
+		long first = id(c.dispatch("LEASE slow"));
+		c.expireLeases(System.currentTimeMillis() + TTL_MS - 5000);
+		Assert.assertEquals(c.dispatch("LEASE w2"), "WAIT " + LeaseCoordinator.WAIT_MS, "not expired yet");
+
+		c.expireLeases(System.currentTimeMillis() + TTL_MS + 1);
+		long second = id(c.dispatch("LEASE w2"));
+		Assert.assertNotEquals(second, first);
+
+		// The slow worker reports after all: accepted once, the reissued copy becomes a duplicate.
+		Assert.assertEquals(c.dispatch("RESULT " + first + " 012345678905 \"late\""), "OK");
+		Assert.assertEquals(c.dispatch("RESULT " + second + " 012345678905 \"again\""), "DUPLICATE");
+		Assert.assertEquals(c.dispatch("RESULT " + second + " 036000291452 \"row\""), "OK");
+		Assert.assertEquals(c.dispatch("LEASE w3"), "DONE");
+		Assert.assertEquals(persisted.size(), 2);
+	}
+
+	@Test
+	public void rowWithSpacesArrivesIntact() {
+		LeaseCoordinator c = coordinator(1, Collections.singletonList("012345678905"));
+		long lease = id(c.dispatch("LEASE w1"));
+		String row = "\"012345678905\",\"YES\",\"https://x.test/a b\",\"ADD TO CART PRESENT\",\"Two  spaces, comma\"";
+		Assert.assertEquals(c.dispatch("RESULT " + lease + " 012345678905 " + row), "OK");
+		Assert.assertEquals(persisted.get(0)[0], "012345678905");
+		Assert.assertEquals(persisted.get(0)[1], row);
+	}
+
+	@Test
+	public void upcWithSpacesTravelsAsOneToken() {
+		LeaseCoordinator c = coordinator(5, Arrays.asList("0123 4567", "036000291452"));
+		String reply = c.dispatch("LEASE w1");
+		Assert.assertEquals(reply, "LEASE 1 0123_4567 036000291452");
+		Assert.assertEquals(reply.split(" ").length, 4);
+	}
+
+	@Test
+	public void malformedRequestsGetErrors() {
+		LeaseCoordinator c = coordinator(1, Collections.singletonList("012345678905"));
+		Assert.assertEquals(c.dispatch(""), "ERROR unknown command");
+		Assert.assertEquals(c.dispatch("HELLO"), "ERROR unknown command");
+		Assert.assertEquals(c.dispatch("RESULT 1"), "ERROR ArrayIndexOutOfBoundsException");
+		Assert.assertEquals(c.dispatch("RESULT x 012345678905 row"), "ERROR NumberFormatException");
+		Assert.assertEquals(c.dispatch("RELEASE"), "ERROR ArrayIndexOutOfBoundsException");
+		Assert.assertTrue(persisted.isEmpty());
+		Assert.assertEquals(c.dispatch("LEASE"), "LEASE 1 012345678905");
+	}
+}
@@ -0,0 +1,106 @@
+package framework.distributed;
+
+import framework.utils.CSVUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** Merge of shard result CSVs and checkpoints on a temporary directory. */
+public class ShardMergerTest {
+
+	private Path dir;
+
+	@BeforeMethod
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("shard-merge");
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void deleteDir() throws IOException {
+		try (Stream<Path> s = Files.walk(dir)) {
+			s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private static String row(String upc, String status) {
+		return CSVUtils.formatFull(upc, "NA", "", status, "", null, null, null, null, null, null, null, null, null,
+				null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+	}
+
+	private Path csv(String name, long mtime, String... rows) throws IOException {
+		Path f = dir.resolve(name);
+		StringBuilder sb = new StringBuilder(CSVUtils.HEADER).append('\n');
+		for (String r : rows)
+			sb.append(r).append('\n');
+		Files.writeString(f, sb);
+		Files.setLastModifiedTime(f, FileTime.fromMillis(mtime));
+		return f;
+	}
+
+	@Test
+	public void latestRunWinsRegardlessOfModificationTime() throws IOException {
+		// Artifact download gave the older run the newer modification time.
+		csv("results_batch_1_shard0of2_20260102_080000.csv", 1000L, row("012345678905", "NEW"));
+		csv("results_batch_1_shard1of2_20260102_080000.csv", 1000L, row("036000291452", "ONLY"));
+		csv("results_batch_2_shard0of2_20260101_080000.csv", 9000L, row("012345678905", "OLD"),
+				row("042100005264", "KEPT"));
+		csv("results_batch_1_20260103_080000.csv", 9000L, row("012345678905", "UNSHARDED"));
+
+		Path merged = dir.resolve("out/merged.csv");
+		Assert.assertEquals(ShardMerger.mergeCsvs(dir, merged), 3);
+		List<String> lines = Files.readAllLines(merged);
+		Assert.assertEquals(lines.get(0), CSVUtils.HEADER);
+		Assert.assertEquals(new HashSet<>(lines.subList(1, lines.size())), new HashSet<>(
+				Arrays.asList(row("012345678905", "NEW"), row("036000291452", "ONLY"), row("042100005264", "KEPT"))));
+	}
+
+	@Test
+	public void batchNumberOrdersWithinOneRun() throws IOException {
+		csv("results_batch_10_shard0of2_20260101_080000.csv", 1000L, row("012345678905", "BATCH10"));
+		csv("results_batch_9_shard0of2_20260101_080000.csv", 9000L, row("012345678905", "BATCH9"));
+
+		Path merged = dir.resolve("merged.csv");
+		Assert.assertEquals(ShardMerger.mergeCsvs(dir, merged), 1);
+		Assert.assertEquals(Files.readAllLines(merged).get(1), row("012345678905", "BATCH10"));
+	}
+
+	@Test
+	public void gtinSpellingsMergeIntoOneRow() throws IOException {
+		csv("results_batch_1_shard0of2_20260101_080000.csv", 0L, row("012345678905", "UPC-A"));
+		csv("results_batch_1_shard1of2_20260102_080000.csv", 0L, row("00012345678905", "GTIN-14"));
+
+		Path merged = dir.resolve("merged.csv");
+		Assert.assertEquals(ShardMerger.mergeCsvs(dir, merged), 1);
+		Assert.assertEquals(Files.readAllLines(merged).get(1), row("00012345678905", "GTIN-14"));
+	}
+
+	@Test
+	public void noShardFilesWritesNothing() {
+		Path merged = dir.resolve("merged.csv");
+		Assert.assertEquals(ShardMerger.mergeCsvs(dir, merged), 0);
+		Assert.assertFalse(Files.exists(merged));
+	}
+
+	@Test
+	public void checkpointsAreUnioned() throws IOException {
+		Path target = dir.resolve("checkpoint.txt");
+		Files.write(target, Arrays.asList("012345678905"));
+		Files.write(dir.resolve("checkpoint_shard0of2.txt"), Arrays.asList("012345678905", " 036000291452 ", ""));
+		Files.write(dir.resolve("checkpoint_shard1of2.txt"), Arrays.asList("042100005264"));
+
+		Assert.assertEquals(ShardMerger.mergeCheckpoints(dir, target), 3);
+		Assert.assertEquals(new HashSet<>(Files.readAllLines(target)),
+				new HashSet<>(Arrays.asList("012345678905", "036000291452", "042100005264")));
+	}
+}
@@ -0,0 +1,59 @@
+package framework.distributed;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Shard assignment by FNV-1a over the GTIN-14 key. */
+public class ShardingTest {
+
+	@Test
+	public void assignmentIsPinned() {
+		// FNV-1a of "00012345678905" / "00036000291452"; a change here moves UPCs
+		// between the shards of a running campaign.
+		Assert.assertEquals(Sharding.shardOf("012345678905", 4), 1);
+		Assert.assertEquals(Sharding.shardOf("036000291452", 7), 4);
+	}
+
+	@Test
+	public void everySpellingLandsInOneShard() {
+		for (int count : new int[] { 2, 3, 8, 64 }) {
+			int shard = Sharding.shardOf("012345678905", count);
+			Assert.assertEquals(Sharding.shardOf("0012345678905", count), shard);
+			Assert.assertEquals(Sharding.shardOf("00012345678905", count), shard);
+			Assert.assertEquals(Sharding.shardOf(" 012345678905 ", count), shard);
+		}
+	}
+
+	@Test
+	public void singleShardIsZero() {
+		Assert.assertEquals(Sharding.shardOf("012345678905", 1), 0);
+		Assert.assertEquals(Sharding.shardOf("012345678905", 0), 0);
+	}
+
+	@Test
+	public void shardsAreInRangeAndBalanced() {
+		int count = 4;
+		int[] sizes = new int[count];
+		for (int i = 0; i < 20000; i++) {
+			int shard = Sharding.shardOf(String.format("%012d", 100000000000L + i * 7919L), count);
+			Assert.assertTrue(shard >= 0 && shard < count, "shard " + shard);
+			sizes[shard]++;
+		}
+		for (int size : sizes)
+			Assert.assertTrue(size > 4000 && size < 6000, Arrays.toString(sizes));
+	}
+
+	@Test
+	public void unshardedRunKeepsEveryUpc() {
+		// The unit profile runs with shard.count unset.
+		Assert.assertFalse(Sharding.isSharded());
+		List<String> upcs = new ArrayList<>(Arrays.asList("012345678905", "036000291452"));
+		Assert.assertSame(Sharding.filter(upcs), upcs);
+		Assert.assertEquals(Sharding.suffix(), "");
+		Assert.assertTrue(Sharding.inCurrentShard("012345678905"));
+	}
+}
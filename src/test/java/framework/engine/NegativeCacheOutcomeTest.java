@@ -0,0 +1,38 @@
+package framework.engine;
+
+import framework.pages.ProductSearchPage.SearchOutcome;
+import framework.utils.NegativeCache;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Only a search that ended on the no-results banner may be remembered as a
+ * negative-cache miss. Run with -Punit (cache file under target/unit-tests).
+ */
+public class NegativeCacheOutcomeTest {
+
+	@Test
+	public void timeoutDoesNotRecordMiss() {
+		String upc = "036000291452";
+		Assert.assertFalse(UpcProcessor.rememberMiss(upc, SearchOutcome.TIMEOUT, false));
+		Assert.assertFalse(UpcProcessor.rememberMiss(upc, SearchOutcome.TIMEOUT, true));
+		Assert.assertFalse(NegativeCache.contains(upc));
+	}
+
+	@Test
+	public void fallthroughWithoutBannerDoesNotRecordMiss() {
+		String upc = "012345678905";
+		Assert.assertFalse(UpcProcessor.rememberMiss(upc, SearchOutcome.NO_PRODUCTS_FOUND, false));
+		Assert.assertFalse(NegativeCache.contains(upc));
+	}
+
+	@Test
+	public void bannerRecordsMiss() {
+		String upc = "042100005264";
+		Assert.assertTrue(NegativeCache.isEnabled());
+		Assert.assertTrue(UpcProcessor.rememberMiss(upc, SearchOutcome.NO_PRODUCTS_FOUND, true));
+		Assert.assertTrue(NegativeCache.contains(upc));
+		NegativeCache.recordFound(upc);
+		Assert.assertFalse(NegativeCache.contains(upc));
+	}
+}
@@ -0,0 +1,111 @@
+package framework.engine;
+
+import framework.pages.ProductPageParser;
+import framework.pages.ProductSearchPage.AddToCartState;
+import framework.utils.Deadline;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+/** Single-flight claims of the in-run product cache: owner, waiter and a waiter that gives up. */
+public class ProductCacheTest {
+
+	private final ExecutorService pool = Executors.newCachedThreadPool();
+
+	@AfterClass
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void firstCallerOwnsTheKey() {
+		String key = ProductCache.urlKey("https://shop.example.com/detail/owner");
+		ProductCache.Claim claim = ProductCache.claim(key);
+		Assert.assertTrue(claim.isOwner());
+		Assert.assertEquals(claim.ownedKey, key);
+		Assert.assertNull(claim.capture);
+
+		ProductCapture c = capture("036000291452", "KN-1");
+		Assert.assertSame(ProductCache.publishing(claim.ownedKey, () -> c).get(), c);
+		ProductCache.Claim again = ProductCache.claim(key);
+		Assert.assertFalse(again.isOwner());
+		Assert.assertSame(again.capture, c);
+		Assert.assertSame(ProductCache.peek(ProductCache.itemKey("KN-1")), c);
+		Assert.assertSame(ProductCache.peek(ProductCache.upcKey("0036000291452")), c);
+	}
+
+	@Test
+	public void waiterReceivesOwnersCapture() throws Exception {
+		String key = ProductCache.urlKey("https://shop.example.com/detail/waiter");
+		ProductCache.Claim owner = ProductCache.claim(key);
+		Assert.assertTrue(owner.isOwner());
+
+		Future<ProductCache.Claim> waiter = pool.submit(() -> ProductCache.claim(key));
+		Thread.sleep(200);
+		Assert.assertFalse(waiter.isDone(), "waiter must block while the owner extracts");
+
+		ProductCapture c = capture("012345678905", "KN-2");
+		ProductCache.publishing(owner.ownedKey, () -> c).get();
+		ProductCache.Claim got = waiter.get(5, TimeUnit.SECONDS);
+		Assert.assertFalse(got.isOwner());
+		Assert.assertSame(got.capture, c);
+	}
+
+	@Test
+	public void timedOutWaiterLeavesKeyToOwner() throws Exception {
+		String key = ProductCache.urlKey("https://shop.example.com/detail/slow-owner");
+		ProductCache.Claim owner = ProductCache.claim(key);
+
+		ProductCache.Claim gaveUp;
+		Deadline previous = Deadline.enter(Deadline.of(100));
+		try {
+			gaveUp = ProductCache.claim(key);
+		} finally {
+			Deadline.restore(previous);
+		}
+		Assert.assertFalse(gaveUp.isOwner());
+		Assert.assertNull(gaveUp.capture);
+		Assert.assertNull(gaveUp.ownedKey);
+
+		// What UpcProcessor does with the non-owned key after its own extraction or failure.
+		ProductCapture own = capture("042100005264", "KN-3");
+		ProductCache.publishing(gaveUp.ownedKey, () -> own).get();
+		ProductCache.abandon(gaveUp.ownedKey);
+		Assert.assertNull(ProductCache.peek(key), "the owner's claim is still pending");
+
+		Future<ProductCache.Claim> waiter = pool.submit(() -> ProductCache.claim(key));
+		Thread.sleep(200);
+		Assert.assertFalse(waiter.isDone(), "later workers still wait on the owner");
+
+		ProductCapture c = capture("042100005264", "KN-3");
+		ProductCache.publishing(owner.ownedKey, () -> c).get();
+		Assert.assertSame(waiter.get(5, TimeUnit.SECONDS).capture, c);
+		Assert.assertSame(ProductCache.peek(key), c);
+	}
+
+	@Test
+	public void failedOwnerHandsTheKeyOn() {
+		String key = ProductCache.urlKey("https://shop.example.com/detail/failing");
+		ProductCache.Claim owner = ProductCache.claim(key);
+		try {
+			ProductCache.publishing(owner.ownedKey, () -> {
+				throw new IllegalStateException("page gone");
+			}).get();
+			Assert.fail("extraction failure must propagate");
+		} catch (IllegalStateException expected) {
+		}
+		Assert.assertTrue(ProductCache.claim(key).isOwner());
+	}
+
+	private static ProductCapture capture(String upc, String itemNumber) {
+		String html = "<div class=\"product-number\">Item #: <span>" + itemNumber + "</span></div>";
+		return new ProductCapture(upc, "https://shop.example.com/detail/" + itemNumber, AddToCartState.ENABLED,
+				false, ProductPageParser.parse(html, ""));
+	}
+}
@@ -0,0 +1,141 @@
+package framework.fakestore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded product catalog behind {@link FakeWebstore}. The same seed always
+ * yields the same products, UPCs, prices and stock, so scrape results against
+ * the fake store are reproducible.
+ */
+public final class FakeCatalog {
+
+	private static final String[] BRANDS = { "Acme", "Globex", "Initech", "Umbrella", "Stark", "Wayne" };
+	private static final String[] COLORS = { "Black", "White", "Red", "Blue", "Clear", "Assorted" };
+	private static final String[] NOUNS = { "Widget", "Gadget", "Sprocket", "Lamp", "Bottle", "Holder", "Kit" };
+
+	/** One product as rendered on the PDP. */
+	public static final class Product {
+		public final String id;
+		public final String upc;
+		public final String name;
+		public final String itemNumber;
+		public final String vendorItemNo;
+		public final String casePack;
+		public final String description;
+		public final String price;
+		public final String msrp;
+		public final int stock;
+		/** ENABLED, DISABLED or MISSING add-to-cart button. */
+		public final String buyButton;
+		public final boolean hasVariants;
+		public final boolean hasSpecs;
+		public final String brand;
+		public final String color;
+		public final String year;
+
+		Product(Random r, int index, String upc) {
+			this.id = String.format("p%06d", index);
+			this.upc = upc;
+			this.brand = BRANDS[r.nextInt(BRANDS.length)];
+			this.color = COLORS[r.nextInt(COLORS.length)];
+			this.name = brand + " " + NOUNS[r.nextInt(NOUNS.length)] + " " + (100 + r.nextInt(900));
+			this.itemNumber = "KS-" + (10000 + index);
+			this.vendorItemNo = "V-" + (1000 + r.nextInt(9000));
+			this.casePack = String.valueOf(1 + r.nextInt(24));
+			this.description = "The " + name + " in " + color.toLowerCase() + ". Durable, lightweight and ready to ship.";
+			int cents = 199 + r.nextInt(20000);
+			this.price = String.format("$%d.%02d", cents / 100, cents % 100);
+			int msrpCents = cents + cents / 2;
+			this.msrp = String.format("$%d.%02d", msrpCents / 100, msrpCents % 100);
+			this.stock = r.nextInt(10) < 2 ? 0 : 1 + r.nextInt(500);
+			int b = r.nextInt(20);
+			this.buyButton = b == 0 ? "MISSING" : (stock == 0 ? "DISABLED" : "ENABLED");
+			this.hasVariants = r.nextInt(25) == 0;
+			this.hasSpecs = r.nextInt(10) != 0;
+			this.year = String.valueOf(2010 + r.nextInt(16));
+		}
+	}
+
+	private final List<Product> products = new ArrayList<>();
+	private final Map<String, Product> byUpc = new HashMap<>();
+	private final Map<String, Product> byId = new HashMap<>();
+	private final long seed;
+
+	/**
+	 * Generates a catalog.
+	 *
+	 * @param seed         RNG seed
+	 * @param productCount number of products
+	 */
+	public FakeCatalog(long seed, int productCount) {
+		this.seed = seed;
+		Random r = new Random(seed);
+		for (int i = 0; i < productCount; i++) {
+			String upc;
+			do {
+				upc = randomUpc(r);
+			} while (byUpc.containsKey(upc));
+			Product p = new Product(r, i, upc);
+			products.add(p);
+			byUpc.put(p.upc, p);
+			byId.put(p.id, p);
+		}
+	}
+
+	/** Returns the product for a searched UPC, or null (no results). */
+	public Product findByUpc(String upc) {
+		return upc == null ? null : byUpc.get(upc.trim());
+	}
+
+	/** Returns the product for a PDP id, or null. */
+	public Product findById(String id) {
+		return byId.get(id);
+	}
+
+	/** Returns all products in generation order. */
+	public List<Product> products() {
+		return Collections.unmodifiableList(products);
+	}
+
+	/**
+	 * Builds a scrape input list: count UPCs of which missRatio are valid-looking
+	 * codes that are not in the catalog (NO PRODUCT FOUND).
+	 *
+	 * @param count     number of UPCs
+	 * @param missRatio share of unknown UPCs in [0, 1]
+	 * @return deterministic UPC list
+	 */
+	public List<String> sampleInput(int count, double missRatio) {
+		Random r = new Random(seed ^ 0x5DEECE66DL);
+		List<String> upcs = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			if (r.nextDouble() < missRatio || products.isEmpty()) {
+				String upc;
+				do {
+					upc = randomUpc(r);
+				} while (byUpc.containsKey(upc));
+				upcs.add(upc);
+			} else {
+				upcs.add(products.get(r.nextInt(products.size())).upc);
+			}
+		}
+		return upcs;
+	}
+
+	/** Random 12-digit UPC-A with a valid check digit. */
+	private static String randomUpc(Random r) {
+		StringBuilder sb = new StringBuilder(12);
+		sb.append('8');
+		for (int i = 0; i < 10; i++)
+			sb.append((char) ('0' + r.nextInt(10)));
+		int sum = 0;
+		for (int i = sb.length() - 1, w = 3; i >= 0; i--, w = 4 - w)
+			sum += (sb.charAt(i) - '0') * w;
+		return sb.append((char) ('0' + (10 - sum % 10) % 10)).toString();
+	}
+}
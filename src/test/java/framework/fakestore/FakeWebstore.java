@@ -0,0 +1,514 @@
+package framework.fakestore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded stand-in for the Shopware storefront, for local end-to-end runs and
+ * throughput benchmarks without touching the production site. Serves the same
+ * markup the page objects look for (LoginPage / ProductSearchPage locators):
+ * cookie popup, account menu, login form, search results, PDP with spec table
+ * and an asynchronously loaded buy box, plus no-results, maintenance, CAPTCHA
+ * and offline pages.
+ *
+ * <p>Faults are injected deterministically: each search/PDP request is decided
+ * by a RNG seeded from the store seed, the request key and how often that key
+ * was requested, so a rerun with the same input reproduces the same pages.
+ *
+ * <pre>
+ * FakeWebstore store = new FakeWebstore(new FakeCatalog(42, 20000));
+ * store.setLatency(150, 100);
+ * store.setBlockProbability(0.01);
+ * String baseUrl = store.start(0);   // pass to the engine as -Dbase.url=...
+ * </pre>
+ */
+public final class FakeWebstore {
+
+	private static final String SESSION_COOKIE = "sid";
+	private static final String CONSENT_COOKIE = "consent";
+
+	private final FakeCatalog catalog;
+	private final Map<String, Long> sessions = new ConcurrentHashMap<>();
+	private final Map<String, Integer> requestCounts = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> stats = new ConcurrentHashMap<>();
+
+	private volatile long seed;
+	private volatile long latencyMs;
+	private volatile long jitterMs;
+	private volatile long buyBoxDelayMs = 300;
+	private volatile long searchDelayMs;
+	private volatile long sessionTtlMs;
+	private volatile double errorRate;
+	private volatile double blockProbability;
+	private volatile double maintenanceProbability;
+	private volatile double offlineProbability;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * Creates a store serving the given catalog.
+	 *
+	 * @param catalog seeded catalog
+	 */
+	public FakeWebstore(FakeCatalog catalog) {
+		this.catalog = catalog;
+	}
+
+	/** Sets the seed of the fault/latency RNG (defaults to 0). */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/** Adds baseMs + uniform [0, jitterMs) server-side delay to every page. */
+	public void setLatency(long baseMs, long jitterMs) {
+		this.latencyMs = Math.max(0, baseMs);
+		this.jitterMs = Math.max(0, jitterMs);
+	}
+
+	/** Delay of the async buy-box widget on the PDP (spinner time). */
+	public void setBuyBoxDelay(long ms) {
+		this.buyBoxDelayMs = Math.max(0, ms);
+	}
+
+	/**
+	 * Extra delay of the search results response (slow search backend). The
+	 * browser keeps showing the previous page until it arrives.
+	 */
+	public void setSearchDelay(long ms) {
+		this.searchDelayMs = Math.max(0, ms);
+	}
+
+	/** Sessions expire this long after login; 0 keeps them forever. */
+	public void setSessionTtl(long ms) {
+		this.sessionTtlMs = Math.max(0, ms);
+	}
+
+	/** Probability of an HTTP 500 page on search/PDP requests. */
+	public void setErrorRate(double p) {
+		this.errorRate = p;
+	}
+
+	/** Probability of a CAPTCHA/access denied page on search/PDP requests. */
+	public void setBlockProbability(double p) {
+		this.blockProbability = p;
+	}
+
+	/** Probability of the maintenance page on search/PDP requests. */
+	public void setMaintenanceProbability(double p) {
+		this.maintenanceProbability = p;
+	}
+
+	/** Probability of an offline-style page (title "No internet") on search/PDP requests. */
+	public void setOfflineProbability(double p) {
+		this.offlineProbability = p;
+	}
+
+	/** Returns the served catalog. */
+	public FakeCatalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * Starts the server on 127.0.0.1.
+	 *
+	 * @param port port, or 0 for an ephemeral one
+	 * @return base URL ending with "/"
+	 */
+	public synchronized String start(int port) {
+		try {
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 256);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to start fake webstore on port " + port, e);
+		}
+		AtomicLong seq = new AtomicLong();
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "fakestore-" + seq.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+		return baseUrl();
+	}
+
+	/** Stops the server. */
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			server = null;
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/** Returns the base URL of the running server. */
+	public String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	/** Returns a snapshot of request/fault counters (page kind -> count). */
+	public Map<String, Long> stats() {
+		Map<String, Long> copy = new LinkedHashMap<>();
+		stats.forEach((k, v) -> copy.put(k, v.get()));
+		return copy;
+	}
+
+	private void handle(HttpExchange ex) throws IOException {
+		try {
+			String path = ex.getRequestURI().getPath();
+			Map<String, String> query = parseForm(ex.getRequestURI().getRawQuery());
+			String sid = cookie(ex, SESSION_COOKIE);
+			boolean loggedIn = isLoggedIn(sid);
+
+			sleep(path + "?" + ex.getRequestURI().getRawQuery());
+
+			if (path.equals("/account/login") && "POST".equalsIgnoreCase(ex.getRequestMethod())) {
+				handleLogin(ex);
+			} else if (path.equals("/account/login")) {
+				send(ex, 200, loginPage(loggedIn, false));
+			} else if (path.equals("/account/logout")) {
+				if (sid != null)
+					sessions.remove(sid);
+				redirect(ex, "/", null);
+			} else if (path.equals("/search")) {
+				String term = query.getOrDefault("search", "").trim();
+				if (!loggedIn)
+					redirect(ex, "/account/login", null);
+				else if (!injectFault(ex, "search:" + term)) {
+					pause(searchDelayMs);
+					send(ex, 200, searchPage(term));
+				}
+			} else if (path.startsWith("/detail/")) {
+				FakeCatalog.Product p = catalog.findById(path.substring("/detail/".length()));
+				if (!loggedIn)
+					redirect(ex, "/account/login", null);
+				else if (p == null)
+					send(ex, 404, page("Page not found", false, "<p>The page you requested does not exist.</p>"));
+				else if (!injectFault(ex, "detail:" + p.id))
+					send(ex, 200, detailPage(p));
+			} else if (path.startsWith("/widgets/buybox/")) {
+				FakeCatalog.Product p = catalog.findById(path.substring("/widgets/buybox/".length()));
+				pause(buyBoxDelayMs);
+				send(ex, p == null ? 404 : 200, p == null ? "" : buyBox(p));
+			} else if (path.equals("/")) {
+				send(ex, 200, page("Home", loggedIn, "<p>Welcome to the wholesale storefront.</p>"));
+			} else {
+				send(ex, 404, page("Page not found", loggedIn, "<p>The page you requested does not exist.</p>"));
+			}
+		} catch (RuntimeException e) {
+			send(ex, 500, page("Internal error", false, "<p>" + esc(String.valueOf(e.getMessage())) + "</p>"));
+		} finally {
+			ex.close();
+		}
+	}
+
+	private void handleLogin(HttpExchange ex) throws IOException {
+		Map<String, String> form;
+		try (InputStream in = ex.getRequestBody()) {
+			form = parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+		String email = form.getOrDefault("email", "").trim();
+		String password = form.getOrDefault("password", "");
+		if (email.isEmpty() || password.isEmpty()) {
+			send(ex, 200, loginPage(false, true));
+			return;
+		}
+		String sid = UUID.randomUUID().toString();
+		sessions.put(sid, System.currentTimeMillis());
+		count("login");
+		redirect(ex, "/", SESSION_COOKIE + "=" + sid + "; Path=/; HttpOnly");
+	}
+
+	/** Returns true (and writes the fault page) when this request is selected for a fault. */
+	private boolean injectFault(HttpExchange ex, String key) throws IOException {
+		double roll = roll(key);
+		double edge = offlineProbability;
+		if (roll < edge) {
+			count("fault_offline");
+			send(ex, 200, "<!DOCTYPE html><html><head><title>No internet</title></head>"
+					+ "<body><h1>No internet</h1><p>ERR_INTERNET_DISCONNECTED</p></body></html>");
+			return true;
+		}
+		edge += maintenanceProbability;
+		if (roll < edge) {
+			count("fault_maintenance");
+			send(ex, 503, "<!DOCTYPE html><html><head><title>Maintenance</title></head>"
+					+ "<body><h1>Scheduled maintenance</h1><p>The shop is temporarily unavailable.</p></body></html>");
+			return true;
+		}
+		edge += blockProbability;
+		if (roll < edge) {
+			count("fault_blocked");
+			send(ex, 200, "<!DOCTYPE html><html><head><title>Access denied</title></head><body>"
+					+ "<h1>Access denied</h1><p>We detected unusual traffic from your network.</p>"
+					+ "<div class=\"g-recaptcha\" data-sitekey=\"fake\"></div></body></html>");
+			return true;
+		}
+		edge += errorRate;
+		if (roll < edge) {
+			count("fault_error");
+			send(ex, 500, page("Internal error", true, "<p>Something went wrong. Please try again.</p>"));
+			return true;
+		}
+		count(key.substring(0, key.indexOf(':')));
+		return false;
+	}
+
+	/** Deterministic [0, 1) roll for the n-th request of the key. */
+	private double roll(String key) {
+		int n = requestCounts.merge(key, 1, Integer::sum);
+		return new SplittableRandom(seed * 31 + key.hashCode() * 1_000_003L + n).nextDouble();
+	}
+
+	private void sleep(String key) {
+		long base = latencyMs;
+		long jitter = jitterMs;
+		if (base == 0 && jitter == 0)
+			return;
+		long extra = jitter == 0 ? 0 : new SplittableRandom(seed ^ key.hashCode()).nextLong(jitter);
+		pause(base + extra);
+	}
+
+	private static void pause(long ms) {
+		if (ms <= 0)
+			return;
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean isLoggedIn(String sid) {
+		if (sid == null)
+			return false;
+		Long since = sessions.get(sid);
+		if (since == null)
+			return false;
+		long ttl = sessionTtlMs;
+		if (ttl > 0 && System.currentTimeMillis() - since > ttl) {
+			sessions.remove(sid);
+			count("session_expired");
+			return false;
+		}
+		return true;
+	}
+
+	private void count(String key) {
+		stats.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+	}
+
+	// Region: markup
+
+	/** Full page with header (cookie popup, account menu, search box). */
+	private String page(String title, boolean loggedIn, String body) {
+		StringBuilder sb = new StringBuilder(4096);
+		sb.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>").append(esc(title))
+				.append(" | Kinsey's</title>").append("<style>.hidden{display:none}</style></head><body>");
+
+		sb.append("<div id=\"cookiePopup\" class=\"cookie-popup\"><h2>Welcome to Kinsey's</h2>")
+				.append("<p>We use cookies to run this shop.</p>")
+				.append("<button type=\"button\" onclick=\"document.cookie='").append(CONSENT_COOKIE)
+				.append("=1; path=/';document.getElementById('cookiePopup').className='hidden';\">Accept all</button>")
+				.append("</div>");
+
+		sb.append("<header><form action=\"/search\" method=\"get\" class=\"header-search-form\">")
+				.append("<input id=\"header-main-search-input\" type=\"search\" name=\"search\" autocomplete=\"off\">")
+				.append("</form>");
+		sb.append("<div class=\"account-menu\"><button id=\"accountWidget\" type=\"button\" onclick=\"")
+				.append("var m=document.getElementById('accountMenu');m.className=m.className?'':'hidden';")
+				.append("\">Account</button>");
+		sb.append("<div id=\"accountMenu\" class=\"hidden\" aria-labelledby=\"accountWidget\">");
+		if (loggedIn) {
+			sb.append("<div class=\"account-menu-header\">Welcome back</div>")
+					.append("<div class=\"account-menu-logout\"><a href=\"/account/logout\">Log out</a></div>");
+		} else {
+			sb.append("<div class=\"account-menu-login\"><a href=\"/account/login\">Log in</a></div>");
+		}
+		sb.append("</div></div></header><main>").append(body).append("</main>");
+		sb.append("<script>if(document.cookie.indexOf('").append(CONSENT_COOKIE)
+				.append("=1')>=0){document.getElementById('cookiePopup').className='hidden';}</script>");
+		return sb.append("</body></html>").toString();
+	}
+
+	private String loginPage(boolean loggedIn, boolean failed) {
+		String error = failed ? "<div class=\"alert alert-danger\">Please enter your email and password.</div>" : "";
+		return page("Login", loggedIn, error + "<form method=\"post\" action=\"/account/login\" class=\"login-form\">"
+				+ "<input id=\"loginMail\" type=\"email\" name=\"email\">"
+				+ "<input id=\"loginPassword\" type=\"password\" name=\"password\">"
+				+ "<div class=\"login-submit\"><button type=\"submit\">Log in</button></div></form>");
+	}
+
+	private String searchPage(String term) {
+		FakeCatalog.Product p = catalog.findByUpc(term);
+		if (p == null) {
+			return page("Search", true, "<div class=\"alert alert-info\">No products found for \"" + esc(term)
+					+ "\".</div>");
+		}
+		return page("Search", true, "<div class=\"cms-listing-row\"><div class=\"product-box\">"
+				+ "<div class=\"product-info\"><a class=\"product-name\" href=\"/detail/" + p.id + "\" title=\""
+				+ esc(p.name) + "\">" + esc(p.name) + "</a></div></div></div>");
+	}
+
+	private String detailPage(FakeCatalog.Product p) {
+		StringBuilder sb = new StringBuilder(4096);
+		sb.append("<div class=\"h1 product-name\">").append(esc(p.name)).append("</div>");
+		sb.append("<div class=\"product-number\">Item #: <span>").append(p.itemNumber).append("</span></div>");
+		sb.append("<div class=\"product-upc\"><span>UPC:</span> <span>").append(p.upc).append("</span></div>");
+		sb.append("<div class=\"product-vendor-item-no\"><span>Vendor Item No:</span> <span>").append(p.vendorItemNo)
+				.append("</span></div>");
+		sb.append("<div class=\"product-case-pack\"><span>Case Pack:</span> <span>").append(p.casePack)
+				.append("</span></div>");
+		sb.append("<div class=\"msrp-info\"><span>MSRP Pricing:</span> <span>").append(p.msrp)
+				.append("</span></div>");
+		sb.append("<div id=\"buyBox\" class=\"product-detail-buy\"><div class=\"spinner-border\" role=\"status\">")
+				.append("</div></div>");
+		sb.append("<div class=\"product-detail-description-text\">").append(esc(p.description)).append("</div>");
+
+		if (p.hasSpecs) {
+			Map<String, String> specs = new LinkedHashMap<>();
+			specs.put("Brand Name", p.brand);
+			specs.put("Item UPC/EAN Number", p.upc);
+			specs.put("BulletFeatures", "Durable; Lightweight; " + p.color);
+			specs.put("Catalog Page Number", String.valueOf(1 + Math.abs(p.id.hashCode()) % 400));
+			specs.put("Drop Ship Only", p.stock == 0 ? "Yes" : "No");
+			specs.put("MSRP Price", p.msrp);
+			specs.put("Primary Color", p.color);
+			specs.put("ProhibitedStates", "");
+			specs.put("Vendor Item No.", p.vendorItemNo);
+			specs.put("Year Launched", p.year);
+			specs.put("Case Pack", p.casePack);
+			specs.put("Prop65Applies", "No");
+			sb.append("<table class=\"table product-detail-properties-table\"><tbody>");
+			for (Map.Entry<String, String> e : specs.entrySet()) {
+				sb.append("<tr class=\"properties-row\"><th class=\"properties-label\">").append(esc(e.getKey()))
+						.append(":</th><td class=\"properties-value\">").append(esc(e.getValue())).append("</td></tr>");
+			}
+			sb.append("</tbody></table>");
+		}
+
+		sb.append("<script>fetch('/widgets/buybox/").append(p.id)
+				.append("').then(function(r){return r.text();}).then(function(h){")
+				.append("document.getElementById('buyBox').innerHTML=h;});</script>");
+		return page(p.name, true, sb.toString());
+	}
+
+	/** Async buy-box fragment: price, stock and the add-to-cart form. */
+	private String buyBox(FakeCatalog.Product p) {
+		StringBuilder sb = new StringBuilder(1024);
+		sb.append("<p class=\"product-detail-price\"><span class=\"price customer-price\">").append(p.price)
+				.append("</span></p>");
+		sb.append("<div class=\"product-data\"><span class=\"product-stock\">");
+		if (p.stock > 0)
+			sb.append("<span class=\"stock\">In stock: ").append(p.stock).append("</span>");
+		else
+			sb.append("<span class=\"stock out-of-stock\">Out of stock</span>");
+		sb.append("</span></div>");
+		if (!"MISSING".equals(p.buyButton)) {
+			sb.append("<form id=\"productDetailPageBuyProductForm\" method=\"post\" action=\"/checkout/line-item/add\">");
+			if (p.hasVariants)
+				sb.append("<select name=\"variant\"><option>Small</option><option>Large</option></select>");
+			sb.append("<button type=\"submit\" class=\"btn btn-buy\" title=\"Add to Cart\"")
+					.append("DISABLED".equals(p.buyButton) ? " disabled" : "").append(">Add to Cart</button></form>");
+		}
+		return sb.toString();
+	}
+
+	// Endregion
+
+	private static void send(HttpExchange ex, int status, String html) throws IOException {
+		byte[] body = html.getBytes(StandardCharsets.UTF_8);
+		ex.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		ex.getResponseHeaders().set("Cache-Control", "no-store");
+		ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		if (body.length > 0) {
+			try (OutputStream out = ex.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	private static void redirect(HttpExchange ex, String location, String setCookie) throws IOException {
+		if (setCookie != null)
+			ex.getResponseHeaders().add("Set-Cookie", setCookie);
+		ex.getResponseHeaders().set("Location", location);
+		ex.sendResponseHeaders(302, -1);
+	}
+
+	private static String cookie(HttpExchange ex, String name) {
+		String header = ex.getRequestHeaders().getFirst("Cookie");
+		if (header == null)
+			return null;
+		for (String part : header.split(";")) {
+			String[] kv = part.trim().split("=", 2);
+			if (kv.length == 2 && kv[0].equals(name))
+				return kv[1];
+		}
+		return null;
+	}
+
+	private static Map<String, String> parseForm(String raw) {
+		Map<String, String> map = new HashMap<>();
+		if (raw == null || raw.isEmpty())
+			return map;
+		for (String pair : raw.split("&")) {
+			String[] kv = pair.split("=", 2);
+			map.put(URLDecoder.decode(kv[0], StandardCharsets.UTF_8),
+					kv.length == 2 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "");
+		}
+		return map;
+	}
+
+	private static String esc(String s) {
+		if (s == null)
+			return "";
+		return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	/**
+	 * Runs the store standalone until killed. Args: [port] [seed] [productCount];
+	 * faults via -Dfake.latency.ms, -Dfake.jitter.ms, -Dfake.error.rate,
+	 * -Dfake.block.probability, -Dfake.maintenance.probability,
+	 * -Dfake.offline.probability, -Dfake.session.ttl.ms, -Dfake.buybox.delay.ms,
+	 * -Dfake.search.delay.ms.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+		int products = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+		FakeWebstore store = new FakeWebstore(new FakeCatalog(seed, products));
+		store.setSeed(seed);
+		store.setLatency(Long.getLong("fake.latency.ms", 0), Long.getLong("fake.jitter.ms", 0));
+		store.setBuyBoxDelay(Long.getLong("fake.buybox.delay.ms", 300));
+		store.setSearchDelay(Long.getLong("fake.search.delay.ms", 0));
+		store.setSessionTtl(Long.getLong("fake.session.ttl.ms", 0));
+		store.setErrorRate(Double.parseDouble(System.getProperty("fake.error.rate", "0")));
+		store.setBlockProbability(Double.parseDouble(System.getProperty("fake.block.probability", "0")));
+		store.setMaintenanceProbability(Double.parseDouble(System.getProperty("fake.maintenance.probability", "0")));
+		store.setOfflineProbability(Double.parseDouble(System.getProperty("fake.offline.probability", "0")));
+
+		System.out.println("Fake webstore listening on " + store.start(port) + " (" + products + " products)");
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,45 @@
+package framework.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Worker entries of the /status JSON (status.port=0: no server is started). */
+public class LiveStatusTest {
+
+	private static final String WORKER = "Worker 1";
+
+	@BeforeMethod
+	public void start() {
+		LiveStatus.start(10);
+		LiveStatus.workerStarted(WORKER);
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void finish() {
+		LiveStatus.workerFinished(WORKER, false);
+		LiveStatus.stop();
+	}
+
+	@Test
+	public void busyWorkerShowsItsUpc() {
+		LiveStatus.upcStarted("012345678905");
+		String json = LiveStatus.render();
+		Assert.assertTrue(json.contains("\"name\":\"Worker 1\",\"upc\":\"012345678905\","), json);
+		Assert.assertTrue(json.contains("\"stalled\":false"), json);
+	}
+
+	@Test
+	public void idleWorkerHasNoUpcAndIsNotStalled() {
+		LiveStatus.upcStarted("012345678905");
+		LiveStatus.upcFinished();
+		LiveStatus.upcProcessed("ADD TO CART PRESENT");
+		String json = LiveStatus.render();
+		Assert.assertTrue(json.contains("\"name\":\"Worker 1\",\"upc\":null,\"upcElapsedMs\":0,"), json);
+		Assert.assertTrue(json.contains("\"upcs\":1,"), json);
+		Assert.assertTrue(json.contains("\"stalled\":false"), json);
+		Assert.assertTrue(json.contains("\"processed\":1,"), json);
+		Assert.assertTrue(json.contains("\"remaining\":9,"), json);
+	}
+}
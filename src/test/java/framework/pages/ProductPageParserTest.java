@@ -0,0 +1,131 @@
+package framework.pages;
+
+import framework.pages.ProductPageParser.ParsedProduct;
+import framework.pages.ProductSearchPage.AddToCartState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/** jsoup PDP parsing (extract.mode=html) against a fixture product page. */
+public class ProductPageParserTest {
+
+	private static final String BUTTON = "<button type=\"submit\" class=\"btn btn-buy\" title=\"Add to Cart\">Add to Cart</button>";
+	private static final String CUSTOMER_PRICE = "<span class=\"price customer-price\">$14.25</span>";
+
+	private String pdp;
+
+	@BeforeClass
+	public void loadFixture() throws IOException {
+		try (InputStream in = ProductPageParserTest.class.getResourceAsStream("/fixtures/pdp.html")) {
+			Assert.assertNotNull(in, "fixtures/pdp.html missing from test resources");
+			pdp = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void visibleFields() {
+		ParsedProduct p = parse(pdp);
+		Assert.assertEquals(p.getProductName(), "Trail Water Bottle 750 ml");
+		Assert.assertEquals(p.getItemNumber(), "KN-104522");
+		Assert.assertEquals(p.getProductUPC(), "036000291452");
+		Assert.assertEquals(p.getCasePack(), "12"); // header value wins over the spec row
+		Assert.assertEquals(p.getProductDetailDescription(), "Double-wall insulated bottle with a leak-proof cap.");
+		Assert.assertEquals(p.getStock(), "In stock: 48");
+		Assert.assertNull(p.getOutOfStock());
+	}
+
+	@Test
+	public void hiddenElementsReadAsMissing() {
+		ParsedProduct p = parse(pdp);
+		Assert.assertNull(p.getVendorItemNumber()); // style="display: none"
+		Assert.assertNull(p.getMsrpPricing()); // d-none ancestor
+		Assert.assertFalse(p.isSelectionRequired()); // select with the hidden attribute
+
+		p = parse(pdp.replace("<main>", "<main hidden>"));
+		Assert.assertNull(p.getProductName());
+		Assert.assertNull(p.getBrandName());
+		Assert.assertEquals(p.getAddToCartState(), AddToCartState.MISSING);
+	}
+
+	@Test
+	public void customerPriceFallback() {
+		Assert.assertEquals(parse(pdp).getProductDetailPrice(), "$14.25");
+		Assert.assertEquals(parse(pdp.replace(CUSTOMER_PRICE, "")).getProductDetailPrice(), "$19.99");
+		Assert.assertEquals(parse(pdp.replace(CUSTOMER_PRICE, "<span class=\"price customer-price\"></span>"))
+				.getProductDetailPrice(), "$19.99");
+		Assert.assertEquals(parse(pdp.replace(CUSTOMER_PRICE,
+				"<span class=\"price customer-price\" style=\"visibility:hidden\">$1.00</span>")).getProductDetailPrice(),
+				"$19.99");
+	}
+
+	@Test
+	public void specTable() {
+		ParsedProduct p = parse(pdp);
+		Assert.assertEquals(p.getBrandName(), "Kinsey Outdoor");
+		Assert.assertEquals(p.getItemUpcEanNumber(), "036000291452");
+		Assert.assertEquals(p.getBulletFeatures(), "Durable; Lightweight; Blue");
+		Assert.assertEquals(p.getCatalogPageNumber(), "212");
+		Assert.assertEquals(p.getDropShipOnly(), "No");
+		Assert.assertEquals(p.getMsrpPrice(), "$24.99");
+		Assert.assertEquals(p.getPrimaryColor(), "Blue");
+		Assert.assertEquals(p.getProhibitedStates(), "");
+		Assert.assertEquals(p.getVendorItemNo(), "VX-9931");
+		Assert.assertEquals(p.getYearLaunched(), "2021");
+		Assert.assertEquals(p.getProp65Applies(), "No");
+		Assert.assertNull(p.getProp65CancerHarm());
+
+		// Case pack comes from the spec table only when the header has none.
+		Assert.assertEquals(parse(pdp.replace("<span>  12  </span>", "<span></span>")).getCasePack(), "24");
+
+		ParsedProduct hidden = parse(pdp.replace("<table class=\"table product-detail-properties-table\">",
+				"<table class=\"table product-detail-properties-table d-none\">"));
+		Assert.assertNull(hidden.getBrandName());
+		Assert.assertNull(hidden.getMsrpPrice());
+	}
+
+	@Test
+	public void addToCartStates() {
+		Assert.assertEquals(parse(pdp).getAddToCartState(), AddToCartState.ENABLED);
+		Assert.assertEquals(atc(BUTTON.replace("type=\"submit\"", "type=\"submit\" disabled")),
+				AddToCartState.DISABLED);
+		Assert.assertEquals(atc(BUTTON.replace("type=\"submit\"", "type=\"submit\" aria-disabled=\"true\"")),
+				AddToCartState.DISABLED);
+		Assert.assertEquals(atc(BUTTON.replace("type=\"submit\"", "type=\"submit\" style=\"display:none\"")),
+				AddToCartState.MISSING);
+		Assert.assertEquals(atc(""), AddToCartState.MISSING);
+		Assert.assertEquals(parse(pdp.replace("id=\"productDetailPageBuyProductForm\"", "id=\"notifyForm\""))
+				.getAddToCartState(), AddToCartState.MISSING);
+	}
+
+	@Test
+	public void selectionStates() {
+		Assert.assertTrue(selection("<select name=\"variant\" hidden>", "<select name=\"variant\">"));
+		Assert.assertFalse(selection("<select name=\"variant\" hidden>", "<select name=\"variant\" disabled>"));
+		Assert.assertTrue(selection("<select name=\"variant\" hidden>",
+				"<input type=\"radio\" name=\"size\" value=\"L\"><select name=\"variant\" hidden>"));
+		Assert.assertTrue(selection(">Add to Cart</button>", ">Please select an option</button>"));
+		// A selection is still reported when the button itself is disabled.
+		ParsedProduct p = parse(pdp.replace("<select name=\"variant\" hidden>", "<select name=\"variant\">")
+				.replace(BUTTON, BUTTON.replace("type=\"submit\"", "type=\"submit\" disabled")));
+		Assert.assertEquals(p.getAddToCartState(), AddToCartState.DISABLED);
+		Assert.assertTrue(p.isSelectionRequired());
+	}
+
+	private AddToCartState atc(String button) {
+		return parse(pdp.replace(BUTTON, button)).getAddToCartState();
+	}
+
+	private boolean selection(String target, String replacement) {
+		Assert.assertTrue(pdp.contains(target), target);
+		return parse(pdp.replace(target, replacement)).isSelectionRequired();
+	}
+
+	private static ParsedProduct parse(String html) {
+		return ProductPageParser.parse(html, "https://shop.example.com/detail/104522");
+	}
+}
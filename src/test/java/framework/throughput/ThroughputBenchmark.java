@@ -0,0 +1,436 @@
+package framework.throughput;
+
+import framework.fakestore.FakeCatalog;
+import framework.fakestore.FakeWebstore;
+import framework.utils.CSVUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end throughput sweep: runs the real engine (child JVMs, real headless
+ * Chrome) against an in-process {@link FakeWebstore} for every combination of
+ * engine mode, thread count and batch size, and writes one JSON line per run:
+ * UPCs/min, p50/p95/p99 per-UPC latency (from the engine's Prometheus file),
+ * peak RSS of the engine JVM and of its Chrome/chromedriver descendants, and
+ * CPU seconds.
+ *
+ * <pre>
+ * make bench-e2e E2E_ARGS="-Dbench.upcs=2000 -Dbench.threads=2,4,6"
+ * </pre>
+ *
+ * <p>With -Dbench.baseline=&lt;old .jsonl&gt; the run fails (exit 2) when any
+ * configuration loses more than bench.tolerance of its baseline UPCs/min.
+ * Any result row whose item number is not the catalog item of its UPC fails
+ * the run with exit 3 (e.g. a pipelined tab writing the previous PDP under
+ * the next UPC when bench.search.delay.ms makes the search slow).
+ * Linux only (/proc sampling).
+ */
+public final class ThroughputBenchmark {
+
+	private static final String METRIC = "scrape_stage_duration_seconds";
+	private static final Pattern BUCKET = Pattern
+			.compile(METRIC + "_bucket\\{stage=\"upc_total\",outcome=\"[^\"]*\",le=\"([^\"]+)\"} (\\d+)");
+	private static final Pattern FIELD = Pattern.compile("\"(\\w+)\":(\"[^\"]*\"|[-0-9.]+)");
+	private static final long CLOCK_TICKS = 100;
+	private static final long SAMPLE_MS = 500;
+
+	private ThroughputBenchmark() {
+	}
+
+	/** Result of one sweep point. */
+	static final class RunResult {
+		final Map<String, Object> fields = new LinkedHashMap<>();
+
+		String key() {
+			return fields.get("mode") + "/t" + fields.get("threads") + "/b" + fields.get("batchSize");
+		}
+
+		String toJson() {
+			return fields.entrySet().stream().map(e -> "\"" + e.getKey() + "\":" + json(e.getValue()))
+					.collect(Collectors.joining(",", "{", "}"));
+		}
+
+		private static String json(Object v) {
+			if (v instanceof Double)
+				return String.format(Locale.ROOT, "%.2f", (Double) v);
+			if (v instanceof Number)
+				return v.toString();
+			return "\"" + String.valueOf(v).replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+		}
+	}
+
+	/** Process-tree resource sampler for one engine JVM. */
+	static final class TreeSampler implements Runnable {
+		private final List<ProcessHandle> roots;
+		private final Map<Long, Long> lastTicks = new HashMap<>();
+		private volatile boolean running = true;
+		long jvmPeakKb;
+		long childPeakKb;
+
+		TreeSampler(List<ProcessHandle> roots) {
+			this.roots = roots;
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				sample();
+				try {
+					Thread.sleep(SAMPLE_MS);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		synchronized void sample() {
+			long children = 0;
+			for (ProcessHandle root : roots) {
+				jvmPeakKb = Math.max(jvmPeakKb, statusKb(root.pid(), "VmHWM:"));
+				ticks(root.pid());
+				for (ProcessHandle d : (Iterable<ProcessHandle>) root.descendants()::iterator) {
+					children += statusKb(d.pid(), "VmRSS:");
+					ticks(d.pid());
+				}
+			}
+			childPeakKb = Math.max(childPeakKb, children);
+		}
+
+		void stop() {
+			running = false;
+		}
+
+		synchronized double cpuSeconds() {
+			return lastTicks.values().stream().mapToLong(Long::longValue).sum() / (double) CLOCK_TICKS;
+		}
+
+		private void ticks(long pid) {
+			try {
+				String stat = new String(Files.readAllBytes(Paths.get("/proc", String.valueOf(pid), "stat")),
+						StandardCharsets.US_ASCII);
+				// Fields after the ")" of the command name; utime/stime are fields 14/15.
+				String[] f = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+				lastTicks.put(pid, Long.parseLong(f[11]) + Long.parseLong(f[12]));
+			} catch (IOException | RuntimeException ignored) {
+				// process exited between listing and reading
+			}
+		}
+
+		private static long statusKb(long pid, String field) {
+			try {
+				for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+					if (line.startsWith(field))
+						return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+				}
+			} catch (IOException | RuntimeException ignored) {
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Entry point. Args: [output .jsonl]. Settings are -Dbench.* properties:
+	 * upcs, threads, batch.sizes, modes (batch,pipeline,lease), seed, products,
+	 * miss.ratio, latency.ms, jitter.ms, buybox.delay.ms, search.delay.ms, error.rate,
+	 * block.probability, screenshots, jvm.args, run.timeout.min, baseline,
+	 * tolerance.
+	 */
+	public static void main(String[] args) throws Exception {
+		int upcCount = Integer.parseInt(prop("bench.upcs", "1000"));
+		List<Integer> threads = ints(prop("bench.threads", "1,2,4,6"));
+		List<Integer> batchSizes = ints(prop("bench.batch.sizes", "250"));
+		List<String> modes = List.of(prop("bench.modes", "batch").split(","));
+		long seed = Long.parseLong(prop("bench.seed", "42"));
+		long timeoutMin = Long.parseLong(prop("bench.run.timeout.min", "60"));
+
+		String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+		Path out = Paths.get(args.length > 0 ? args[0] : "bench-results/e2e_" + ts + ".jsonl").toAbsolutePath();
+		Path work = Files.createTempDirectory("upc-e2e-");
+		if (out.getParent() != null)
+			Files.createDirectories(out.getParent());
+
+		FakeCatalog catalog = new FakeCatalog(seed, Integer.parseInt(prop("bench.products", "20000")));
+		Path upcFile = work.resolve("upcs.txt");
+		Files.write(upcFile, catalog.sampleInput(upcCount, Double.parseDouble(prop("bench.miss.ratio", "0.1"))));
+
+		System.out.println("E2E benchmark | upcs=" + upcCount + " | modes=" + modes + " | threads=" + threads
+				+ " | batchSizes=" + batchSizes + " | work=" + work + " | out=" + out);
+
+		List<RunResult> results = new ArrayList<>();
+		for (String mode : modes) {
+			for (int batchSize : batchSizes) {
+				for (int t : threads) {
+					RunResult r = runOnce(mode.trim(), t, batchSize, catalog, seed, upcFile,
+							Files.createDirectories(work.resolve(mode.trim() + "_t" + t + "_b" + batchSize)),
+							timeoutMin);
+					r.fields.put("timestamp", ts);
+					results.add(r);
+					Files.write(out, (r.toJson() + "\n").getBytes(StandardCharsets.UTF_8),
+							StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+					System.out.println(r.toJson());
+				}
+			}
+		}
+
+		long misattributed = results.stream().mapToLong(r -> ((Number) r.fields.get("misattributed")).longValue())
+				.sum();
+		if (misattributed > 0) {
+			System.out.println(misattributed + " result rows carry another UPC's product");
+			System.exit(3);
+		}
+
+		String baseline = System.getProperty("bench.baseline");
+		if (baseline != null && !compare(results, Paths.get(baseline),
+				Double.parseDouble(prop("bench.tolerance", "0.10")))) {
+			System.exit(2);
+		}
+	}
+
+	/** Runs one sweep point against a fresh store instance. */
+	private static RunResult runOnce(String mode, int threads, int batchSize, FakeCatalog catalog, long seed,
+			Path upcFile, Path runDir, long timeoutMin) throws Exception {
+		FakeWebstore store = new FakeWebstore(catalog);
+		store.setSeed(seed);
+		store.setLatency(Long.parseLong(prop("bench.latency.ms", "100")), Long.parseLong(prop("bench.jitter.ms", "50")));
+		store.setBuyBoxDelay(Long.parseLong(prop("bench.buybox.delay.ms", "300")));
+		store.setSearchDelay(Long.parseLong(prop("bench.search.delay.ms", "0")));
+		store.setErrorRate(Double.parseDouble(prop("bench.error.rate", "0")));
+		store.setBlockProbability(Double.parseDouble(prop("bench.block.probability", "0")));
+		String baseUrl = store.start(0);
+
+		List<String> common = new ArrayList<>(List.of("-Dbase.url=" + baseUrl, "-Dusername=bench@example.com",
+				"-Dpassword=bench", "-Dupc.file=" + upcFile, "-Dheadless=true", "-Dbatch.size=" + batchSize,
+				"-Dscreenshots.enabled=" + prop("bench.screenshots", "false"), "-Dblocked.backoff.ms=0",
+				"-Dmetrics.export.interval.sec=5"));
+
+		Process coordinator = null;
+		Process engine;
+		List<ProcessHandle> roots = new ArrayList<>();
+		long started = System.nanoTime();
+		try {
+			if ("lease".equals(mode)) {
+				int port = freePort();
+				common.add("-Dcoordinator.port=" + port);
+				coordinator = launch("framework.distributed.LeaseCoordinator", common, runDir, "coordinator.log");
+				roots.add(coordinator.toHandle());
+				awaitPort(port, 30_000);
+				List<String> worker = new ArrayList<>(common);
+				worker.add("-Dlease.worker=true");
+				worker.add("-Dlease.workers=" + threads);
+				engine = launch("framework.engine.ScrapeEngine", worker, runDir, "engine.log");
+			} else {
+				List<String> batch = new ArrayList<>(common);
+				batch.add("-Dengine.threads=" + threads);
+				if ("pipeline".equals(mode))
+					batch.add("-Dengine.pipeline=true");
+				engine = launch("framework.engine.ScrapeEngine", batch, runDir, "engine.log");
+			}
+			roots.add(engine.toHandle());
+
+			TreeSampler sampler = new TreeSampler(roots);
+			Thread samplerThread = new Thread(sampler, "e2e-sampler");
+			samplerThread.setDaemon(true);
+			samplerThread.start();
+
+			boolean finished = engine.waitFor(timeoutMin, TimeUnit.MINUTES);
+			if (!finished)
+				destroyTree(engine);
+			// A failed worker leaves leases open; only wait for a coordinator that can still drain.
+			if (coordinator != null && (!finished || engine.exitValue() != 0
+					|| !coordinator.waitFor(30, TimeUnit.SECONDS)))
+				destroyTree(coordinator);
+			sampler.sample();
+			sampler.stop();
+			double wallSec = (System.nanoTime() - started) / 1e9;
+
+			RunResult r = new RunResult();
+			r.fields.put("mode", mode);
+			r.fields.put("threads", threads);
+			r.fields.put("batchSize", batchSize);
+			r.fields.put("exitCode", finished ? engine.exitValue() : -1);
+			fillLatency(r, runDir.resolve("ScrapingOutputResults/metrics/scrape_metrics.prom"));
+			long processed = ((Number) r.fields.get("processed")).longValue();
+			r.fields.put("wallSec", wallSec);
+			r.fields.put("upcsPerMin", processed * 60.0 / wallSec);
+			r.fields.put("jvmPeakRssMb", sampler.jvmPeakKb / 1024.0);
+			r.fields.put("chromePeakRssMb", sampler.childPeakKb / 1024.0);
+			r.fields.put("cpuSec", sampler.cpuSeconds());
+			r.fields.put("avgCores", sampler.cpuSeconds() / wallSec);
+			r.fields.put("hostCpus", Runtime.getRuntime().availableProcessors());
+			r.fields.put("misattributed", misattributed(runDir.resolve("ScrapingOutputResults"), catalog));
+			r.fields.put("storeStats", store.stats().toString());
+			return r;
+		} finally {
+			store.stop();
+		}
+	}
+
+	/** Reads p50/p95/p99 and the processed count of the upc_total stage from the .prom file. */
+	private static void fillLatency(RunResult r, Path prom) throws IOException {
+		TreeMap<Double, Long> cumulative = new TreeMap<>();
+		if (Files.exists(prom)) {
+			for (String line : Files.readAllLines(prom)) {
+				Matcher m = BUCKET.matcher(line);
+				if (m.matches()) {
+					double le = "+Inf".equals(m.group(1)) ? Double.POSITIVE_INFINITY : Double.parseDouble(m.group(1));
+					cumulative.merge(le, Long.parseLong(m.group(2)), Long::sum);
+				}
+			}
+		}
+		long total = cumulative.isEmpty() ? 0 : cumulative.lastEntry().getValue();
+		r.fields.put("processed", total);
+		r.fields.put("p50Ms", quantileMs(cumulative, total, 0.50));
+		r.fields.put("p95Ms", quantileMs(cumulative, total, 0.95));
+		r.fields.put("p99Ms", quantileMs(cumulative, total, 0.99));
+	}
+
+	/** histogram_quantile-style interpolation over merged cumulative buckets. */
+	private static double quantileMs(TreeMap<Double, Long> cumulative, long total, double q) {
+		if (total == 0)
+			return 0;
+		double rank = q * total;
+		double lower = 0;
+		long prev = 0;
+		for (Map.Entry<Double, Long> e : cumulative.entrySet()) {
+			if (e.getValue() >= rank) {
+				if (e.getKey().isInfinite())
+					return lower * 1000;
+				long inBucket = e.getValue() - prev;
+				double frac = inBucket == 0 ? 0 : (rank - prev) / inBucket;
+				return (lower + (e.getKey() - lower) * frac) * 1000;
+			}
+			lower = e.getKey();
+			prev = e.getValue();
+		}
+		return lower * 1000;
+	}
+
+	/** Counts result rows whose item number is not the catalog item of the row's UPC. */
+	private static long misattributed(Path outputDir, FakeCatalog catalog) throws IOException {
+		if (!Files.isDirectory(outputDir))
+			return 0;
+		long wrong = 0;
+		try (Stream<Path> files = Files.list(outputDir)) {
+			for (Path f : (Iterable<Path>) files.filter(f -> f.getFileName().toString().startsWith("results_batch_")
+					&& f.getFileName().toString().endsWith(".csv"))::iterator) {
+				List<String> lines = Files.readAllLines(f);
+				for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+					String[] v = CSVUtils.parseRow(line);
+					if (v.length <= 6 || v[6].isEmpty())
+						continue;
+					FakeCatalog.Product p = catalog.findByUpc(v[0]);
+					if (p == null || !p.itemNumber.equals(v[6]))
+						wrong++;
+				}
+			}
+		}
+		return wrong;
+	}
+
+	/** Compares UPCs/min per configuration against a previous report. */
+	private static boolean compare(List<RunResult> results, Path baselineFile, double tolerance) throws IOException {
+		Map<String, Double> baseline = new HashMap<>();
+		for (String line : Files.readAllLines(baselineFile)) {
+			RunResult b = new RunResult();
+			Matcher m = FIELD.matcher(line);
+			while (m.find())
+				b.fields.put(m.group(1), m.group(2).replace("\"", ""));
+			if (b.fields.containsKey("upcsPerMin"))
+				baseline.put(b.key(), Double.parseDouble(b.fields.get("upcsPerMin").toString()));
+		}
+
+		boolean ok = true;
+		for (RunResult r : results) {
+			Double before = baseline.get(r.key());
+			if (before == null || before == 0)
+				continue;
+			double now = (Double) r.fields.get("upcsPerMin");
+			double change = (now - before) / before;
+			String line = String.format(Locale.ROOT, "%-20s %10.1f -> %10.1f UPCs/min (%+.1f%%)", r.key(), before,
+					now, change * 100);
+			if (change < -tolerance) {
+				ok = false;
+				line += "  REGRESSION";
+			}
+			System.out.println(line);
+		}
+		return ok;
+	}
+
+	private static Process launch(String mainClass, List<String> props, Path runDir, String logName)
+			throws IOException {
+		List<String> cmd = new ArrayList<>();
+		cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		String jvmArgs = System.getProperty("bench.jvm.args", "").trim();
+		if (!jvmArgs.isEmpty())
+			cmd.addAll(List.of(jvmArgs.split("\\s+")));
+		cmd.addAll(props);
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(mainClass);
+
+		File log = runDir.resolve(logName).toFile();
+		return new ProcessBuilder(cmd).directory(runDir.toFile()).redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.appendTo(log)).start();
+	}
+
+	private static void destroyTree(Process p) {
+		p.descendants().forEach(ProcessHandle::destroyForcibly);
+		p.destroyForcibly();
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket s = new ServerSocket(0)) {
+			return s.getLocalPort();
+		}
+	}
+
+	private static void awaitPort(int port, long timeoutMs) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		while (System.currentTimeMillis() < deadline) {
+			try (Socket s = new Socket()) {
+				s.connect(new InetSocketAddress("127.0.0.1", port), 500);
+				return;
+			} catch (IOException e) {
+				Thread.sleep(200);
+			}
+		}
+		throw new RuntimeException("Coordinator did not open port " + port + " within " + timeoutMs + " ms");
+	}
+
+	private static String prop(String key, String defaultValue) {
+		String v = System.getProperty(key);
+		return (v == null || v.trim().isEmpty()) ? defaultValue : v.trim();
+	}
+
+	private static List<Integer> ints(String csv) {
+		List<Integer> list = new ArrayList<>();
+		for (String s : csv.split(","))
+			if (!s.trim().isEmpty())
+				list.add(Integer.parseInt(s.trim()));
+		return list;
+	}
+}
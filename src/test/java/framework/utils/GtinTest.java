@@ -0,0 +1,48 @@
+package framework.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/** GS1 check digit, GTIN-14 keys and search forms. */
+public class GtinTest {
+
+	@Test
+	public void checkDigit() {
+		Assert.assertTrue(Gtin.hasValidCheckDigit("036000291452")); // UPC-A
+		Assert.assertTrue(Gtin.hasValidCheckDigit("4006381333931")); // EAN-13
+		Assert.assertTrue(Gtin.hasValidCheckDigit("96385074")); // GTIN-8
+		Assert.assertTrue(Gtin.hasValidCheckDigit("10012345678902")); // GTIN-14
+		Assert.assertFalse(Gtin.hasValidCheckDigit("036000291453"));
+		Assert.assertFalse(Gtin.hasValidCheckDigit("96385075"));
+	}
+
+	@Test
+	public void strictValidation() {
+		Assert.assertTrue(Gtin.isValid("036000291452"));
+		Assert.assertFalse(Gtin.isValid("036000291453"));
+		Assert.assertFalse(Gtin.isValid("0360002914520")); // 13 digits, wrong check digit
+		Assert.assertFalse(Gtin.isValid("12345"));
+		Assert.assertFalse(Gtin.isValid("03600029145A"));
+	}
+
+	@Test
+	public void keyPadsToGtin14() {
+		Assert.assertEquals(Gtin.key("012345678905"), "00012345678905");
+		Assert.assertEquals(Gtin.key("0012345678905"), "00012345678905");
+		Assert.assertEquals(Gtin.key(" 00012345678905 "), "00012345678905");
+		Assert.assertEquals(Gtin.key("96385074"), "00000096385074");
+		Assert.assertEquals(Gtin.key("not-a-gtin"), "not-a-gtin");
+		Assert.assertEquals(Gtin.key("123456789012345"), "123456789012345");
+	}
+
+	@Test
+	public void shortFormKeepsNativeLength() {
+		Assert.assertEquals(Gtin.searchForm("96385074", "short"), "96385074");
+		Assert.assertEquals(Gtin.searchForm("00012345678905", "short"), "012345678905");
+		Assert.assertEquals(Gtin.searchForm("0012345678905", "short"), "012345678905");
+		Assert.assertEquals(Gtin.searchForm("04006381333931", "short"), "4006381333931");
+		Assert.assertEquals(Gtin.searchForm("10012345678902", "short"), "10012345678902");
+		Assert.assertEquals(Gtin.searchForm("012345678905", "gtin14"), "00012345678905");
+		Assert.assertEquals(Gtin.searchForm(" 012345678905 ", "input"), "012345678905");
+	}
+}
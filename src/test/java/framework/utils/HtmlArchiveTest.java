@@ -0,0 +1,30 @@
+package framework.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/** Re-extraction input: one archived capture per item. */
+public class HtmlArchiveTest {
+
+	@Test
+	public void latestPerUpcMergesGtinSpellings() {
+		List<HtmlArchive.Entry> entries = Arrays.asList(entry("036000291452", 100), entry("0036000291452", 300),
+				entry("00036000291452", 200), entry("012345678905", 50));
+		List<HtmlArchive.Entry> latest = new ArrayList<>(HtmlArchive.latestPerUpc(entries));
+		latest.sort((a, b) -> Long.compare(a.timestamp, b.timestamp));
+
+		Assert.assertEquals(latest.size(), 2);
+		Assert.assertEquals(latest.get(0).upc, "012345678905");
+		Assert.assertEquals(latest.get(1).upc, "0036000291452");
+		Assert.assertEquals(latest.get(1).timestamp, 300);
+	}
+
+	private static HtmlArchive.Entry entry(String upc, long timestamp) {
+		return new HtmlArchive.Entry(upc, timestamp, "sha-" + upc, "seg-0001.bin", 0, 0,
+				"https://shop.example.com/detail/" + upc);
+	}
+}
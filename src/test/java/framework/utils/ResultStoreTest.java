@@ -0,0 +1,112 @@
+package framework.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** Upsert, queries, compaction and CSV export of {@link ResultStore} on a temporary directory. */
+public class ResultStoreTest {
+
+	private Path dir;
+
+	@BeforeMethod
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("result-store");
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void deleteDir() throws IOException {
+		try (Stream<Path> s = Files.walk(dir)) {
+			s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private static String row(String upc, String status, String price, String stock, String outOfStock,
+			String brand) {
+		return CSVUtils.formatFull(upc, "YES", "https://example.test/p/" + upc, status, "", "Name " + upc, null,
+				null, null, null, null, price, null, stock, outOfStock, brand, null, null, null, null, null, null,
+				null, null, null, null, null, null);
+	}
+
+	@Test
+	public void upsertKeepsLatestRowPerGtin() throws IOException {
+		ResultStore store = ResultStore.open(dir);
+		try {
+			store.upsert(row("012345678905", "ADD TO CART NOT PRESENT", "$4.00", "", "", "Acme"));
+			store.upsert(row("00012345678905", "ADD TO CART PRESENT", "$5.00", "In Stock", "", "Acme"));
+			store.upsert(row("036000291452", "ADD TO CART PRESENT", "$3.00", "0 in stock", "", "Other"));
+
+			Assert.assertEquals(store.size(), 2);
+			Assert.assertTrue(store.get("0012345678905").contains("$5.00"));
+			Assert.assertEquals(store.byStatus("add to cart present"),
+					Arrays.asList("00012345678905", "00036000291452"));
+			Assert.assertTrue(store.byStatus("ADD TO CART NOT PRESENT").isEmpty());
+			Assert.assertEquals(store.byBrand("ACME"), Arrays.asList("00012345678905"));
+			// Stock text alone marks a row out of stock, as on the product page.
+			Assert.assertEquals(store.byStock(true), Arrays.asList("00012345678905"));
+			Assert.assertEquals(store.byStock(false), Arrays.asList("00036000291452"));
+			Assert.assertEquals(store.priceBetween(4.5, 10), Arrays.asList("00012345678905"));
+			Assert.assertEquals(store.range("036000291452", "036000291452"), Arrays.asList("00036000291452"));
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void compactKeepsOnlyLatestRows() throws IOException {
+		ResultStore store = ResultStore.open(dir);
+		store.upsert(row("012345678905", "ADD TO CART NOT PRESENT", "$4.00", "", "", "Acme"));
+		store.upsert(row("012345678905", "ADD TO CART PRESENT", "$5.00", "", "", "Acme"));
+		store.upsert(row("036000291452", "NO PRODUCT FOUND", "", "", "", ""));
+		String latest = store.get("012345678905");
+
+		Assert.assertEquals(store.compact(), 2);
+		Assert.assertEquals(store.get("012345678905"), latest);
+		store.close();
+
+		List<Path> logs = new ArrayList<>();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "rows_*.log")) {
+			ds.forEach(logs::add);
+		}
+		Assert.assertEquals(logs.size(), 1);
+		Assert.assertEquals(Files.readAllLines(logs.get(0)).size(), 2);
+
+		ResultStore reopened = ResultStore.open(dir);
+		try {
+			Assert.assertEquals(reopened.size(), 2);
+			Assert.assertEquals(reopened.get("00012345678905"), latest);
+			Assert.assertEquals(reopened.byStatus("NO PRODUCT FOUND"), Arrays.asList("00036000291452"));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void exportWritesHeaderAndLatestRows() throws IOException {
+		ResultStore store = ResultStore.open(dir);
+		try {
+			String a = row("012345678905", "ADD TO CART PRESENT", "$5.00", "", "", "Acme");
+			String b = row("036000291452", "ADD TO CART PRESENT", "$3.00", "", "", "Other");
+			store.upsert(a);
+			store.upsert(b);
+
+			Path csv = dir.resolve("out/export.csv");
+			Assert.assertEquals(store.export(csv, Arrays.asList("00036000291452", "00000000000000", "012345678905")),
+					2);
+			Assert.assertEquals(Files.readAllLines(csv), Arrays.asList(CSVUtils.HEADER, b, a));
+		} finally {
+			store.close();
+		}
+	}
+}